@@ -0,0 +1,34 @@
+package jp.satomaru.java8study.benchmark;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.CommandLineOptionException;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * ベンチマークを実行します。
+ *
+ * <p>
+ * 常にGCプロファイラーを有効にし、1回あたりの確保バイト数（gc.alloc.rate.norm）を出力します。
+ * 引数はJMHのコマンドラインオプションと同じです（例：{@code CsvBuilderBenchmark.build -p rows=1000 -rf json}）。
+ * </p>
+ */
+public class Benchmarks {
+
+	/**
+	 * メイン。
+	 *
+	 * @param args JMHのコマンドラインオプション
+	 * @throws CommandLineOptionException オプションが正しくない場合
+	 * @throws RunnerException ベンチマークの実行に失敗した場合
+	 */
+	public static void main(String[] args) throws CommandLineOptionException, RunnerException {
+		new Runner(new OptionsBuilder()
+				.parent(new CommandLineOptions(args))
+				.addProfiler(GCProfiler.class)
+				.build())
+				.run();
+	}
+}
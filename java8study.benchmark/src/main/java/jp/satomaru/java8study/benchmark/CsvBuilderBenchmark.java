@@ -0,0 +1,298 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Function;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.CsvBuilder;
+import jp.satomaru.java8study.CsvSchema;
+
+/**
+ * {@link CsvBuilder}の性能を測定します。
+ *
+ * <p>
+ * 行数、列の構成、クォーテーションが必要な文字列の割合、クォーテーションの方針を組み合わせて、
+ * {@link CsvBuilder#build(java.util.Collection)}などの一回あたりの性能を測定します。
+ * 1行あたりの確保バイト数は、GCプロファイラーの「gc.alloc.rate.norm」を行数で割って求めます。
+ * </p>
+ *
+ * <p>
+ * 既定の組み合わせは、短時間で終わるように絞っています（行数は1000と100000、クォーテーションが必要な文字列の割合は10%のみ）。
+ * 割合ごとの比較は、{@code -p columns=STRING,MIXED -p quotedPercent=0,10,100}のように指定してください。
+ * 割合は文字列の列にしか影響しないため、{@link Columns#NUMERIC}や{@link Columns#FORMATTED}と組み合わせる必要はありません。
+ * 100万行以上は、CSV全体の文字列がヒープに収まらないため、{@link #writeToWithSchema()}だけを、
+ * {@code -jvmArgsAppend "-Xms8g -Xmx8g"}のようにヒープを増やして測定してください（1000万行では、元となるオブジェクトだけで約2.5GBを使用します）。
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class CsvBuilderBenchmark {
+
+	/** 列の構成。 */
+	public enum Columns {
+
+		/** 数値のみ。 */
+		NUMERIC,
+
+		/** 文字列のみ。 */
+		STRING,
+
+		/** 大半がnull。 */
+		NULLS,
+
+		/** {@link CsvBuilder#addFormatter(Class, Function)}で変換する型のみ。 */
+		FORMATTED,
+
+		/** 全ての列。 */
+		MIXED
+	}
+
+	/**
+	 * CSVを作成する元となるオブジェクトです。
+	 */
+	public static final class Row {
+
+		/** 整数。 */
+		private final int id;
+
+		/** 長整数。 */
+		private final long amount;
+
+		/** 小数。 */
+		private final double ratio;
+
+		/** 文字列。 */
+		private final String name;
+
+		/** クォーテーションが必要になり得る文字列。 */
+		private final String note;
+
+		/** 日付（フォーマッターで変換）。 */
+		private final LocalDate date;
+
+		/** 金額（フォーマッターで変換）。 */
+		private final BigDecimal price;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param index 行番号
+		 * @param random 乱数
+		 * @param quotedPercent クォーテーションが必要な文字列の割合（パーセント）
+		 * @param nulls 大半の列をnullにする場合はtrue
+		 */
+		Row(int index, Random random, int quotedPercent, boolean nulls) {
+			boolean present = !nulls || random.nextInt(10) == 0;
+
+			this.id = index;
+			this.amount = random.nextLong();
+			this.ratio = random.nextDouble();
+			this.name = present ? "name" + index : null;
+			this.note = present ? note(random, quotedPercent) : null;
+			this.date = present ? LocalDate.of(2016, 1, 1).plusDays(index % 3650) : null;
+			this.price = present ? BigDecimal.valueOf(random.nextInt(10000000), 2) : null;
+		}
+
+		/**
+		 * 文字列の列を作成します。
+		 *
+		 * @param random 乱数
+		 * @param quotedPercent クォーテーションが必要な文字列の割合（パーセント）
+		 * @return 文字列
+		 */
+		private static String note(Random random, int quotedPercent) {
+			if (random.nextInt(100) >= quotedPercent) {
+				return "plain note " + random.nextInt(1000);
+			}
+
+			return random.nextBoolean()
+					? "note with \"quotes\" " + random.nextInt(1000)
+					: "note, with comma " + random.nextInt(1000);
+		}
+	}
+
+	/** 行数（100万行以上は、-pで指定する）。 */
+	@Param({"1000", "100000"})
+	private int rows;
+
+	/** 列の構成。 */
+	@Param({"NUMERIC", "STRING", "NULLS", "FORMATTED", "MIXED"})
+	private Columns columns;
+
+	/** クォーテーションが必要な文字列の割合（パーセント。文字列の列にのみ影響するため、既定では1つに絞る）。 */
+	@Param({"10"})
+	private int quotedPercent;
+
+	/** クォーテーションの方針。 */
+	@Param({"ALWAYS", "MINIMAL"})
+	private CsvBuilder.Quoting quoting;
+
+	/** CSVを作成する元となるオブジェクト。 */
+	private List<Row> entities;
+
+	/** オブジェクトから列を配列で取得するCsvBuilder。 */
+	private CsvBuilder<Row> picker;
+
+	/** 列の定義を使用するCsvBuilder。 */
+	private CsvBuilder<Row> schema;
+
+	/** 書き出した内容を捨てるライター。 */
+	private final Writer discard = new Writer() {
+
+		@Override
+		public void write(char[] cbuf, int off, int len) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup(Level.Trial)
+	public void setUp() {
+		Random random = new Random(20160215);
+		entities = new ArrayList<>(rows);
+
+		for (int i = 0; i < rows; i++) {
+			entities.add(new Row(i, random, quotedPercent, columns == Columns.NULLS));
+		}
+
+		picker = configure(new CsvBuilder<>(picker(columns)));
+		schema = configure(new CsvBuilder<>(schema(columns)));
+	}
+
+	/**
+	 * オブジェクトから列を配列で取得するCsvBuilderで、CSVを作成します。
+	 *
+	 * @return CSV
+	 */
+	@Benchmark
+	public String build() {
+		return picker.build(entities);
+	}
+
+	/**
+	 * 列の定義を使用するCsvBuilderで、CSVを作成します。
+	 *
+	 * @return CSV
+	 */
+	@Benchmark
+	public String buildWithSchema() {
+		return schema.build(entities);
+	}
+
+	/**
+	 * 列の定義を使用するCsvBuilderで、CSVをライターに書き出します。
+	 *
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	@Benchmark
+	public void writeToWithSchema() throws IOException {
+		schema.writeTo(discard, entities);
+	}
+
+	/**
+	 * CsvBuilderを設定します。
+	 *
+	 * @param builder CsvBuilder
+	 * @return 設定したCsvBuilder
+	 */
+	private CsvBuilder<Row> configure(CsvBuilder<Row> builder) {
+		DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy/MM/dd");
+
+		builder.addFormatter(LocalDate.class, date -> date.format(formatter));
+		builder.addFormatter(BigDecimal.class, BigDecimal::toPlainString);
+		builder.setQuoting(quoting);
+		builder.setLineSeparator("\n");
+		return builder;
+	}
+
+	/**
+	 * 列の構成に対応する、オブジェクトから列を配列で取得する関数を作成します。
+	 *
+	 * @param columns 列の構成
+	 * @return オブジェクトから列を取得する関数
+	 */
+	private static Function<Row, Object[]> picker(Columns columns) {
+		switch (columns) {
+		case NUMERIC:
+			return row -> new Object[] {row.id, row.amount, row.ratio};
+		case STRING:
+			return row -> new Object[] {row.name, row.note};
+		case FORMATTED:
+			return row -> new Object[] {row.date, row.price};
+		default:
+			return row -> new Object[] {row.id, row.amount, row.ratio, row.name, row.note, row.date, row.price};
+		}
+	}
+
+	/**
+	 * 列の構成に対応する、列の定義を作成します。
+	 *
+	 * @param columns 列の構成
+	 * @return 列の定義
+	 */
+	private static CsvSchema<Row> schema(Columns columns) {
+		CsvSchema.Builder<Row> builder = CsvSchema.builder();
+
+		switch (columns) {
+		case NUMERIC:
+			return builder
+					.intColumn(row -> row.id)
+					.longColumn(row -> row.amount)
+					.doubleColumn(row -> row.ratio)
+					.build();
+		case STRING:
+			return builder
+					.objectColumn(row -> row.name)
+					.objectColumn(row -> row.note)
+					.build();
+		case FORMATTED:
+			return builder
+					.objectColumn(row -> row.date)
+					.objectColumn(row -> row.price)
+					.build();
+		default:
+			return builder
+					.intColumn(row -> row.id)
+					.longColumn(row -> row.amount)
+					.doubleColumn(row -> row.ratio)
+					.objectColumn(row -> row.name)
+					.objectColumn(row -> row.note)
+					.objectColumn(row -> row.date)
+					.objectColumn(row -> row.price)
+					.build();
+		}
+	}
+}
@@ -0,0 +1,118 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.ListMaps;
+import jp.satomaru.java8study.MapOfMaps;
+
+/**
+ * 並列ストリームでの分類の性能を、{@link Collectors#groupingBy(java.util.function.Function)}と比較します。
+ *
+ * <p>
+ * 値は測定の準備で作成した配列から取得するため、ボクシングの費用は測定に含まれません。
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms8g", "-Xmx8g"})
+public class GroupingBenchmark {
+
+	/** 行数。 */
+	@Param({"1000000", "10000000", "100000000"})
+	private int rows;
+
+	/** キーの数。 */
+	@Param({"1000", "1000000"})
+	private int keys;
+
+	/** 分類する値。 */
+	private Integer[] values;
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup
+	public void setUp() {
+		values = IntStream.range(0, rows).parallel().boxed().toArray(Integer[]::new);
+	}
+
+	/**
+	 * {@link Collectors#groupingBy(java.util.function.Function)}で分類します。
+	 *
+	 * @return 分類結果
+	 */
+	@Benchmark
+	public Map<Integer, List<Integer>> groupingBy() {
+		return IntStream.range(0, rows).parallel()
+				.mapToObj(i -> values[i])
+				.collect(Collectors.groupingBy(value -> value % keys));
+	}
+
+	/**
+	 * {@link ListMaps#collector(java.util.function.Function)}で分類します。
+	 *
+	 * @return 分類結果
+	 */
+	@Benchmark
+	public Map<Integer, List<Integer>> listMaps() {
+		return IntStream.range(0, rows).parallel()
+				.mapToObj(i -> values[i])
+				.collect(ListMaps.collector(value -> value % keys));
+	}
+
+	/**
+	 * {@link ListMaps#collector(java.util.function.Function, int, int)}で、大きさの見込みを指定して分類します。
+	 *
+	 * @return 分類結果
+	 */
+	@Benchmark
+	public Map<Integer, List<Integer>> listMapsPresized() {
+		return IntStream.range(0, rows).parallel()
+				.mapToObj(i -> values[i])
+				.collect(ListMaps.collector(value -> value % keys, keys, Math.max(1, rows / keys / Runtime.getRuntime().availableProcessors())));
+	}
+
+	/**
+	 * {@link Collectors#groupingBy(java.util.function.Function, java.util.stream.Collector)}で二段階に分類します。
+	 *
+	 * @return 分類結果
+	 */
+	@Benchmark
+	public Map<Integer, Map<Integer, Integer>> groupingByToMap() {
+		return IntStream.range(0, rows).parallel()
+				.mapToObj(i -> values[i])
+				.collect(Collectors.groupingBy(value -> value % keys,
+						Collectors.toMap(value -> value % 16, value -> value, (former, latter) -> latter)));
+	}
+
+	/**
+	 * {@link MapOfMaps#collector(java.util.function.Function, java.util.function.Function, java.util.function.Function)}で二段階に分類します。
+	 *
+	 * @return 分類結果
+	 */
+	@Benchmark
+	public Map<Integer, Map<Integer, Integer>> mapOfMaps() {
+		return IntStream.range(0, rows).parallel()
+				.mapToObj(i -> values[i])
+				.collect(MapOfMaps.collector(value -> value % keys, value -> value % 16, value -> value));
+	}
+}
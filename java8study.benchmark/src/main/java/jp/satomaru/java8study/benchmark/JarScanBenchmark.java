@@ -0,0 +1,91 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.JarDirectory;
+
+/**
+ * {@link JarDirectory}による中央ディレクトリーの読み込みを、{@link JarFile}によるエントリーの列挙と比較します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+public class JarScanBenchmark {
+
+	/** 読み込むJARファイル（空文字列の場合は、実行中のJREのrt.jar）。 */
+	@Param("")
+	private String path;
+
+	/** 検索するパッケージ名。 */
+	@Param({"", "java.util.concurrent"})
+	private String packageName;
+
+	/** 読み込むJARファイル。 */
+	private File file;
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup
+	public void setUp() {
+		file = path.isEmpty() ? new File(System.getProperty("java.home"), "lib/rt.jar") : new File(path);
+	}
+
+	/**
+	 * {@link JarFile}で全エントリーを列挙して検索します。
+	 *
+	 * @return クラスのバイナリー名
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	@Benchmark
+	public List<String> jarFile() throws IOException {
+		String prefix = packageName.isEmpty() ? "" : packageName.replace('.', '/') + '/';
+		String suffix = ".class";
+		List<String> classNames = new ArrayList<>();
+
+		try (JarFile jar = new JarFile(file)) {
+			for (JarEntry entry : Collections.list(jar.entries())) {
+				String name = entry.getName();
+
+				if (name.startsWith(prefix) && name.endsWith(suffix) && !name.endsWith("package-info.class")) {
+					classNames.add(name.substring(0, name.length() - suffix.length()).replace('/', '.'));
+				}
+			}
+		}
+
+		return classNames;
+	}
+
+	/**
+	 * {@link JarDirectory}で中央ディレクトリーを読んで検索します。
+	 *
+	 * @return クラスのバイナリー名
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	@Benchmark
+	public List<String> jarDirectory() throws IOException {
+		return JarDirectory.classNames(file, packageName);
+	}
+}
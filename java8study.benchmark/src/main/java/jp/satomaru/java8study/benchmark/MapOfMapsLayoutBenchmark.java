@@ -0,0 +1,203 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.MapOfMaps;
+
+/**
+ * {@link MapOfMaps#begin()}（子マップを作成する形式）と{@link MapOfMaps#beginFlat()}（一つのハッシュ表に格納する形式）を比較します。
+ *
+ * <p>
+ * 作成の性能はSingleShotTimeで、検索の性能は1回あたりの時間で測定します。
+ * 使用するメモリーは、このクラスを直接実行すると出力します（例：{@code java -Xmx4g -cp target/benchmarks.jar
+ * jp.satomaru.java8study.benchmark.MapOfMapsLayoutBenchmark 10000000 2}）。
+ * </p>
+ */
+@State(Scope.Benchmark)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class MapOfMapsLayoutBenchmark {
+
+	/** 検索の性能を測定する際の、1回あたりの検索の数。 */
+	private static final int LOOKUPS = 1 << 16;
+
+	/** 組の数。 */
+	@Param({"10000000"})
+	private int entries;
+
+	/** 一つの親マップのキーに対する、子マップのキーの数。 */
+	@Param({"2", "16"})
+	private int subKeys;
+
+	/** 子マップを作成する形式の親マップ（検索の測定用）。 */
+	private Map<Integer, Map<Integer, Integer>> nested;
+
+	/** 一つのハッシュ表に格納する形式の親マップ（検索の測定用）。 */
+	private Map<Integer, Map<Integer, Integer>> flat;
+
+	/** 検索する親マップのキー。 */
+	private final Integer[] lookupKeys = new Integer[LOOKUPS];
+
+	/** 検索する子マップのキー。 */
+	private final Integer[] lookupSubKeys = new Integer[LOOKUPS];
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup
+	public void setUp() {
+		nested = fill(MapOfMaps.<Integer, Integer, Integer>begin(), entries, subKeys);
+		flat = fill(MapOfMaps.<Integer, Integer, Integer>beginFlat(), entries, subKeys);
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			int entry = (int) ((i * 2654435761L) % entries);
+			lookupKeys[i] = entry / subKeys;
+			lookupSubKeys[i] = entry % subKeys;
+		}
+	}
+
+	/**
+	 * 子マップを作成する形式で作成します。
+	 *
+	 * @return 親マップ
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public Map<Integer, Map<Integer, Integer>> buildNested() {
+		return fill(MapOfMaps.<Integer, Integer, Integer>begin(), entries, subKeys);
+	}
+
+	/**
+	 * 一つのハッシュ表に格納する形式で作成します。
+	 *
+	 * @return 親マップ
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.SingleShotTime)
+	@OutputTimeUnit(TimeUnit.MILLISECONDS)
+	@Warmup(iterations = 2)
+	@Measurement(iterations = 5)
+	public Map<Integer, Map<Integer, Integer>> buildFlat() {
+		return fill(MapOfMaps.<Integer, Integer, Integer>beginFlat(), entries, subKeys);
+	}
+
+	/**
+	 * 子マップを作成する形式で検索します。
+	 *
+	 * @return 検索結果の合計
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(LOOKUPS)
+	public long lookupNested() {
+		return lookup(nested);
+	}
+
+	/**
+	 * 一つのハッシュ表に格納する形式で検索します。
+	 *
+	 * @return 検索結果の合計
+	 */
+	@Benchmark
+	@BenchmarkMode(Mode.AverageTime)
+	@OutputTimeUnit(TimeUnit.NANOSECONDS)
+	@OperationsPerInvocation(LOOKUPS)
+	public long lookupFlat() {
+		return lookup(flat);
+	}
+
+	/**
+	 * 使用するメモリーを出力します。
+	 *
+	 * @param args 組の数、一つの親マップのキーに対する子マップのキーの数
+	 */
+	public static void main(String[] args) {
+		int entries = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+		int subKeys = (args.length > 1) ? Integer.parseInt(args[1]) : 2;
+
+		Integer[] boxed = new Integer[entries];                                 // キーと値のオブジェクトは両者で共有し、測定から除く
+
+		for (int i = 0; i < entries; i++) {
+			boxed[i] = i;
+		}
+
+		for (String layout : new String[] {"nested", "flat"}) {
+			long before = usedHeap();
+			MapOfMaps<Integer, Integer, Integer> mapOfMaps = layout.equals("nested") ? MapOfMaps.begin() : MapOfMaps.beginFlat();
+
+			for (int i = 0; i < entries; i++) {
+				mapOfMaps.begin(boxed[i / subKeys]).add(boxed[i % subKeys], boxed[i]);
+			}
+
+			Map<Integer, Map<Integer, Integer>> result = mapOfMaps.end();
+			long used = usedHeap() - before;
+
+			System.out.printf("%-6s entries=%d subKeys=%d keys=%d retained=%,d bytes (%.1f bytes/entry)%n",
+					layout, entries, subKeys, result.size(), used, (double) used / entries);
+		}
+	}
+
+	/**
+	 * 組を追加します。
+	 *
+	 * @param mapOfMaps MapOfMaps
+	 * @param entries 組の数
+	 * @param subKeys 一つの親マップのキーに対する、子マップのキーの数
+	 * @return 親マップ
+	 */
+	private static Map<Integer, Map<Integer, Integer>> fill(MapOfMaps<Integer, Integer, Integer> mapOfMaps, int entries, int subKeys) {
+		for (int i = 0; i < entries; i++) {
+			mapOfMaps.begin(i / subKeys).add(i % subKeys, i);
+		}
+
+		return mapOfMaps.end();
+	}
+
+	/**
+	 * 検索します。
+	 *
+	 * @param map 親マップ
+	 * @return 検索結果の合計
+	 */
+	private long lookup(Map<Integer, Map<Integer, Integer>> map) {
+		long sum = 0;
+
+		for (int i = 0; i < LOOKUPS; i++) {
+			sum += map.get(lookupKeys[i]).get(lookupSubKeys[i]);
+		}
+
+		return sum;
+	}
+
+	/**
+	 * ガベージコレクションの後の、使用中のヒープのバイト数を取得します。
+	 *
+	 * @return 使用中のヒープのバイト数
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
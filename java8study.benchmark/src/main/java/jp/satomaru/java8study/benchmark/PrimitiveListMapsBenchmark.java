@@ -0,0 +1,138 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.IntListMaps;
+import jp.satomaru.java8study.ListMaps;
+
+/**
+ * {@link IntListMaps}と、ボクシングする{@link ListMaps}を比較します。
+ *
+ * <p>
+ * 作成の性能はSingleShotTimeで測定します。
+ * 使用するメモリーは、このクラスを直接実行すると出力します（例：{@code java -Xmx4g -cp target/benchmarks.jar
+ * jp.satomaru.java8study.benchmark.PrimitiveListMapsBenchmark 10000000 100000}）。
+ * </p>
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 2)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms4g", "-Xmx4g"})
+public class PrimitiveListMapsBenchmark {
+
+	/** 値の数。 */
+	@Param({"10000000"})
+	private int values;
+
+	/** キーの数。 */
+	@Param({"1000", "1000000"})
+	private int keys;
+
+	/**
+	 * ボクシングする{@link ListMaps}で作成します。
+	 *
+	 * @return 作成したマップ
+	 */
+	@Benchmark
+	public Map<Integer, List<Integer>> boxed() {
+		ListMaps<Integer, Integer> listMaps = ListMaps.begin();
+
+		for (int i = 0; i < values; i++) {
+			listMaps.begin(i % keys).add(i);
+		}
+
+		return listMaps.end();
+	}
+
+	/**
+	 * {@link IntListMaps}で作成します。
+	 *
+	 * @return 作成したマップ
+	 */
+	@Benchmark
+	public IntListMaps primitive() {
+		IntListMaps intListMaps = IntListMaps.begin();
+
+		for (int i = 0; i < values; i++) {
+			intListMaps.begin(i % keys).add(i);
+		}
+
+		return intListMaps;
+	}
+
+	/**
+	 * {@link IntListMaps}で作成し、{@link IntListMaps#compact()}で詰め直します。
+	 *
+	 * @return 作成したマップ
+	 */
+	@Benchmark
+	public IntListMaps compacted() {
+		return primitive().compact();
+	}
+
+	/**
+	 * 使用するメモリーを出力します。
+	 *
+	 * @param args 値の数、キーの数
+	 */
+	public static void main(String[] args) {
+		int values = (args.length > 0) ? Integer.parseInt(args[0]) : 10000000;
+		int keys = (args.length > 1) ? Integer.parseInt(args[1]) : 100000;
+
+		PrimitiveListMapsBenchmark benchmark = new PrimitiveListMapsBenchmark();
+		benchmark.values = values;
+		benchmark.keys = keys;
+
+		long before = usedHeap();
+		Object boxed = benchmark.boxed();
+		long boxedBytes = usedHeap() - before;
+		System.out.printf("boxed     values=%d keys=%d retained=%,d bytes (%.1f bytes/value)%n",
+				values, keys, boxedBytes, (double) boxedBytes / values);
+		boxed = null;
+
+		before = usedHeap();
+		Object primitive = benchmark.primitive();
+		long primitiveBytes = usedHeap() - before;
+		System.out.printf("primitive values=%d keys=%d retained=%,d bytes (%.1f bytes/value)%n",
+				values, keys, primitiveBytes, (double) primitiveBytes / values);
+		primitive = null;
+
+		before = usedHeap();
+		Object compacted = benchmark.compacted();
+		long compactedBytes = usedHeap() - before;
+		System.out.printf("compacted values=%d keys=%d retained=%,d bytes (%.1f bytes/value)%n",
+				values, keys, compactedBytes, (double) compactedBytes / values);
+		System.out.printf("ratio primitive %.1fx, compacted %.1fx (%s)%n",
+				(double) boxedBytes / primitiveBytes, (double) boxedBytes / compactedBytes, compacted.getClass().getSimpleName());
+	}
+
+	/**
+	 * ガベージコレクションの後の、使用中のヒープのバイト数を取得します。
+	 *
+	 * @return 使用中のヒープのバイト数
+	 */
+	private static long usedHeap() {
+		Runtime runtime = Runtime.getRuntime();
+
+		for (int i = 0; i < 3; i++) {
+			System.gc();
+		}
+
+		return runtime.totalMemory() - runtime.freeMemory();
+	}
+}
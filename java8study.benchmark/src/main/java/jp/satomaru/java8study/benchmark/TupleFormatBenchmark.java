@@ -0,0 +1,84 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.TupleFormat;
+
+/**
+ * {@link TupleFormat}と{@link String#format(String, Object...)}を比較します。
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TupleFormatBenchmark {
+
+	/** 編集形式。 */
+	@Param({"%s:%s", "%-8s|%06d"})
+	private String format;
+
+	/** 一つ目の値。 */
+	private final Object first = "key";
+
+	/** 二つ目の値。 */
+	private final Object second = 12345;
+
+	/** 解析済みの編集形式。 */
+	private TupleFormat compiled;
+
+	/** 使い回す編集先。 */
+	private final StringBuilder builder = new StringBuilder();
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup
+	public void setUp() {
+		compiled = TupleFormat.compile(format);
+	}
+
+	/**
+	 * {@link String#format(String, Object...)}で編集します。
+	 *
+	 * @return 編集された文字列
+	 */
+	@Benchmark
+	public String stringFormat() {
+		return String.format(format, first, second);
+	}
+
+	/**
+	 * {@link TupleFormat#format(Object, Object)}で編集します。
+	 *
+	 * @return 編集された文字列
+	 */
+	@Benchmark
+	public String tupleFormat() {
+		return compiled.format(first, second);
+	}
+
+	/**
+	 * {@link TupleFormat#formatTo(StringBuilder, Object, Object)}で、編集先を使い回して編集します。
+	 *
+	 * @return 編集先
+	 */
+	@Benchmark
+	public StringBuilder tupleFormatTo() {
+		builder.setLength(0);
+		return compiled.formatTo(builder, first, second);
+	}
+}
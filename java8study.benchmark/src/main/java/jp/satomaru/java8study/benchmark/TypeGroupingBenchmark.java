@@ -0,0 +1,96 @@
+package jp.satomaru.java8study.benchmark;
+
+import java.math.BigDecimal;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collector;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import jp.satomaru.java8study.Utils;
+
+/**
+ * {@link Utils#groupByTypeParallel(java.util.Collection)}を、{@link Utils#groupByType(java.util.Collection)}と比較します。
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = {"-Xms6g", "-Xmx6g"})
+public class TypeGroupingBenchmark {
+
+	/** {@link Number}をまとめて集めるCollector。 */
+	private static final Collector<Object, ?, Map<Class<?>, List<Object>>> NUMBERS = Utils.groupingByType(Number.class);
+
+	/** 要素の数。 */
+	@Param({"5000000", "50000000"})
+	private int size;
+
+	/** 型の異なる要素のリスト。 */
+	private List<Object> objects;
+
+	/**
+	 * 測定の準備をします。
+	 */
+	@Setup
+	public void setUp() {
+		List<Object> samples = Arrays.asList(1, 2L, "3", 4.0, BigDecimal.ONE, 'c', (short) 7, new Object());
+		objects = IntStream.range(0, size).mapToObj(i -> samples.get(i % samples.size())).collect(Collectors.toList());
+	}
+
+	/**
+	 * {@link Utils#groupByType(java.util.Collection)}で集めます。
+	 *
+	 * @return 集めた結果
+	 */
+	@Benchmark
+	public Map<Class<?>, List<Object>> groupingBy() {
+		return Utils.groupByType(objects);
+	}
+
+	/**
+	 * {@link Collectors#groupingBy(java.util.function.Function)}を並列ストリームで使用して集めます。
+	 *
+	 * @return 集めた結果
+	 */
+	@Benchmark
+	public Map<Class<?>, List<Object>> groupingByParallel() {
+		return objects.parallelStream().filter(Objects::nonNull).collect(Collectors.groupingBy(Object::getClass));
+	}
+
+	/**
+	 * {@link Utils#groupByTypeParallel(java.util.Collection)}で集めます。
+	 *
+	 * @return 集めた結果
+	 */
+	@Benchmark
+	public Map<Class<?>, List<Object>> groupByTypeParallel() {
+		return Utils.groupByTypeParallel(objects);
+	}
+
+	/**
+	 * {@link Utils#groupingByType(Class...)}で、{@link Number}をまとめて集めます。
+	 *
+	 * @return 集めた結果
+	 */
+	@Benchmark
+	public Map<Class<?>, List<Object>> groupByNumber() {
+		return objects.parallelStream().collect(NUMBERS);
+	}
+}
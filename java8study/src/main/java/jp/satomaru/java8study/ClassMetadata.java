@@ -0,0 +1,323 @@
+package jp.satomaru.java8study;
+
+import java.lang.reflect.Modifier;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import lombok.AccessLevel;
+import lombok.RequiredArgsConstructor;
+import lombok.Value;
+
+/**
+ * クラスファイルから読み取った、クラスの宣言の情報です。
+ *
+ * <p>
+ * {@link #parse(ByteBuffer)}は、コンスタントプールとアクセスフラグ、クラスの属性を直接読み取ります。
+ * クラスをロードしないため、スタティックイニシャライザーも実行されません。
+ * クラス名は、全てバイナリー名（例：{@code java.util.Map$Entry}）で保持します。
+ * </p>
+ */
+@RequiredArgsConstructor(access = AccessLevel.PRIVATE)
+@Value
+public final class ClassMetadata {
+
+	/** クラスファイルの先頭の値。 */
+	private static final int MAGIC = 0xcafebabe;
+
+	/** 実行時に参照できるアノテーションの属性名。 */
+	private static final String RUNTIME_VISIBLE_ANNOTATIONS = "RuntimeVisibleAnnotations";
+
+	/** アクセスフラグ（{@link Modifier}の定数と、{@code ACC_INTERFACE}などのクラスファイル固有のフラグ）。 */
+	private final int accessFlags;
+
+	/** クラスのバイナリー名。 */
+	private final String name;
+
+	/** スーパークラスのバイナリー名（{@link Object}の場合はnull）。 */
+	private final String superName;
+
+	/** 直接実装するインターフェースのバイナリー名の、変更できないリスト。 */
+	private final List<String> interfaces;
+
+	/** 実行時に参照できるアノテーションの型のバイナリー名の、変更できないリスト。 */
+	private final List<String> annotations;
+
+	/**
+	 * インターフェース（アノテーション型を含む）か判定します。
+	 *
+	 * @return インターフェースの場合はtrue
+	 */
+	public boolean isInterface() {
+		return Modifier.isInterface(accessFlags);
+	}
+
+	/**
+	 * 抽象クラス、またはインターフェースか判定します。
+	 *
+	 * @return 抽象クラス、またはインターフェースの場合はtrue
+	 */
+	public boolean isAbstract() {
+		return Modifier.isAbstract(accessFlags);
+	}
+
+	/**
+	 * publicなクラスか判定します。
+	 *
+	 * @return publicの場合はtrue
+	 */
+	public boolean isPublic() {
+		return Modifier.isPublic(accessFlags);
+	}
+
+	/**
+	 * 指定されたアノテーションが付与されているか判定します。
+	 *
+	 * @param annotationType アノテーションの型（{@link java.lang.annotation.RetentionPolicy#RUNTIME}であること）
+	 * @return 付与されている場合はtrue
+	 */
+	public boolean isAnnotatedWith(Class<?> annotationType) {
+		return annotations.contains(annotationType.getName());
+	}
+
+	/**
+	 * 指定されたインターフェースを直接実装しているか判定します。
+	 *
+	 * <p>
+	 * スーパークラスやスーパーインターフェースを辿る場合は、同じクラスパスから読み取った情報を使用してください。
+	 * </p>
+	 *
+	 * @param interfaceType インターフェース
+	 * @return 直接実装している場合はtrue
+	 */
+	public boolean implementsDirectly(Class<?> interfaceType) {
+		return interfaces.contains(interfaceType.getName());
+	}
+
+	/**
+	 * クラスファイルを解析します。
+	 *
+	 * @param classFile クラスファイル（位置から限界までを読み取ります。位置は変更しません）
+	 * @return クラスの宣言の情報
+	 * @throws IllegalArgumentException クラスファイルとして誤っている場合
+	 */
+	public static ClassMetadata parse(ByteBuffer classFile) {
+		ByteBuffer in = classFile.slice().order(ByteOrder.BIG_ENDIAN);
+
+		try {
+			if (in.getInt() != MAGIC) {
+				throw new IllegalArgumentException("not a class file");
+			}
+
+			in.position(8);                                                     // マイナー・メジャーバージョンは使用しない
+			int[] constants = readConstantPool(in);
+
+			int accessFlags = in.getShort() & 0xffff;
+			String name = className(in, constants, in.getShort() & 0xffff);
+			int superIndex = in.getShort() & 0xffff;
+			String superName = (superIndex == 0) ? null : className(in, constants, superIndex);
+			List<String> interfaces = new ArrayList<>();
+
+			for (int count = in.getShort() & 0xffff; count > 0; count--) {
+				interfaces.add(className(in, constants, in.getShort() & 0xffff));
+			}
+
+			skipMembers(in);                                                    // フィールド
+			skipMembers(in);                                                    // メソッド
+			List<String> annotations = new ArrayList<>();
+
+			for (int count = in.getShort() & 0xffff; count > 0; count--) {
+				int attributeName = in.getShort() & 0xffff;
+				int length = in.getInt();
+				int end = in.position() + length;
+
+				if (utf8(in, constants, attributeName).equals(RUNTIME_VISIBLE_ANNOTATIONS)) {
+					for (int annotation = in.getShort() & 0xffff; annotation > 0; annotation--) {
+						String descriptor = utf8(in, constants, in.getShort() & 0xffff);
+						annotations.add(descriptor.substring(1, descriptor.length() - 1).replace('/', '.'));
+						skipElementValuePairs(in);
+					}
+				}
+
+				in.position(end);
+			}
+
+			return new ClassMetadata(
+					accessFlags,
+					name,
+					superName,
+					Collections.unmodifiableList(interfaces),
+					Collections.unmodifiableList(annotations));
+
+		} catch (BufferUnderflowException | IndexOutOfBoundsException e) {
+			throw new IllegalArgumentException("truncated class file", e);
+		}
+	}
+
+	/**
+	 * コンスタントプールを読み飛ばし、各定数の位置を取得します。
+	 *
+	 * @param in クラスファイル
+	 * @return 定数の番号から、定数のタグの位置への配列
+	 */
+	private static int[] readConstantPool(ByteBuffer in) {
+		int[] constants = new int[in.getShort() & 0xffff];
+
+		for (int index = 1; index < constants.length; index++) {
+			constants[index] = in.position();
+			int tag = in.get();
+
+			switch (tag) {
+			case 1:                                                             // Utf8
+				int length = in.getShort() & 0xffff;
+				in.position(in.position() + length);
+				break;
+			case 7:                                                             // Class
+			case 8:                                                             // String
+			case 16:                                                            // MethodType
+			case 19:                                                            // Module
+			case 20:                                                            // Package
+				in.position(in.position() + 2);
+				break;
+			case 15:                                                            // MethodHandle
+				in.position(in.position() + 3);
+				break;
+			case 3:                                                             // Integer
+			case 4:                                                             // Float
+			case 9:                                                             // Fieldref
+			case 10:                                                            // Methodref
+			case 11:                                                            // InterfaceMethodref
+			case 12:                                                            // NameAndType
+			case 17:                                                            // Dynamic
+			case 18:                                                            // InvokeDynamic
+				in.position(in.position() + 4);
+				break;
+			case 5:                                                             // Long
+			case 6:                                                             // Double
+				in.position(in.position() + 8);
+				index++;                                                        // 2つ分の番号を使用する
+				break;
+			default:
+				throw new IllegalArgumentException("unknown constant pool tag: " + tag);
+			}
+		}
+
+		return constants;
+	}
+
+	/**
+	 * フィールド、またはメソッドの宣言を読み飛ばします。
+	 *
+	 * @param in クラスファイル
+	 */
+	private static void skipMembers(ByteBuffer in) {
+		for (int count = in.getShort() & 0xffff; count > 0; count--) {
+			in.position(in.position() + 6);                                     // アクセスフラグ、名前、ディスクリプター
+
+			for (int attribute = in.getShort() & 0xffff; attribute > 0; attribute--) {
+				in.position(in.position() + 2);
+				int length = in.getInt();
+				in.position(in.position() + length);
+			}
+		}
+	}
+
+	/**
+	 * アノテーションの要素と値の組を読み飛ばします。
+	 *
+	 * @param in クラスファイル
+	 */
+	private static void skipElementValuePairs(ByteBuffer in) {
+		for (int pair = in.getShort() & 0xffff; pair > 0; pair--) {
+			in.position(in.position() + 2);
+			skipElementValue(in);
+		}
+	}
+
+	/**
+	 * アノテーションの要素の値を読み飛ばします。
+	 *
+	 * @param in クラスファイル
+	 */
+	private static void skipElementValue(ByteBuffer in) {
+		char tag = (char) in.get();
+
+		switch (tag) {
+		case 'e':                                                               // 列挙型の定数
+			in.position(in.position() + 4);
+			break;
+		case '@':                                                               // アノテーション
+			in.position(in.position() + 2);
+			skipElementValuePairs(in);
+			break;
+		case '[':                                                               // 配列
+			for (int count = in.getShort() & 0xffff; count > 0; count--) {
+				skipElementValue(in);
+			}
+			break;
+		default:                                                                // 定数、クラス
+			in.position(in.position() + 2);
+			break;
+		}
+	}
+
+	/**
+	 * Class定数が指すクラスのバイナリー名を取得します。
+	 *
+	 * @param in クラスファイル
+	 * @param constants 定数の位置
+	 * @param index Class定数の番号
+	 * @return クラスのバイナリー名
+	 */
+	private static String className(ByteBuffer in, int[] constants, int index) {
+		int position = constants[index];
+
+		if (in.get(position) != 7) {
+			throw new IllegalArgumentException("not a Class constant: #" + index);
+		}
+
+		return utf8(in, constants, in.getShort(position + 1) & 0xffff).replace('/', '.');
+	}
+
+	/**
+	 * Utf8定数の文字列を取得します。
+	 *
+	 * @param in クラスファイル
+	 * @param constants 定数の位置
+	 * @param index Utf8定数の番号
+	 * @return 文字列
+	 */
+	private static String utf8(ByteBuffer in, int[] constants, int index) {
+		int position = constants[index];
+
+		if (in.get(position) != 1) {
+			throw new IllegalArgumentException("not a Utf8 constant: #" + index);
+		}
+
+		int length = in.getShort(position + 1) & 0xffff;
+		int start = position + 3;
+		char[] chars = new char[length];
+		int count = 0;
+
+		// 修正UTF-8（ヌル文字は2バイト、補助文字はサロゲートペアごとに3バイト）
+		for (int i = start; i < start + length; count++) {
+			int b = in.get(i) & 0xff;
+
+			if (b < 0x80) {
+				chars[count] = (char) b;
+				i++;
+			} else if (b < 0xe0) {
+				chars[count] = (char) (((b & 0x1f) << 6) | (in.get(i + 1) & 0x3f));
+				i += 2;
+			} else {
+				chars[count] = (char) (((b & 0x0f) << 12) | ((in.get(i + 1) & 0x3f) << 6) | (in.get(i + 2) & 0x3f));
+				i += 3;
+			}
+		}
+
+		return new String(chars, 0, count);
+	}
+}
@@ -0,0 +1,331 @@
+package jp.satomaru.java8study;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * クラスパス全体から、パッケージごとのクラスを検索します。
+ *
+ * <p>
+ * クラスパスの各要素（JARファイル、またはクラスファイルを展開したディレクトリー）を、{@link ForkJoinPool}で並行に読み込みます。
+ * 要素の一覧を半分ずつに分割してタスクを作成するため、要素が多くても、同時に動くのはプールの並列度の数だけです。
+ * JARファイルは{@link JarIndexCache}を経由して読み込むため、同じキャッシュを使う限り、二度目以降はJARファイルを開きません。
+ * </p>
+ *
+ * <p>
+ * {@link #scanMetadata(String)}は、クラス名に加えて、スーパークラスやインターフェース、アノテーションを、クラスをロードせずに読み取ります。
+ * </p>
+ *
+ * <p>
+ * このクラスはスレッドセーフです。
+ * </p>
+ */
+public final class ClasspathScanner {
+
+	/** クラスファイルの拡張子。 */
+	private static final String CLASS_SUFFIX = ".class";
+
+	/** JARファイルの索引。 */
+	private final JarIndexCache cache;
+
+	/** 読み込みに使用するプール。 */
+	private final ForkJoinPool pool;
+
+	/**
+	 * コンストラクタ（共通プールと、新しい索引を使用します）。
+	 */
+	public ClasspathScanner() {
+		this(new JarIndexCache(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param cache JARファイルの索引
+	 * @param pool 読み込みに使用するプール
+	 */
+	public ClasspathScanner(JarIndexCache cache, ForkJoinPool pool) {
+		this.cache = cache;
+		this.pool = pool;
+	}
+
+	/**
+	 * クラスパス文字列に含まれる、全てのクラスを検索します。
+	 *
+	 * <p>
+	 * クラスパス文字列は、{@link File#pathSeparator}で区切ります。存在しない要素は、JVMと同様に無視します。
+	 * </p>
+	 *
+	 * @param classpath クラスパス文字列
+	 * @return パッケージ名から、直下にあるクラスの完全修飾名（バイナリー名）の、変更できないマップ
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public Map<String, Set<String>> scan(String classpath) throws IOException {
+		return scan(split(classpath));
+	}
+
+	/**
+	 * ディレクトリー直下にある、全てのJARファイルに含まれるクラスを検索します。
+	 *
+	 * @param directory JARファイルを含むディレクトリー
+	 * @return パッケージ名から、直下にあるクラスの完全修飾名（バイナリー名）の、変更できないマップ
+	 * @throws FileNotFoundException ディレクトリーが存在しない場合
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public Map<String, Set<String>> scanDirectory(File directory) throws IOException {
+		File[] jars = directory.listFiles((dir, name) -> name.endsWith(".jar"));
+
+		if (jars == null) {
+			throw new FileNotFoundException(directory.getPath());
+		}
+
+		return scan(Arrays.asList(jars));
+	}
+
+	/**
+	 * クラスパスの要素に含まれる、全てのクラスを検索します。
+	 *
+	 * <p>
+	 * 要素がディレクトリーの場合は、クラスファイルを展開したディレクトリーとして扱います。存在しない要素は無視します。
+	 * </p>
+	 *
+	 * @param entries クラスパスの要素
+	 * @return パッケージ名から、直下にあるクラスの完全修飾名（バイナリー名）の、変更できないマップ
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public Map<String, Set<String>> scan(List<File> entries) throws IOException {
+		ConcurrentMap<String, Set<String>> packages = new ConcurrentHashMap<>();
+
+		invoke(entries, (index, entry) -> {
+			if (entry.isDirectory()) {
+				classFiles(entry.toPath()).forEach(path -> add(packages, className(entry.toPath(), path)));
+			} else if (entry.isFile()) {
+				cache.index(entry).classNames().forEach(className -> add(packages, className));
+			}
+		});
+
+		Map<String, Set<String>> result = new HashMap<>(packages.size() * 4 / 3 + 1);
+		packages.forEach((packageName, classNames) -> result.put(packageName, Collections.unmodifiableSet(classNames)));
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * クラスパス文字列に含まれる全てのクラスの、宣言の情報を読み取ります。
+	 *
+	 * <p>
+	 * クラスファイルのコンスタントプールと属性を直接読むため（{@link ClassMetadata}）、クラスはロードしません。
+	 * 同じ名前のクラスが複数の要素に含まれる場合は、クラスパスの前にある要素を優先します。存在しない要素は無視します。
+	 * </p>
+	 *
+	 * @param classpath クラスパス文字列
+	 * @return クラスのバイナリー名から、宣言の情報への変更できないマップ
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public Map<String, ClassMetadata> scanMetadata(String classpath) throws IOException {
+		return scanMetadata(split(classpath));
+	}
+
+	/**
+	 * クラスパスの要素に含まれる全てのクラスの、宣言の情報を読み取ります。
+	 *
+	 * @param entries クラスパスの要素
+	 * @return クラスのバイナリー名から、宣言の情報への変更できないマップ
+	 * @throws IOException 読み込みに失敗した場合
+	 * @see #scanMetadata(String)
+	 */
+	public Map<String, ClassMetadata> scanMetadata(List<File> entries) throws IOException {
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		List<ClassMetadata>[] results = new List[entries.size()];
+
+		invoke(entries, (index, entry) -> {
+			if (entry.isDirectory()) {
+				List<ClassMetadata> metadata = new ArrayList<>();
+
+				for (Path path : classFiles(entry.toPath())) {
+					try {
+						metadata.add(ClassMetadata.parse(ByteBuffer.wrap(Files.readAllBytes(path))));
+					} catch (IllegalArgumentException e) {
+						throw new IOException("invalid class file: " + path, e);
+					}
+				}
+
+				results[index] = metadata;
+			} else if (entry.isFile()) {
+				results[index] = JarDirectory.metadata(entry, "");
+			}
+		});
+
+		Map<String, ClassMetadata> result = new HashMap<>();
+
+		for (List<ClassMetadata> metadata : results) {                          // クラスパスの順に、先にあるものを優先する
+			if (metadata != null) {
+				metadata.forEach(element -> result.putIfAbsent(element.getName(), element));
+			}
+		}
+
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * クラスパス文字列を、要素に分割します。
+	 *
+	 * @param classpath クラスパス文字列
+	 * @return クラスパスの要素
+	 */
+	private static List<File> split(String classpath) {
+		return Arrays.stream(classpath.split(File.pathSeparator))
+				.filter(path -> !path.isEmpty())
+				.map(File::new)
+				.collect(Collectors.toList());
+	}
+
+	/**
+	 * クラスパスの要素ごとの処理を、プールで並行に行います。
+	 *
+	 * @param entries クラスパスの要素
+	 * @param action 要素ごとの処理
+	 * @throws IOException 処理に失敗した場合
+	 */
+	private void invoke(List<File> entries, EntryAction action) throws IOException {
+		try {
+			pool.invoke(new ScanTask(entries.toArray(new File[entries.size()]), 0, entries.size(), action));
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * クラスファイルを展開したディレクトリーから、全てのクラスファイル（パッケージ情報、モジュール宣言、{@code META-INF}配下を除く）を取得します。
+	 *
+	 * @param root ディレクトリー
+	 * @return クラスファイル
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static List<Path> classFiles(Path root) throws IOException {
+		try (Stream<Path> paths = Files.walk(root)) {
+			return paths.filter(path -> {
+				String name = path.getFileName().toString();
+				return name.endsWith(CLASS_SUFFIX)
+						&& !name.equals("package-info.class")
+						&& !path.equals(root.resolve("module-info.class"))
+						&& !root.relativize(path).startsWith("META-INF")
+						&& Files.isRegularFile(path);
+			}).collect(Collectors.toList());
+		} catch (UncheckedIOException e) {
+			throw e.getCause();
+		}
+	}
+
+	/**
+	 * クラスファイルのパスから、クラスのバイナリー名を取得します。
+	 *
+	 * @param root クラスファイルを展開したディレクトリー
+	 * @param path クラスファイル
+	 * @return クラスのバイナリー名
+	 */
+	private static String className(Path root, Path path) {
+		String name = root.relativize(path).toString();
+		return name.substring(0, name.length() - CLASS_SUFFIX.length()).replace(File.separatorChar, '.');
+	}
+
+	/**
+	 * クラスを、そのパッケージに追加します。
+	 *
+	 * @param packages 検索結果の格納先
+	 * @param className クラスのバイナリー名
+	 */
+	private static void add(ConcurrentMap<String, Set<String>> packages, String className) {
+		int dot = className.lastIndexOf('.');
+		String packageName = (dot < 0) ? "" : className.substring(0, dot);      // 無名パッケージは空文字列
+		packages.computeIfAbsent(packageName, key -> ConcurrentHashMap.newKeySet()).add(className);
+	}
+
+	/**
+	 * クラスパスの要素ごとの処理です。
+	 */
+	@FunctionalInterface
+	private interface EntryAction {
+
+		/**
+		 * 処理を行います。
+		 *
+		 * @param index 要素の番号
+		 * @param entry 要素
+		 * @throws IOException 処理に失敗した場合
+		 */
+		void accept(int index, File entry) throws IOException;
+	}
+
+	/**
+	 * クラスパスの要素の一部を処理するタスクです。
+	 */
+	private static final class ScanTask extends RecursiveAction {
+
+		/** シリアルバージョンUID。 */
+		private static final long serialVersionUID = 1L;
+
+		/** クラスパスの要素。 */
+		private final File[] entries;
+
+		/** 読み込む範囲の先頭。 */
+		private final int from;
+
+		/** 読み込む範囲の末尾（この位置を含まない）。 */
+		private final int to;
+
+		/** 要素ごとの処理。 */
+		private final EntryAction action;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param entries クラスパスの要素
+		 * @param from 読み込む範囲の先頭
+		 * @param to 読み込む範囲の末尾（この位置を含まない）
+		 * @param action 要素ごとの処理
+		 */
+		private ScanTask(File[] entries, int from, int to, EntryAction action) {
+			this.entries = entries;
+			this.from = from;
+			this.to = to;
+			this.action = action;
+		}
+
+		@Override
+		protected void compute() {
+			if (to - from > 1) {
+				int middle = (from + to) >>> 1;
+				invokeAll(new ScanTask(entries, from, middle, action), new ScanTask(entries, middle, to, action));
+				return;
+			}
+
+			if (from == to) {
+				return;
+			}
+
+			try {
+				action.accept(from, entries[from]);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+	}
+}
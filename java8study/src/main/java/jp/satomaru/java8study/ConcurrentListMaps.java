@@ -0,0 +1,271 @@
+package jp.satomaru.java8study;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * リストを値として持つマップの作成を、複数のスレッドから同時に行えるように補助します。
+ *
+ * <p>
+ * 使い方は{@link ListMaps}と同じです。
+ * キーごとのリストの作成は{@link ConcurrentHashMap#computeIfAbsent(Object, java.util.function.Function)}により不可分に行い、
+ * 値の追加はロックを使用せずに、キーごとのリストへ直接行います。
+ * そのため、異なるキーはもちろん、同じキーに対しても、複数のスレッドが互いを待たずに値を追加できます。
+ * </p>
+ *
+ * <p>
+ * {@link #end(boolean)}は、リストを一つずつ複製します（マップ全体を一時点で止めることはしません）。
+ * 追加と同時に呼び出した場合、各リストは一貫した内容（そのリストの、ある時点までの値）になりますが、キーをまたいだ一貫性はありません。
+ * マップ全体の一時点の内容が必要な場合は、全ての追加が終わってから呼び出してください。
+ * </p>
+ *
+ * @param <K> マップのキー
+ * @param <E> リストの値
+ */
+public class ConcurrentListMaps<K, E> {
+
+	/**
+	 * マップの作成を開始します。
+	 *
+	 * @return ConcurrentListMapsオブジェクト
+	 */
+	public static <K, E> ConcurrentListMaps<K, E> begin() {
+		return new ConcurrentListMaps<K, E>();
+	}
+
+	/** リストの作成を補助します。 */
+	@RequiredArgsConstructor
+	public class Lists {
+
+		/** 現在、作成の補助をしているリスト。 */
+		private final AppendList<E> current;
+
+		/**
+		 * リストに値を追加します。
+		 *
+		 * <p>
+		 * 一度に追加した値は、他のスレッドが同時に追加した値と混ざらず、連続して並びます。
+		 * </p>
+		 *
+		 * @param values 値
+		 * @return このListsオブジェクト自身
+		 */
+		public Lists add(@SuppressWarnings("unchecked") E... values) {
+			current.addAll(values);
+			return this;
+		}
+
+		/**
+		 * リストの作成を終了します。
+		 *
+		 * @return ConcurrentListMapsオブジェクト
+		 */
+		public ConcurrentListMaps<K, E> end() {
+			return ConcurrentListMaps.this;
+		}
+	}
+
+	/**
+	 * ロックを使用せずに、複数のスレッドから値を追加できるリストです。
+	 *
+	 * <p>
+	 * 値は、大きさが倍々になるチャンクに格納するため、追加時に既存の値を複製することはありません。
+	 * 追加するスレッドは、格納先のチャンクを作成してから位置をまとめて予約し、その後で値を書き込みます。
+	 * 予約した後は配列への代入しか行わないため、予約された位置は必ず書き込まれます。
+	 * </p>
+	 *
+	 * @param <E> リストの値
+	 */
+	static final class AppendList<E> {
+
+		/** 最初のチャンクの大きさ（2の累乗）。 */
+		private static final int FIRST_CHUNK_SHIFT = 3;
+
+		/** チャンクの最大数（大きさがint型に収まる数）。 */
+		private static final int MAX_CHUNKS = 31 - FIRST_CHUNK_SHIFT;
+
+		/** 格納できる値の最大数。 */
+		private static final int MAX_SIZE = ((1 << MAX_CHUNKS) - 1) << FIRST_CHUNK_SHIFT;
+
+		/** nullの値を表すオブジェクト（未書き込みの位置と区別するため）。 */
+		private static final Object NULL = new Object();
+
+		/** 予約済みの値の数。 */
+		private final AtomicInteger reserved = new AtomicInteger();
+
+		/** チャンク（作成されていないチャンクはnull）。 */
+		private final AtomicReferenceArray<AtomicReferenceArray<Object>> chunks = new AtomicReferenceArray<>(MAX_CHUNKS);
+
+		/**
+		 * 値を追加します。
+		 *
+		 * @param values 値
+		 */
+		void addAll(E[] values) {
+			if (values.length == 0) {
+				return;
+			}
+
+			int start;
+
+			do {
+				start = reserved.get();
+
+				if (values.length > MAX_SIZE - start) {
+					throw new IllegalStateException("too many values");
+				}
+
+				for (int chunk = chunkOf(start); chunk <= chunkOf(start + values.length - 1); chunk++) {
+					slots(chunk);                                               // 予約した後に、チャンクの作成で失敗しないよう先に作成
+				}
+			} while (!reserved.compareAndSet(start, start + values.length));    // 格納する位置を、まとめて予約
+
+			for (int i = 0; i < values.length; i++) {
+				int index = start + i;
+				int chunk = chunkOf(index);
+				chunks.get(chunk).set(offsetOf(index, chunk), (values[i] != null) ? values[i] : NULL);
+			}
+		}
+
+		/**
+		 * 現時点での内容を複製します。
+		 *
+		 * <p>
+		 * 複製を開始する時点までに予約された値を、全て含みます。
+		 * 予約済みで、まだ書き込まれていない値がある場合は、書き込まれるまで待ちます
+		 * （チャンクは予約前に作成済みのため、待つのは、追加するスレッドが配列へ代入し終えるまでの間だけです）。
+		 * </p>
+		 *
+		 * @return 内容を複製したリスト
+		 */
+		@SuppressWarnings("unchecked")
+		List<E> snapshot() {
+			int size = reserved.get();
+			List<E> list = new ArrayList<>(size);
+
+			for (int index = 0; index < size; index++) {
+				int chunk = chunkOf(index);
+				AtomicReferenceArray<Object> slots = chunks.get(chunk);
+				Object value;
+
+				while ((value = slots.get(offsetOf(index, chunk))) == null) {
+					Thread.yield();                                             // 他のスレッドが書き込み中
+				}
+
+				list.add((value != NULL) ? (E) value : null);
+			}
+
+			return list;
+		}
+
+		/**
+		 * チャンクを取得します。存在しない場合は作成します。
+		 *
+		 * @param chunk チャンクのインデックス
+		 * @return チャンク
+		 */
+		private AtomicReferenceArray<Object> slots(int chunk) {
+			AtomicReferenceArray<Object> slots = chunks.get(chunk);
+
+			if (slots == null) {
+				chunks.compareAndSet(chunk, null, new AtomicReferenceArray<>(1 << (chunk + FIRST_CHUNK_SHIFT)));
+				slots = chunks.get(chunk);                                      // 他のスレッドが先に作成した場合は、そちらを使用
+			}
+
+			return slots;
+		}
+
+		/**
+		 * 値のインデックスから、チャンクのインデックスを求めます。
+		 *
+		 * @param index 値のインデックス
+		 * @return チャンクのインデックス
+		 */
+		private static int chunkOf(int index) {
+			return 31 - Integer.numberOfLeadingZeros((index >>> FIRST_CHUNK_SHIFT) + 1);
+		}
+
+		/**
+		 * 値のインデックスから、チャンク内の位置を求めます。
+		 *
+		 * @param index 値のインデックス
+		 * @param chunk チャンクのインデックス
+		 * @return チャンク内の位置
+		 */
+		private static int offsetOf(int index, int chunk) {
+			return index - (((1 << chunk) - 1) << FIRST_CHUNK_SHIFT);
+		}
+	}
+
+	/** 作成するマップ。 */
+	private final ConcurrentMap<K, AppendList<E>> instance = new ConcurrentHashMap<>();
+
+	/**
+	 * コンストラクタ。
+	 */
+	private ConcurrentListMaps() {
+	}
+
+	/**
+	 * リストの作成を開始します。
+	 *
+	 * <p>
+	 * 同じキーで同時に呼び出された場合も、リストは一つだけ作成されます。
+	 * </p>
+	 *
+	 * @param key このリストに割り当てる、マップのキー
+	 * @return リストの作成に用いるListsオブジェクト
+	 */
+	public Lists begin(K key) {
+		AppendList<E> list = instance.get(key);                                 // 既に存在する場合は、ロックせずに取得
+
+		if (list == null) {
+			list = instance.computeIfAbsent(key, k -> new AppendList<>());
+		}
+
+		return new Lists(list);
+	}
+
+	/**
+	 * マップの作成を終了します。
+	 *
+	 * <p>
+	 * 現時点でのマップの内容を、リストごとに複製して返却します。
+	 * 各リストは、そのリストの複製を開始する時点までに追加された値を、追加された順に全て含みます。
+	 * 追加と同時に呼び出した場合、キーをまたいだ一貫性はありません（あるキーには含まれる後の追加が、先に複製した別のキーには含まれないことがあります）。
+	 * マップ全体の一時点の内容が必要な場合は、全ての追加が終わってから呼び出してください。
+	 * 複製後も値を追加できますが、返却したマップには反映されません。
+	 * </p>
+	 *
+	 * @param immutable マップを不変オブジェクトとして受け取る場合はtrue
+	 * @return 作成したマップ
+	 */
+	public Map<K, List<E>> end(boolean immutable) {
+		Map<K, List<E>> snapshot = new HashMap<>(Math.max(16, (int) (instance.size() / 0.75f) + 1));
+
+		instance.forEach((key, list) -> {
+			List<E> values = list.snapshot();
+			snapshot.put(key, immutable ? Collections.unmodifiableList(values) : values);
+		});
+
+		return immutable ? Collections.unmodifiableMap(snapshot) : snapshot;
+	}
+
+	/**
+	 * マップの作成を終了します。
+	 *
+	 * @return 作成したマップ（変更可能な複製）
+	 */
+	public Map<K, List<E>> end() {
+		return end(false);
+	}
+}
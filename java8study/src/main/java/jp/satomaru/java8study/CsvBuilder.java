@@ -1,14 +1,27 @@
 package jp.satomaru.java8study;
 
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Deque;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
-import java.util.Optional;
+import java.util.RandomAccess;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
 import java.util.function.Function;
-import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
-import lombok.RequiredArgsConstructor;
+import lombok.AccessLevel;
+import lombok.Getter;
 import lombok.Setter;
 
 /**
@@ -16,13 +29,88 @@ import lombok.Setter;
  *
  * @param <E> CSVを作成する元となるオブジェクト
  */
-@RequiredArgsConstructor // final かつ 未初期化のフィールドだけを引数に受け取るコンストラクタを自動生成できる。
 @Setter
 public class CsvBuilder<E> {
 
-	/** オブジェクトから列を取得する関数。 */
+	/** 文字列をクォーテーションする方針。 */
+	public enum Quoting {
+
+		/** 常にクォーテーションします。 */
+		ALWAYS,
+
+		/** 列の区切り記号、クォーテーション記号、改行のいずれかを含む場合のみクォーテーションします（RFC 4180）。 */
+		MINIMAL
+	}
+
+	/** {@link #formatters}に対応する関数が存在しないことを表す関数（実際には呼び出さない）。 */
+	private static final Function<Object, String> DEFAULT_FORMATTER = Object::toString;
+
+	/**
+	 * 列の型ごとに、列を文字列に変換する関数を解決します。
+	 *
+	 * <p>
+	 * 列の型、そのスーパークラス、インターフェースの順に{@link #formatters}を検索し、
+	 * 結果は{@link ClassValue}により具象クラスごとに一度だけ計算されます。
+	 * 解決結果がCsvBuilderを参照しないように、関数のマップの複製を保持します。
+	 * </p>
+	 */
+	private static final class FormatterResolver extends ClassValue<Function<Object, String>> {
+
+		/** 列を文字列に変換する関数のマップの複製。 */
+		private final Map<Class<?>, Function<Object, String>> formatters;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param formatters 列を文字列に変換する関数のマップ
+		 */
+		private FormatterResolver(Map<Class<?>, Function<Object, String>> formatters) {
+			this.formatters = Collections.unmodifiableMap(new HashMap<>(formatters));
+		}
+
+		@Override
+		protected Function<Object, String> computeValue(Class<?> type) {
+			if (formatters.isEmpty()) {
+				return DEFAULT_FORMATTER;
+			}
+
+			// スーパークラスを優先して検索
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				Function<Object, String> formatter = formatters.get(current);
+
+				if (formatter != null) {
+					return formatter;
+				}
+			}
+
+			// インターフェースは、近いものから幅優先で検索
+			Deque<Class<?>> queue = new ArrayDeque<>();
+
+			for (Class<?> current = type; current != null; current = current.getSuperclass()) {
+				Collections.addAll(queue, current.getInterfaces());
+			}
+
+			while (!queue.isEmpty()) {
+				Class<?> current = queue.poll();
+				Function<Object, String> formatter = formatters.get(current);
+
+				if (formatter != null) {
+					return formatter;
+				}
+
+				Collections.addAll(queue, current.getInterfaces());
+			}
+
+			return DEFAULT_FORMATTER;
+		}
+	}
+
+	/** オブジェクトから列を取得する関数（列の定義を使用する場合はnull）。 */
 	private final Function<E, Object[]> picker;
 
+	/** 列の定義（オブジェクトから列を取得する関数を使用する場合はnull）。 */
+	private final CsvSchema<E> schema;
+
 	/** 列を文字列に変換する関数のマップ。キーは列の型。 */
 	private final Map<Class<?>, Function<Object, String>> formatters = new HashMap<>();
 
@@ -35,12 +123,108 @@ public class CsvBuilder<E> {
 	/** 列の区切り記号。 */
 	private String columnSeparator = ",";
 
+	/** 文字列をクォーテーションする方針。 */
+	private Quoting quoting = Quoting.ALWAYS;
+
 	/** 行の区切り記号。 */
+	@Getter(AccessLevel.PACKAGE)
 	private String lineSeparator = System.getProperty("line.separator");
 
+	/** 書き出し時に、バッファーの内容を出力先へ渡す文字数の目安。 */
+	@Getter(AccessLevel.PACKAGE)
+	@Setter(AccessLevel.NONE)
+	private int flushThreshold = 8192;
+
+	/** 並列で作成する際に、一つのタスクが作成する行数。 */
+	@Setter(AccessLevel.NONE)
+	private int chunkSize = 4096;
+
+	/** 列の型ごとに、列を文字列に変換する関数を解決するキャッシュ。 */
+	@Setter(AccessLevel.NONE)
+	private FormatterResolver resolver = new FormatterResolver(formatters);
+
+	/** 見出し行の列名（{@link #header(String...)}で宣言されていない場合はnull）。 */
+	@Setter(AccessLevel.NONE)
+	private String[] header;
+
+	/** 列の型（{@link #columns(Class...)}で宣言されていない場合はnull）。 */
+	@Setter(AccessLevel.NONE)
+	private Class<?>[] columnTypes;
+
+	/** 列ごとに解決した、列を文字列に変換する関数（列の型が宣言されていない場合はnull）。 */
+	@Setter(AccessLevel.NONE)
+	private Function<Object, String>[] columnFormatters;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * <p>
+	 * オブジェクトから列を配列で取得する関数を使用します。
+	 * 行ごとに配列を作成し、プリミティブ型の列はボクシングされるため、
+	 * 大量の行を作成する場合は{@link #CsvBuilder(CsvSchema)}を使用してください。
+	 * </p>
+	 *
+	 * @param picker オブジェクトから列を取得する関数
+	 */
+	public CsvBuilder(Function<E, Object[]> picker) {
+		this.picker = picker;
+		this.schema = null;
+	}
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * <p>
+	 * 列の定義を使用します。
+	 * 列ごとに値を取得してバッファーに直接追加するため、行ごとに配列を作成せず、
+	 * プリミティブ型の列もボクシングしません。
+	 * {@link #columns(Class...)}による列の型の宣言は使用しません。
+	 * </p>
+	 *
+	 * @param schema 列の定義
+	 */
+	public CsvBuilder(CsvSchema<E> schema) {
+		this.picker = null;
+		this.schema = schema;
+	}
+
+	/**
+	 * 書き出し時に、バッファーの内容を出力先へ渡す文字数の目安を設定します。
+	 *
+	 * @param flushThreshold 文字数（1以上）
+	 * @throws IllegalArgumentException 1未満の場合
+	 */
+	public void setFlushThreshold(int flushThreshold) {
+		if (flushThreshold < 1) {
+			throw new IllegalArgumentException("flushThreshold: " + flushThreshold);
+		}
+
+		this.flushThreshold = flushThreshold;
+	}
+
+	/**
+	 * 並列で作成する際に、一つのタスクが作成する行数を設定します。
+	 *
+	 * @param chunkSize 行数（1以上）
+	 * @throws IllegalArgumentException 1未満の場合
+	 */
+	public void setChunkSize(int chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize: " + chunkSize);
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
 	/**
 	 * 列を文字列に変換する関数を追加します。
 	 *
+	 * <p>
+	 * 関数は、列の型そのものだけでなく、そのサブクラスや実装クラスの列にも使用されます。
+	 * 複数の関数が該当する場合は、スーパークラスに追加された関数のうち最も近いものを、
+	 * 次にインターフェースに追加された関数のうち最も近いものを使用します。
+	 * </p>
+	 *
 	 * @param type 列の型
 	 * @param formatter 列を文字列に変換する関数
 	 * @return このオブジェクト自身
@@ -48,6 +232,54 @@ public class CsvBuilder<E> {
 	@SuppressWarnings("unchecked")
 	public <T> CsvBuilder<E> addFormatter(Class<T> type, Function<T, String> formatter) {
 		formatters.put(type, (Function<Object, String>) formatter);
+		resolver = new FormatterResolver(formatters);                          // 解決済みの結果を破棄
+
+		if (columnTypes != null) {
+			columns(columnTypes);
+		}
+
+		return this;
+	}
+
+	/**
+	 * 列の型を宣言します。
+	 *
+	 * <p>
+	 * 宣言した列の型に対応する関数を、この時点で列ごとに解決しておきます。
+	 * 宣言した列には、値の実際の型に関係なく、解決しておいた関数を使用するため、
+	 * 行の作成時に関数を検索する必要がなくなります。
+	 * 宣言した数を超える列は、宣言していない場合と同様に、値の型から関数を解決します。
+	 * </p>
+	 *
+	 * @param types 列の型（先頭の列から順番に指定）
+	 * @return このオブジェクト自身
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	public CsvBuilder<E> columns(Class<?>... types) {
+		Function<Object, String>[] resolved = new Function[types.length];
+
+		for (int i = 0; i < types.length; i++) {
+			resolved[i] = resolver.get(types[i]);
+		}
+
+		columnTypes = types.clone();
+		columnFormatters = resolved;
+		return this;
+	}
+
+	/**
+	 * 見出し行を宣言します。
+	 *
+	 * <p>
+	 * 宣言した場合、作成するCSVの先頭に見出し行を追加します。
+	 * 列名は、文字列の列と同様にクォーテーションします。
+	 * </p>
+	 *
+	 * @param names 列名（先頭の列から順番に指定）
+	 * @return このオブジェクト自身
+	 */
+	public CsvBuilder<E> header(String... names) {
+		header = names.clone();
 		return this;
 	}
 
@@ -55,16 +287,17 @@ public class CsvBuilder<E> {
 	 * CSVを作成します。
 	 *
 	 * <p>
-	 * 各オブジェクトを{@link #picker}で配列化し、{@link #formatters}で文字列に変換して{@link #columnSeparator}で連結した後、
+	 * 各オブジェクトを{@link #picker}で配列化（または{@link #schema}の列ごとに取得）し、{@link #formatters}で文字列に変換して{@link #columnSeparator}で連結した後、
 	 * その各オブジェクトの結果を{@link #lineSeparator}で連結します。
 	 * </p>
 	 *
 	 * <p>
-	 * {@link #formatters}に列の型に対応する関数が追加されていない型の場合、
+	 * {@link #formatters}に列の型（そのスーパークラスおよびインターフェースを含む）に対応する関数が追加されていない型の場合、
 	 * Number型のサブクラスおよびBoolean型の時は{@link Object#toString()}を使用します。
 	 * それ以外の型の時は、{@link Object#toString()}で文字列に変換した後、
 	 * 文字列中の{@link #quotation}を{@link #escapedQuotation}に置換して、
 	 * 文字列の前後に{@link #quotation}を追加します。
+	 * ただし{@link #quoting}が{@link Quoting#MINIMAL}の時は、クォーテーションが必要な文字列に限ります。
 	 * また列の値がnullの時は、型に関係なくブランクになります。
 	 * </p>
 	 *
@@ -72,23 +305,329 @@ public class CsvBuilder<E> {
 	 * @return CSV
 	 */
 	public String build(Collection<E> entities) {
-		return entities.stream()
-				.map(picker)                                  // EntityクラスをObject[]に変換
-				.map(this::createRecord)                      // １行ずつ文字列変換
-				.collect(Collectors.joining(lineSeparator));  // lineSeparatorで連結して返却
+		return buildChunk(entities, true).toString();
+	}
+
+	/**
+	 * CSVを並列で作成します。
+	 *
+	 * <p>
+	 * 共通プール（{@link ForkJoinPool#commonPool()}）を使用します。
+	 * 詳細は{@link #buildParallel(Collection, ForkJoinPool)}を参照してください。
+	 * </p>
+	 *
+	 * @param entities CSVを作成する元となるオブジェクトのコレクション
+	 * @return CSV
+	 */
+	public String buildParallel(Collection<E> entities) {
+		return buildParallel(entities, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * CSVを並列で作成します。
+	 *
+	 * <p>
+	 * オブジェクトを{@link #chunkSize}行ずつのチャンクに分割し、
+	 * 各チャンクを指定されたプール上でそれぞれのバッファーに作成した後、元の順番で連結します。
+	 * 結果は{@link #build(Collection)}と完全に一致します。
+	 * </p>
+	 *
+	 * <p>
+	 * 作成中に{@link #addFormatter(Class, Function)}や各種の設定を変更してはいけません。
+	 * </p>
+	 *
+	 * @param entities CSVを作成する元となるオブジェクトのコレクション
+	 * @param pool CSVの作成に使用するプール
+	 * @return CSV
+	 */
+	public String buildParallel(Collection<E> entities, ForkJoinPool pool) {
+		List<E> list = (entities instanceof List && entities instanceof RandomAccess)
+				? (List<E>) entities
+				: new ArrayList<>(entities);                                    // subListで分割できるように
+
+		int size = list.size();
+		List<ForkJoinTask<StringBuilder>> tasks = new ArrayList<>(size / chunkSize + 1);
+
+		if (size == 0) {
+			return build(list);
+		}
+
+		for (int from = 0; from < size; from += chunkSize) {
+			List<E> chunk = list.subList(from, Math.min(size, from + chunkSize));
+			boolean head = (from == 0);
+			tasks.add(pool.submit(() -> buildChunk(chunk, head)));              // 各チャンクは独立したバッファーに作成
+		}
+
+		List<StringBuilder> chunks = new ArrayList<>(tasks.size());
+		long length = 0;
+
+		for (ForkJoinTask<StringBuilder> task : tasks) {
+			StringBuilder chunk = task.join();                                  // 元の順番で結果を受け取る
+			chunks.add(chunk);
+			length += chunk.length() + lineSeparator.length();
+		}
+
+		StringBuilder buffer = new StringBuilder(capacity(length));
+
+		for (int i = 0; i < chunks.size(); i++) {
+			if (i > 0) {
+				buffer.append(lineSeparator);
+			}
+
+			buffer.append(chunks.get(i));
+		}
+
+		return buffer.toString();
+	}
+
+	/**
+	 * CSVのチャンクを作成します。
+	 *
+	 * @param chunk チャンクに含めるオブジェクト
+	 * @param head 先頭のチャンクの場合はtrue（見出し行を追加する）
+	 * @return CSVのチャンク（最後の行の後に行の区切り記号は含まない）
+	 */
+	private StringBuilder buildChunk(Collection<E> chunk, boolean head) {
+		StringBuilder buffer = new StringBuilder(capacity((long) Math.min(chunk.size(), chunkSize) * 64));
+		boolean first = !(head && appendHeader(buffer));
+
+		for (E entity : chunk) {                                                // １行ずつバッファーに追加
+			if (!first) {
+				buffer.append(lineSeparator);
+			}
+
+			appendRecord(buffer, entity);
+			first = false;
+		}
+
+		return buffer;
+	}
+
+	/**
+	 * バッファーの初期容量を、配列の最大長に収まるように切り詰めます。
+	 *
+	 * @param estimate 見積もった容量
+	 * @return 初期容量
+	 */
+	private static int capacity(long estimate) {
+		return (int) Math.min(Integer.MAX_VALUE - 8, estimate);
+	}
+
+	/**
+	 * CSVを出力先に書き出します。
+	 *
+	 * <p>
+	 * {@link #build(Collection)}と同じ内容を、一行ずつ再利用するバッファーに作成し、
+	 * バッファーが{@link #flushThreshold}に達するごとに出力先へ渡します。
+	 * CSV全体を一つの文字列として保持しないため、行数に関係なく使用するメモリーは一定です。
+	 * </p>
+	 *
+	 * @param out 出力先
+	 * @param entities CSVを作成する元となるオブジェクト
+	 * @throws IOException 出力先への書き出しに失敗した場合
+	 */
+	public void writeTo(Appendable out, Iterable<E> entities) throws IOException {
+		writeTo(out, entities.iterator());
+	}
+
+	/**
+	 * CSVを出力先に書き出します。
+	 *
+	 * <p>
+	 * ストリームは先頭から順番に一度だけ消費されます。
+	 * 詳細は{@link #writeTo(Appendable, Iterable)}を参照してください。
+	 * </p>
+	 *
+	 * @param out 出力先
+	 * @param entities CSVを作成する元となるオブジェクトのストリーム
+	 * @throws IOException 出力先への書き出しに失敗した場合
+	 */
+	public void writeTo(Appendable out, Stream<E> entities) throws IOException {
+		writeTo(out, entities.iterator());
+	}
+
+	/**
+	 * CSVを出力先に書き出します。
+	 *
+	 * @param out 出力先
+	 * @param entities CSVを作成する元となるオブジェクトのイテレーター
+	 * @throws IOException 出力先への書き出しに失敗した場合
+	 */
+	private void writeTo(Appendable out, Iterator<E> entities) throws IOException {
+		char[] chars = (out instanceof Writer) ? new char[Math.max(flushThreshold, 1024)] : null;
+		render(entities, chunk -> copyTo(out, chunk, chars));
+	}
+
+	/**
+	 * バッファーの内容を出力先に渡します。
+	 *
+	 * <p>
+	 * 出力先が{@link Writer}の場合は、文字列を作成せずに文字配列を経由して書き出します。
+	 * </p>
+	 *
+	 * @param out 出力先
+	 * @param chunk バッファー
+	 * @param chars 経由する文字配列（出力先がWriterではない場合はnull）
+	 * @throws IOException 出力先への書き出しに失敗した場合
+	 */
+	static void copyTo(Appendable out, StringBuilder chunk, char[] chars) throws IOException {
+		if (chars == null) {
+			out.append(chunk);
+			return;
+		}
+
+		Writer writer = (Writer) out;
+
+		for (int from = 0; from < chunk.length(); from += chars.length) {
+			int to = Math.min(chunk.length(), from + chars.length);
+			chunk.getChars(from, to, chars, 0);
+			writer.write(chars, 0, to - from);
+		}
+	}
+
+	/**
+	 * CSVをUTF-8に変換してチャネルに書き出します。
+	 *
+	 * <p>
+	 * 一行ずつ再利用するバッファーに作成し、バッファーが{@link #flushThreshold}に達するごとに、
+	 * プールしているダイレクトバッファーへ直接UTF-8で書き込みます。
+	 * ダイレクトバッファーが全て埋まった時点で、まとめてチャネルに書き出します。
+	 * チャネルが{@link java.nio.channels.FileChannel}などの{@link java.nio.channels.GatheringByteChannel}の場合は、
+	 * 複数のバッファーを一度に書き出します。
+	 * 文字列やバイト配列を経由しないため、文字からバイトへの変換は一度だけです。
+	 * </p>
+	 *
+	 * <p>
+	 * チャネルは閉じません。
+	 * </p>
+	 *
+	 * @param channel 書き出し先のチャネル
+	 * @param entities CSVを作成する元となるオブジェクト
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	public void encodeTo(WritableByteChannel channel, Iterable<E> entities) throws IOException {
+		try (Utf8ChannelWriter writer = new Utf8ChannelWriter(channel)) {
+			render(entities.iterator(), writer::write);
+		}
 	}
 
 	/**
-	 * CSVの行を作成します。
+	 * CSVをUTF-8に変換して出力ストリームに書き出します。
+	 *
+	 * <p>
+	 * 出力ストリームはチャネルに変換して使用します（{@link java.io.FileOutputStream}の場合は、そのファイルチャネルになります）。
+	 * 詳細は{@link #encodeTo(WritableByteChannel, Iterable)}を参照してください。
+	 * </p>
+	 *
+	 * @param out 書き出し先の出力ストリーム
+	 * @param entities CSVを作成する元となるオブジェクト
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	public void encodeTo(OutputStream out, Iterable<E> entities) throws IOException {
+		encodeTo(Channels.newChannel(out), entities);
+	}
+
+	/**
+	 * 作成したCSVの一部を受け取る関数です。
+	 */
+	@FunctionalInterface
+	private interface ChunkConsumer {
+
+		/**
+		 * CSVの一部を受け取ります。
+		 *
+		 * @param chunk CSVの一部（呼び出し後に再利用されます）
+		 * @throws IOException 書き出しに失敗した場合
+		 */
+		void accept(StringBuilder chunk) throws IOException;
+	}
+
+	/**
+	 * CSVを一行ずつ作成し、{@link #flushThreshold}に達するごとに関数へ渡します。
+	 *
+	 * @param entities CSVを作成する元となるオブジェクトのイテレーター
+	 * @param consumer 作成したCSVの一部を受け取る関数
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	private void render(Iterator<E> entities, ChunkConsumer consumer) throws IOException {
+		StringBuilder buffer = new StringBuilder(flushThreshold + 256);
+		boolean first = !appendHeader(buffer);
+
+		while (entities.hasNext()) {
+			if (!first) {
+				buffer.append(lineSeparator);
+			}
+
+			appendRecord(buffer, entities.next());
+			first = false;
+
+			if (buffer.length() >= flushThreshold) {
+				consumer.accept(buffer);
+				buffer.setLength(0);                                            // バッファーを再利用
+			}
+		}
+
+		if (buffer.length() > 0) {
+			consumer.accept(buffer);
+		}
+	}
+
+	/**
+	 * 見出し行が宣言されている場合、バッファーに追加します。
+	 *
+	 * @param buffer バッファー
+	 * @return 見出し行を追加した場合はtrue
+	 */
+	boolean appendHeader(StringBuilder buffer) {
+		if (header == null) {
+			return false;
+		}
+
+		for (int i = 0; i < header.length; i++) {
+			if (i > 0) {
+				buffer.append(columnSeparator);
+			}
+
+			appendQuoted(buffer, header[i]);
+		}
+
+		return true;
+	}
+
+	/**
+	 * CSVの行を作成し、バッファーに追加します。
 	 *
 	 * <p>
 	 * 列を{@link #formatters}で文字列に変換した後、{@link #columnSeparator}で連結します。
-	 * {@link #formatters}に列の型に対応する関数が追加されていない型の場合は{@link #defaultFormat(Object)}を使用します。
+	 * {@link #formatters}に列の型（そのスーパークラスおよびインターフェースを含む）に対応する関数が追加されていない型の場合は{@link #appendDefault(StringBuilder, Object)}を使用します。
 	 * また列がnullの場合はブランクを使用します。
 	 * </p>
 	 *
+	 * @param buffer バッファー
+	 * @param entity CSVを作成する元となるオブジェクト
+	 */
+	void appendRecord(StringBuilder buffer, E entity) {
+		if (schema == null) {
+			appendRecord(buffer, picker.apply(entity));
+			return;
+		}
+
+		CsvSchema.Column<E>[] columns = schema.columns();
+
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				buffer.append(columnSeparator);
+			}
+
+			columns[i].append(this, buffer, entity);                            // 配列を経由せずに直接追加
+		}
+	}
+
+	/**
+	 * 列の配列から、CSVの行を作成してバッファーに追加します。
+	 *
+	 * @param buffer バッファー
 	 * @param columns 列の配列
-	 * @return CSVの行
 	 */
 //	private String createRecord(Object[] columns) {
 //		return Stream.of(columns)                                       // オブジェクト配列のストリームを生成
@@ -106,45 +645,171 @@ public class CsvBuilder<E> {
 //		}
 //	}
 
-	private String createRecord(Object[] columns) {
-		return Stream.of(columns)
-			.map(column -> Optional.ofNullable(column)
-					// Map#getOrDefault(Object, V) というメソッドを使えば、ラムダ式で全て処理できます。
-					.map(value -> formatters.getOrDefault(value.getClass(), this::defaultFormat).apply(value))
-					.orElse(""))
-			.collect(Collectors.joining(columnSeparator));
+	private void appendRecord(StringBuilder buffer, Object[] columns) {
+		Function<Object, String>[] declared = columnFormatters;
+		int declaredCount = (declared != null) ? declared.length : 0;
+
+		for (int i = 0; i < columns.length; i++) {
+			if (i > 0) {
+				buffer.append(columnSeparator);
+			}
+
+			Object column = columns[i];
+
+			if (column != null) {
+				Function<Object, String> formatter = (i < declaredCount)
+						? declared[i]                                           // 宣言済みの列は、解決済みの関数を使用
+						: resolver.get(column.getClass());                      // 具象クラスごとに一度だけ解決される
+
+				appendFormatted(buffer, column, formatter);
+			}
+		}
+	}
+
+	/**
+	 * 列を、その型に対応する関数で文字列に変換して追加します。
+	 *
+	 * <p>
+	 * {@link CsvSchema.Builder#objectColumn(Function)}で定義された列から使用されます。
+	 * </p>
+	 *
+	 * @param buffer バッファー
+	 * @param column 列（nullの場合はブランク）
+	 */
+	void appendValue(StringBuilder buffer, Object column) {
+		if (column != null) {
+			appendFormatted(buffer, column, resolver.get(column.getClass()));
+		}
+	}
+
+	/**
+	 * 列を、指定された関数で文字列に変換して追加します。
+	 *
+	 * @param buffer バッファー
+	 * @param column 列
+	 * @param formatter 列を文字列に変換する関数
+	 */
+	private void appendFormatted(StringBuilder buffer, Object column, Function<Object, String> formatter) {
+		if (formatter != DEFAULT_FORMATTER) {
+			buffer.append(formatter.apply(column));
+		} else {
+			appendDefault(buffer, column);                                      // 中間の文字列を作らずに直接追加
+		}
 	}
 
 	/**
 	 * 列を文字列に変換する関数が存在しない場合のデフォルトフォーマッターです。
 	 *
 	 * <p>
-	 * Number型のサブクラスおよびBoolean型の時は{@link Object#toString()}を使用します。
+	 * Number型のサブクラスおよびBoolean型の時は{@link Object#toString()}と同じ文字列を追加します。
+	 * ただし、プリミティブ型のラッパークラスの時は、文字列を作らずに直接追加します。
 	 * それ以外の型の時は、{@link Object#toString()}で文字列に変換した後、
-	 * 文字列中の{@link #quotation}を{@link #escapedQuotation}に置換して、
-	 * 文字列の前後に{@link #quotation}を追加します。
+	 * {@link #appendQuoted(StringBuilder, String)}で追加します。
 	 * </p>
 	 *
+	 * @param buffer バッファー
 	 * @param column 列
-	 * @return 変換後の文字列
 	 */
-	private String defaultFormat(Object column) {
-		String string = column.toString();
+	private void appendDefault(StringBuilder buffer, Object column) {
+		if (column instanceof Integer || column instanceof Short || column instanceof Byte) {
+			buffer.append(((Number) column).intValue());
+		} else if (column instanceof Long) {
+			buffer.append(((Long) column).longValue());
+		} else if (column instanceof Double) {
+			buffer.append(((Double) column).doubleValue());
+		} else if (column instanceof Float) {
+			buffer.append(((Float) column).floatValue());
+		} else if (column instanceof Boolean) {
+			buffer.append(((Boolean) column).booleanValue());
+		} else if (column instanceof Number) {
+			buffer.append(column.toString());
+		} else {
+			appendQuoted(buffer, column.toString());                            // Stringの場合、toString()は自身を返すだけ
+		}
+	}
 
-		if (column instanceof Number) {
-			return string;
+	/**
+	 * 文字列をクォーテーションして追加します。
+	 *
+	 * <p>
+	 * 文字列中の{@link #quotation}を{@link #escapedQuotation}に置き換えながら、
+	 * 文字列の前後に{@link #quotation}を追加します。
+	 * {@link #quoting}が{@link Quoting#MINIMAL}の時は、クォーテーションが不要であればそのまま追加します。
+	 * いずれの場合も、置換後の文字列を別途作成することはありません。
+	 * </p>
+	 *
+	 * @param buffer バッファー
+	 * @param string 文字列
+	 */
+	private void appendQuoted(StringBuilder buffer, String string) {
+		if (quoting == Quoting.MINIMAL && !needsQuotation(string)) {
+			buffer.append(string);
+			return;
 		}
 
-		if (column instanceof Boolean) {
-			return string;
+		buffer.append(quotation);
+
+		if (quotation.isEmpty()) {
+			buffer.append(string);
+		} else {
+			int from = 0;
+
+			for (int index = string.indexOf(quotation); index >= 0; index = string.indexOf(quotation, from)) {
+				buffer.append(string, from, index).append(escapedQuotation);  // 置換しながら追加
+				from = index + quotation.length();
+			}
+
+			buffer.append(string, from, string.length());
+		}
+
+		buffer.append(quotation);
+	}
+
+	/**
+	 * 文字列にクォーテーションが必要か判定します。
+	 *
+	 * @param string 文字列
+	 * @return 列の区切り記号、クォーテーション記号、改行（行の区切り記号を含む）のいずれかを含む場合はtrue
+	 */
+	private boolean needsQuotation(String string) {
+		if (columnSeparator.length() == 1 && quotation.length() == 1 && isLineBreak(lineSeparator)) {
+			// よくある設定の場合は、一度の走査で判定する
+			char separator = columnSeparator.charAt(0);
+			char quote = quotation.charAt(0);
+
+			for (int i = 0; i < string.length(); i++) {
+				char c = string.charAt(i);
+
+				if (c == separator || c == quote || c == '\n' || c == '\r') {
+					return true;
+				}
+			}
+
+			return false;
+		}
+
+		return (!columnSeparator.isEmpty() && string.contains(columnSeparator))
+				|| (!quotation.isEmpty() && string.contains(quotation))
+				|| (!lineSeparator.isEmpty() && string.contains(lineSeparator))
+				|| string.indexOf('\n') >= 0
+				|| string.indexOf('\r') >= 0;
+	}
+
+	/**
+	 * 文字列が改行文字のみで構成されているか判定します。
+	 *
+	 * @param string 文字列
+	 * @return 改行文字（CRまたはLF）のみで構成されている場合はtrue
+	 */
+	private static boolean isLineBreak(String string) {
+		for (int i = 0; i < string.length(); i++) {
+			char c = string.charAt(i);
+
+			if (c != '\n' && c != '\r') {
+				return false;
+			}
 		}
 
-		return new StringBuilder(string.length() + quotation.length() * 2 + 16) // 領域の拡張が起きないように？
-		                                                                        // -> はい。16がマジックナンバーで申し訳ないｗ
-		                                                                        // -> 16は、置換による文字数の拡張予測です。
-				.append(quotation)
-				.append(string.replace(quotation, escapedQuotation))
-				.append(quotation)
-				.toString();
+		return true;
 	}
 }
@@ -0,0 +1,656 @@
+package jp.satomaru.java8study;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileChannel.MapMode;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+
+import lombok.AccessLevel;
+import lombok.Setter;
+
+/**
+ * CSVを解析します。
+ *
+ * <p>
+ * {@link CsvBuilder}で作成したCSVを、同じ設定で読み込むための逆変換です。
+ * 行は一つずつ解析して関数に渡すため、ファイルの大きさに関係なく使用するメモリーは一定です。
+ * </p>
+ */
+@Setter
+public class CsvParser {
+
+	/** ファイルをメモリーにマッピングする際の、一度にマッピングする最大バイト数。 */
+	private static final int MAPPING_SIZE = 64 * 1024 * 1024;
+
+	/** 文字列をクォーテーションする際に、前後に追加する記号。 */
+	private String quotation = "\"";
+
+	/** 文字列中に含まれるクォーテーション記号を退避するための文字列。 */
+	private String escapedQuotation = "\"\"";
+
+	/** 列の区切り記号。 */
+	private String columnSeparator = ",";
+
+	/** 行の区切り記号。 */
+	private String lineSeparator = System.getProperty("line.separator");
+
+	/** ファイルを読み込む際の文字セット。 */
+	private Charset charset = StandardCharsets.UTF_8;
+
+	/** 読み込みに使用するバッファーの初期の文字数（一行がこれを超える場合は拡張します）。 */
+	@Setter(AccessLevel.NONE)
+	private int bufferSize = 64 * 1024;
+
+	/** 並列で解析する際に、一つのタスクが解析するバイト数の目安。 */
+	@Setter(AccessLevel.NONE)
+	private long chunkSize = 16L * 1024 * 1024;
+
+	/** 列の型（{@link #columns(Class...)}で宣言されていない場合は空）。 */
+	@Setter(AccessLevel.NONE)
+	private Class<?>[] columnTypes = new Class<?>[0];
+
+	/**
+	 * 読み込みに使用するバッファーの初期の文字数を設定します。
+	 *
+	 * @param bufferSize 文字数（1以上）
+	 * @throws IllegalArgumentException 1未満の場合
+	 */
+	public void setBufferSize(int bufferSize) {
+		if (bufferSize < 1) {
+			throw new IllegalArgumentException("bufferSize: " + bufferSize);
+		}
+
+		this.bufferSize = bufferSize;
+	}
+
+	/**
+	 * 並列で解析する際に、一つのタスクが解析するバイト数の目安を設定します。
+	 *
+	 * @param chunkSize バイト数（1以上）
+	 * @throws IllegalArgumentException 1未満の場合
+	 */
+	public void setChunkSize(long chunkSize) {
+		if (chunkSize < 1) {
+			throw new IllegalArgumentException("chunkSize: " + chunkSize);
+		}
+
+		this.chunkSize = chunkSize;
+	}
+
+	/**
+	 * 列の型を宣言します。
+	 *
+	 * <p>
+	 * 宣言した型は、{@link CsvRecord#getValue(int)}および{@link CsvRecord#getValues()}での変換に使用します。
+	 * </p>
+	 *
+	 * @param types 列の型（先頭の列から順番に指定）
+	 * @return このオブジェクト自身
+	 */
+	public CsvParser columns(Class<?>... types) {
+		columnTypes = types.clone();
+		return this;
+	}
+
+	/**
+	 * CSVを解析します。
+	 *
+	 * <p>
+	 * 行を一つずつ解析し、関数に渡します。
+	 * 関数に渡す{@link CsvRecord}は再利用されるため、関数の中でのみ有効です。
+	 * </p>
+	 *
+	 * @param reader CSVを読み込むリーダー
+	 * @param action 行を処理する関数
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws IllegalArgumentException CSVの書式が妥当でない場合
+	 */
+	public void parse(Reader reader, Consumer<CsvRecord> action) throws IOException {
+		if (columnSeparator.isEmpty() || lineSeparator.isEmpty()) {
+			throw new IllegalStateException("columnSeparator and lineSeparator must not be empty");
+		}
+
+		new Cursor(reader).forEach(action);
+	}
+
+	/**
+	 * CSVファイルを解析します。
+	 *
+	 * <p>
+	 * ファイルはメモリーにマッピングして、{@link #charset}で読み込みます。
+	 * 詳細は{@link #parse(Reader, Consumer)}を参照してください。
+	 * </p>
+	 *
+	 * @param file CSVファイル
+	 * @param action 行を処理する関数
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws IllegalArgumentException CSVの書式が妥当でない場合
+	 */
+	public void parse(Path file, Consumer<CsvRecord> action) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			parse(new MappedReader(channel, 0, channel.size(), charset), action);
+		}
+	}
+
+	/**
+	 * CSVファイルを並列で解析します。
+	 *
+	 * <p>
+	 * 共通プール（{@link ForkJoinPool#commonPool()}）を使用します。
+	 * 詳細は{@link #parseParallel(Path, Consumer, ForkJoinPool)}を参照してください。
+	 * </p>
+	 *
+	 * @param file CSVファイル
+	 * @param action 行を処理する関数（複数のスレッドから同時に呼び出されます）
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws IllegalArgumentException CSVの書式が妥当でない場合
+	 */
+	public void parseParallel(Path file, Consumer<CsvRecord> action) throws IOException {
+		parseParallel(file, action, ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * CSVファイルを並列で解析します。
+	 *
+	 * <p>
+	 * ファイルを{@link #chunkSize}バイト程度のチャンクに、クォーテーションの外側にある行の区切り記号の直後で分割し、
+	 * 各チャンクを指定されたプール上で解析します。
+	 * 関数は複数のスレッドから同時に呼び出され、行の順番は保証されません。
+	 * </p>
+	 *
+	 * <p>
+	 * 分割位置はバイト単位で判定するため、文字セットがASCII互換（UTF-8など）で、各記号がASCII文字であり、
+	 * かつ{@link #escapedQuotation}がクォーテーション記号を二つ重ねたものである必要があります。
+	 * これを満たさない場合は、分割せずに解析します。
+	 * </p>
+	 *
+	 * @param file CSVファイル
+	 * @param action 行を処理する関数（複数のスレッドから同時に呼び出されます）
+	 * @param pool 解析に使用するプール
+	 * @throws IOException 読み込みに失敗した場合
+	 * @throws IllegalArgumentException CSVの書式が妥当でない場合
+	 */
+	public void parseParallel(Path file, Consumer<CsvRecord> action, ForkJoinPool pool) throws IOException {
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+			long[] boundaries = split(channel);
+			List<ForkJoinTask<Void>> tasks = new ArrayList<>(boundaries.length);
+
+			for (int i = 0; i + 1 < boundaries.length; i++) {
+				long from = boundaries[i];
+				long to = boundaries[i + 1];
+
+				tasks.add(pool.submit(() -> {
+					parse(new MappedReader(channel, from, to, charset), action);
+					return null;
+				}));
+			}
+
+			for (ForkJoinTask<Void> task : tasks) {
+				try {
+					task.get();
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+					throw new InterruptedIOException(e.getMessage());
+				} catch (ExecutionException e) {
+					Throwable cause = e.getCause();
+
+					if (cause instanceof IOException) {
+						throw (IOException) cause;
+					}
+
+					if (cause instanceof RuntimeException) {
+						throw (RuntimeException) cause;
+					}
+
+					if (cause instanceof Error) {
+						throw (Error) cause;
+					}
+
+					throw new IOException(cause);
+				}
+			}
+		}
+	}
+
+	/**
+	 * ファイルを、行の途中で分割されない位置で分割します。
+	 *
+	 * @param channel ファイルのチャネル
+	 * @return 分割位置（先頭は0、末尾はファイルサイズ）
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private long[] split(FileChannel channel) throws IOException {
+		long size = channel.size();
+		byte[] separator = lineSeparator.getBytes(charset);
+
+		if (!isSplittable()) {
+			return new long[] {0, size};
+		}
+
+		boolean hasQuotation = !quotation.isEmpty();
+		byte quote = hasQuotation ? (byte) quotation.charAt(0) : 0;
+		List<Long> boundaries = new ArrayList<>();
+		boundaries.add(0L);
+
+		long next = chunkSize;
+		boolean quoted = false;
+
+		for (long start = 0; start < size && next < size; start += MAPPING_SIZE) {
+			long length = Math.min(MAPPING_SIZE + separator.length, size - start);   // 境界をまたぐ区切り記号も判定できるように
+			MappedByteBuffer window = channel.map(MapMode.READ_ONLY, start, length);
+			int count = (int) Math.min(MAPPING_SIZE, length);
+
+			for (int i = 0; i < count && next < size; i++) {
+				byte b = window.get(i);
+
+				if (hasQuotation && b == quote) {
+					quoted = !quoted;                                            // 退避されたクォーテーション記号は二回反転する
+				} else if (!quoted && start + i >= next && b == separator[0] && startsWith(window, i, separator)) {
+					long boundary = start + i + separator.length;
+					boundaries.add(boundary);
+					next = boundary + chunkSize;
+					i += separator.length - 1;
+				}
+			}
+		}
+
+		if (boundaries.get(boundaries.size() - 1) < size) {
+			boundaries.add(size);
+		}
+
+		return boundaries.stream().mapToLong(Long::longValue).toArray();
+	}
+
+	/**
+	 * ファイルをバイト単位で分割できるか判定します。
+	 *
+	 * @return 分割できる場合はtrue
+	 */
+	private boolean isSplittable() {
+		boolean asciiCompatible = charset.equals(StandardCharsets.UTF_8)
+				|| charset.equals(StandardCharsets.US_ASCII)
+				|| charset.equals(StandardCharsets.ISO_8859_1);
+
+		return asciiCompatible
+				&& isAscii(lineSeparator)
+				&& isAscii(quotation)
+				&& quotation.length() <= 1
+				&& (quotation.isEmpty() || escapedQuotation.equals(quotation + quotation));
+	}
+
+	/**
+	 * 文字列がASCII文字のみで構成されているか判定します。
+	 *
+	 * @param string 文字列
+	 * @return ASCII文字のみで構成されている場合はtrue
+	 */
+	private static boolean isAscii(String string) {
+		return string.chars().allMatch(c -> c < 0x80);
+	}
+
+	/**
+	 * バッファーの指定された位置が、指定されたバイト列で始まるか判定します。
+	 *
+	 * @param buffer バッファー
+	 * @param index 位置
+	 * @param bytes バイト列
+	 * @return 始まる場合はtrue
+	 */
+	private static boolean startsWith(MappedByteBuffer buffer, int index, byte[] bytes) {
+		if (index + bytes.length > buffer.limit()) {
+			return false;
+		}
+
+		for (int i = 0; i < bytes.length; i++) {
+			if (buffer.get(index + i) != bytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * リーダーから行を一つずつ解析します。
+	 *
+	 * <p>
+	 * 解析中の行はバッファーの中に保持し、クォーテーションされた列はバッファーの中でそのまま復元します。
+	 * バッファーが足りなくなった場合は、解析中の行をバッファーの先頭に移動し、それでも足りない場合は拡張します。
+	 * </p>
+	 */
+	private final class Cursor {
+
+		/** CSVを読み込むリーダー。 */
+		private final Reader reader;
+
+		/** 解析した行。 */
+		private final CsvRecord record = new CsvRecord(columnTypes);
+
+		/** 読み込みに使用するバッファー。 */
+		private char[] buffer = new char[bufferSize];
+
+		/** バッファー中の、読み込み済みの文字数。 */
+		private int limit;
+
+		/** バッファー中の、次に解析する位置。 */
+		private int position;
+
+		/** バッファー中の、解析中の行の開始位置。 */
+		private int recordStart;
+
+		/** バッファー中の、クォーテーションされた列を復元する位置。 */
+		private int write;
+
+		/** リーダーの終端に達した場合はtrue。 */
+		private boolean eof;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param reader CSVを読み込むリーダー
+		 */
+		private Cursor(Reader reader) {
+			this.reader = reader;
+		}
+
+		/**
+		 * 全ての行を解析し、関数に渡します。
+		 *
+		 * @param action 行を処理する関数
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private void forEach(Consumer<CsvRecord> action) throws IOException {
+			while (next()) {
+				action.accept(record);
+			}
+		}
+
+		/**
+		 * 次の行を解析します。
+		 *
+		 * @return 行が存在した場合はtrue
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private boolean next() throws IOException {
+			recordStart = position;
+			record.clear();
+
+			if (!ensure(1)) {
+				return false;
+			}
+
+			while (true) {
+				parseField();
+
+				if (matches(columnSeparator)) {
+					position += columnSeparator.length();
+				} else if (matches(lineSeparator)) {
+					position += lineSeparator.length();
+					break;
+				} else if (!ensure(1)) {
+					break;
+				} else {
+					throw wrongFormat("unexpected character after quotation");
+				}
+			}
+
+			record.attach(buffer, recordStart);
+			return true;
+		}
+
+		/**
+		 * 列を解析します。
+		 *
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private void parseField() throws IOException {
+			if (!quotation.isEmpty() && matches(quotation)) {
+				position += quotation.length();
+				write = position;
+
+				int start = position - recordStart;                             // 行の移動に影響されないよう、相対位置で保持
+
+				while (true) {
+					if (!escapedQuotation.isEmpty() && matches(escapedQuotation)) {
+						quotation.getChars(0, quotation.length(), buffer, write);
+						write += quotation.length();
+						position += escapedQuotation.length();
+					} else if (matches(quotation)) {
+						position += quotation.length();
+						break;
+					} else if (ensure(1)) {
+						buffer[write++] = buffer[position++];
+					} else {
+						throw wrongFormat("unterminated quotation");
+					}
+				}
+
+				record.add(start, write - recordStart, true);
+				return;
+			}
+
+			int start = position - recordStart;
+			char separator = columnSeparator.charAt(0);
+			char newLine = lineSeparator.charAt(0);
+
+			while (ensure(1)) {
+				char c = buffer[position];
+
+				if ((c == separator && matches(columnSeparator)) || (c == newLine && matches(lineSeparator))) {
+					break;
+				}
+
+				position++;
+			}
+
+			record.add(start, position - recordStart, false);
+		}
+
+		/**
+		 * CSVの書式が妥当でない場合の例外を作成します。
+		 *
+		 * @param reason 理由
+		 * @return 例外
+		 */
+		private IllegalArgumentException wrongFormat(String reason) {
+			record.attach(buffer, recordStart);
+			return new IllegalArgumentException(String.format("wrong csv format: %s: %s", reason, record));
+		}
+
+		/**
+		 * 次に解析する位置が、指定された文字列で始まるか判定します。
+		 *
+		 * @param token 文字列
+		 * @return 始まる場合はtrue
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private boolean matches(String token) throws IOException {
+			int length = token.length();
+
+			if (!ensure(length)) {
+				return false;
+			}
+
+			for (int i = 0; i < length; i++) {
+				if (buffer[position + i] != token.charAt(i)) {
+					return false;
+				}
+			}
+
+			return true;
+		}
+
+		/**
+		 * 次に解析する位置から、指定された文字数が読み込まれている状態にします。
+		 *
+		 * @param length 文字数
+		 * @return 指定された文字数が読み込まれている場合はtrue（リーダーの終端に達した場合はfalse）
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private boolean ensure(int length) throws IOException {
+			while (limit - position < length) {
+				if (eof) {
+					return false;
+				}
+
+				fill();
+			}
+
+			return true;
+		}
+
+		/**
+		 * リーダーから読み込みます。
+		 *
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private void fill() throws IOException {
+			if (recordStart > 0) {
+				// 解析中の行をバッファーの先頭に移動
+				System.arraycopy(buffer, recordStart, buffer, 0, limit - recordStart);
+				limit -= recordStart;
+				position -= recordStart;
+				write -= recordStart;
+				recordStart = 0;
+			}
+
+			if (limit == buffer.length) {
+				buffer = Arrays.copyOf(buffer, buffer.length * 2);             // 一行がバッファーに収まらない場合
+			}
+
+			int count = reader.read(buffer, limit, buffer.length - limit);
+
+			if (count < 0) {
+				eof = true;
+			} else {
+				limit += count;
+			}
+		}
+	}
+
+	/**
+	 * メモリーにマッピングしたファイルの一部を読み込むリーダーです。
+	 *
+	 * <p>
+	 * 範囲を{@link #MAPPING_SIZE}バイトずつマッピングしながら、文字に変換します。
+	 * </p>
+	 */
+	private static final class MappedReader extends Reader {
+
+		/** ファイルのチャネル。 */
+		private final FileChannel channel;
+
+		/** 読み込む範囲の開始位置。 */
+		private final long from;
+
+		/** 読み込む範囲の終了位置。 */
+		private final long to;
+
+		/** 文字に変換するデコーダー。 */
+		private final CharsetDecoder decoder;
+
+		/** 現在マッピングしている範囲。 */
+		private MappedByteBuffer window;
+
+		/** 現在マッピングしている範囲の開始位置。 */
+		private long windowStart;
+
+		/** 現在マッピングしている範囲が最後の範囲の場合はtrue。 */
+		private boolean lastWindow;
+
+		/** デコーダーをフラッシュした場合はtrue。 */
+		private boolean flushed;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param channel ファイルのチャネル
+		 * @param from 読み込む範囲の開始位置
+		 * @param to 読み込む範囲の終了位置
+		 * @param charset 文字セット
+		 */
+		private MappedReader(FileChannel channel, long from, long to, Charset charset) {
+			this.channel = channel;
+			this.from = from;
+			this.to = to;
+			this.decoder = charset.newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+
+		@Override
+		public int read(char[] cbuf, int off, int len) throws IOException {
+			if (len == 0) {
+				return 0;
+			}
+
+			if (flushed) {
+				return -1;
+			}
+
+			if (window == null) {
+				map(from);
+			}
+
+			CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+
+			while (true) {
+				CoderResult result = decoder.decode(window, out, lastWindow);
+
+				if (result.isError()) {
+					result.throwException();
+				}
+
+				if (lastWindow && !window.hasRemaining() && !flushed) {
+					decoder.flush(out);
+					flushed = true;
+				}
+
+				if (out.position() > off) {
+					return out.position() - off;
+				}
+
+				if (lastWindow) {
+					return -1;
+				}
+
+				map(windowStart + window.position());                           // 文字の途中で終わっている場合も、その位置から再マッピング
+			}
+		}
+
+		/**
+		 * 指定された位置からマッピングします。
+		 *
+		 * @param start 開始位置
+		 * @throws IOException マッピングに失敗した場合
+		 */
+		private void map(long start) throws IOException {
+			long length = Math.min(MAPPING_SIZE, to - start);
+			window = channel.map(MapMode.READ_ONLY, start, length);
+			windowStart = start;
+			lastWindow = (start + length >= to);
+		}
+
+		@Override
+		public void close() {
+			// チャネルは呼び出し元で閉じる
+		}
+	}
+}
@@ -0,0 +1,213 @@
+package jp.satomaru.java8study;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+import jp.satomaru.java8study.util.launcher.StringParser;
+
+/**
+ * {@link CsvParser}が解析したCSVの行です。
+ *
+ * <p>
+ * 各列は、読み込みに使用しているバッファーの一部として保持しており、列ごとに文字列を複製することはありません。
+ * このオブジェクトおよび{@link #get(int)}が返却する文字列は、バッファーと共に再利用されるため、
+ * 行を処理する関数の中でのみ有効です。関数の外で使用する場合は、{@link #getString(int)}などで複製してください。
+ * </p>
+ */
+public final class CsvRecord {
+
+	/** 宣言された列の型。 */
+	private final Class<?>[] types;
+
+	/** 読み込みに使用しているバッファー。 */
+	private char[] buffer;
+
+	/** この行の、バッファー中の開始位置。 */
+	private int offset;
+
+	/** 列の数。 */
+	private int size;
+
+	/** 各列の開始位置（行の開始位置からの相対位置）。 */
+	private int[] starts = new int[16];
+
+	/** 各列の終了位置（行の開始位置からの相対位置）。 */
+	private int[] ends = new int[16];
+
+	/** 各列がクォーテーションされていたかどうか。 */
+	private boolean[] quoted = new boolean[16];
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param types 宣言された列の型
+	 */
+	CsvRecord(Class<?>[] types) {
+		this.types = types;
+	}
+
+	/**
+	 * 列の数を取得します。
+	 *
+	 * @return 列の数
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * 列を取得します。
+	 *
+	 * <p>
+	 * 返却する文字列はバッファーの一部を参照しており、複製されていません。
+	 * クォーテーションは既に取り除かれ、退避されたクォーテーション記号は元に戻されています。
+	 * </p>
+	 *
+	 * @param index 列のインデックス（0から開始）
+	 * @return 列
+	 */
+	public CharSequence get(int index) {
+		checkIndex(index);
+		return CharBuffer.wrap(buffer, offset + starts[index], ends[index] - starts[index]);
+	}
+
+	/**
+	 * 列がクォーテーションされていたか判定します。
+	 *
+	 * @param index 列のインデックス（0から開始）
+	 * @return クォーテーションされていた場合はtrue
+	 */
+	public boolean isQuoted(int index) {
+		checkIndex(index);
+		return quoted[index];
+	}
+
+	/**
+	 * 列を文字列として取得します。
+	 *
+	 * <p>
+	 * {@link CsvBuilder}がnullの列をブランクとすることに合わせて、
+	 * クォーテーションされていないブランクの列はnullとして扱います。
+	 * </p>
+	 *
+	 * @param index 列のインデックス（0から開始）
+	 * @return 列の文字列（クォーテーションされていないブランクの場合はnull）
+	 */
+	public String getString(int index) {
+		checkIndex(index);
+
+		if (starts[index] == ends[index] && !quoted[index]) {
+			return null;
+		}
+
+		return new String(buffer, offset + starts[index], ends[index] - starts[index]);
+	}
+
+	/**
+	 * 列を指定された型に変換して取得します。
+	 *
+	 * <p>
+	 * 変換には{@link StringParser#parse(Class, String)}を使用します。
+	 * </p>
+	 *
+	 * @param index 列のインデックス（0から開始）
+	 * @param type 変換する型
+	 * @return 変換結果（{@link #getString(int)}がnullの場合はnull）
+	 * @throws IllegalArgumentException 型に対応していない場合、または変換に失敗した場合
+	 */
+	public <T> T get(int index, Class<T> type) {
+		return StringParser.parse(type, getString(index));
+	}
+
+	/**
+	 * 列を、{@link CsvParser#columns(Class...)}で宣言された型に変換して取得します。
+	 *
+	 * @param index 列のインデックス（0から開始）
+	 * @return 変換結果（型が宣言されていない列の場合は{@link #getString(int)}の結果）
+	 * @throws IllegalArgumentException 変換に失敗した場合
+	 */
+	public Object getValue(int index) {
+		return (index < types.length) ? get(index, types[index]) : getString(index);
+	}
+
+	/**
+	 * 全ての列を、{@link CsvParser#columns(Class...)}で宣言された型に変換して取得します。
+	 *
+	 * <p>
+	 * {@link CsvBuilder}の列を取得する関数が返却する配列に相当します。
+	 * </p>
+	 *
+	 * @return 変換結果の配列
+	 * @throws IllegalArgumentException 変換に失敗した場合
+	 */
+	public Object[] getValues() {
+		Object[] values = new Object[size];
+
+		for (int i = 0; i < size; i++) {
+			values[i] = getValue(i);
+		}
+
+		return values;
+	}
+
+	@Override
+	public String toString() {
+		StringBuilder builder = new StringBuilder("[");
+
+		for (int i = 0; i < size; i++) {
+			builder.append((i > 0) ? ", " : "").append(get(i));
+		}
+
+		return builder.append(']').toString();
+	}
+
+	/**
+	 * 列を持たない状態にします。
+	 */
+	void clear() {
+		size = 0;
+	}
+
+	/**
+	 * 列を追加します。
+	 *
+	 * @param start 列の開始位置（行の開始位置からの相対位置）
+	 * @param end 列の終了位置（行の開始位置からの相対位置）
+	 * @param isQuoted クォーテーションされていた場合はtrue
+	 */
+	void add(int start, int end, boolean isQuoted) {
+		if (size == starts.length) {
+			starts = Arrays.copyOf(starts, size * 2);
+			ends = Arrays.copyOf(ends, size * 2);
+			quoted = Arrays.copyOf(quoted, size * 2);
+		}
+
+		starts[size] = start;
+		ends[size] = end;
+		quoted[size] = isQuoted;
+		size++;
+	}
+
+	/**
+	 * 行が参照するバッファーを設定します。
+	 *
+	 * @param buffer 読み込みに使用しているバッファー
+	 * @param offset この行の、バッファー中の開始位置
+	 */
+	void attach(char[] buffer, int offset) {
+		this.buffer = buffer;
+		this.offset = offset;
+	}
+
+	/**
+	 * インデックスを検査します。
+	 *
+	 * @param index 列のインデックス
+	 * @throws IndexOutOfBoundsException インデックスが範囲外の場合
+	 */
+	private void checkIndex(int index) {
+		if (index < 0 || index >= size) {
+			throw new IndexOutOfBoundsException(String.format("index: %d, size: %d", index, size));
+		}
+	}
+}
@@ -0,0 +1,204 @@
+package jp.satomaru.java8study;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.function.Function;
+import java.util.function.Predicate;
+import java.util.function.ToDoubleFunction;
+import java.util.function.ToIntFunction;
+import java.util.function.ToLongFunction;
+
+/**
+ * CSVの列の定義です。
+ *
+ * <p>
+ * {@link CsvBuilder}の、オブジェクトから列を配列で取得する関数の代わりに使用します。
+ * 列ごとに値を取得する関数を定義するため、行ごとに配列を作成せず、
+ * またプリミティブ型の列はボクシングせずに、直接バッファーに追加します。
+ * </p>
+ *
+ * <pre>
+ * CsvSchema&lt;MyEntity&gt; schema = CsvSchema.&lt;MyEntity&gt;builder()
+ *     .intColumn(MyEntity::getId)
+ *     .objectColumn(MyEntity::getName)
+ *     .objectColumn(MyEntity::getSince, date -&gt; date.format(formatter))
+ *     .build();
+ * </pre>
+ *
+ * @param <E> CSVを作成する元となるオブジェクト
+ */
+public final class CsvSchema<E> {
+
+	/**
+	 * 列の定義を作成します。
+	 *
+	 * @return 列の定義を作成するビルダー
+	 */
+	public static <E> Builder<E> builder() {
+		return new Builder<>();
+	}
+
+	/**
+	 * 列を、バッファーに追加します。
+	 *
+	 * @param <E> CSVを作成する元となるオブジェクト
+	 */
+	@FunctionalInterface
+	interface Column<E> {
+
+		/**
+		 * 列を、バッファーに追加します。
+		 *
+		 * @param builder CSVを作成しているCsvBuilder
+		 * @param buffer バッファー
+		 * @param entity CSVを作成する元となるオブジェクト
+		 */
+		void append(CsvBuilder<E> builder, StringBuilder buffer, E entity);
+	}
+
+	/**
+	 * 列の定義を作成します。
+	 *
+	 * @param <E> CSVを作成する元となるオブジェクト
+	 */
+	public static final class Builder<E> {
+
+		/** 定義した列。 */
+		private final List<Column<E>> columns = new ArrayList<>();
+
+		/**
+		 * コンストラクタ。
+		 */
+		private Builder() {
+		}
+
+		/**
+		 * int型の列を追加します。
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @return このオブジェクト自身
+		 */
+		public Builder<E> intColumn(ToIntFunction<E> getter) {
+			columns.add((builder, buffer, entity) -> buffer.append(getter.applyAsInt(entity)));
+			return this;
+		}
+
+		/**
+		 * long型の列を追加します。
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @return このオブジェクト自身
+		 */
+		public Builder<E> longColumn(ToLongFunction<E> getter) {
+			columns.add((builder, buffer, entity) -> buffer.append(getter.applyAsLong(entity)));
+			return this;
+		}
+
+		/**
+		 * double型の列を追加します。
+		 *
+		 * <p>
+		 * 文字列は{@link Double#toString(double)}と同じになります。
+		 * </p>
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @return このオブジェクト自身
+		 */
+		public Builder<E> doubleColumn(ToDoubleFunction<E> getter) {
+			columns.add((builder, buffer, entity) -> buffer.append(getter.applyAsDouble(entity)));
+			return this;
+		}
+
+		/**
+		 * boolean型の列を追加します。
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @return このオブジェクト自身
+		 */
+		public Builder<E> booleanColumn(Predicate<E> getter) {
+			columns.add((builder, buffer, entity) -> buffer.append(getter.test(entity)));
+			return this;
+		}
+
+		/**
+		 * オブジェクト型の列を追加します。
+		 *
+		 * <p>
+		 * 列の値は、{@link CsvBuilder#addFormatter(Class, Function)}で追加した関数、
+		 * または{@link CsvBuilder}のデフォルトフォーマッターで文字列に変換します。
+		 * 列の値がnullの時はブランクになります。
+		 * </p>
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @return このオブジェクト自身
+		 */
+		public <T> Builder<E> objectColumn(Function<E, T> getter) {
+			columns.add((builder, buffer, entity) -> builder.appendValue(buffer, getter.apply(entity)));
+			return this;
+		}
+
+		/**
+		 * オブジェクト型の列を、文字列に変換する関数と共に追加します。
+		 *
+		 * <p>
+		 * 列の値は、指定された関数で文字列に変換し、そのまま追加します。
+		 * 列の値がnullの時はブランクになります。
+		 * </p>
+		 *
+		 * @param getter オブジェクトから列の値を取得する関数
+		 * @param formatter 列の値を文字列に変換する関数
+		 * @return このオブジェクト自身
+		 */
+		public <T> Builder<E> objectColumn(Function<E, T> getter, Function<T, String> formatter) {
+			columns.add((builder, buffer, entity) -> {
+				T value = getter.apply(entity);
+
+				if (value != null) {
+					buffer.append(formatter.apply(value));
+				}
+			});
+
+			return this;
+		}
+
+		/**
+		 * 列の定義を作成します。
+		 *
+		 * @return 列の定義
+		 */
+		public CsvSchema<E> build() {
+			return new CsvSchema<>(columns);
+		}
+	}
+
+	/** 定義した列。 */
+	private final Column<E>[] columns;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param columns 定義した列
+	 */
+	@SuppressWarnings({"unchecked", "rawtypes"})
+	private CsvSchema(List<Column<E>> columns) {
+		this.columns = columns.toArray(new Column[columns.size()]);
+	}
+
+	/**
+	 * 列の数を取得します。
+	 *
+	 * @return 列の数
+	 */
+	public int size() {
+		return columns.length;
+	}
+
+	/**
+	 * 定義した列を取得します。
+	 *
+	 * @return 定義した列（複製しないため、変更しないこと）
+	 */
+	Column<E>[] columns() {
+		return columns;
+	}
+}
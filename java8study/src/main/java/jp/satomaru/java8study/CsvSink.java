@@ -0,0 +1,458 @@
+package jp.satomaru.java8study;
+
+import java.io.Closeable;
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+
+/**
+ * 複数のスレッドから一行ずつオブジェクトを受け取り、CSVを出力先に書き出します。
+ *
+ * <p>
+ * 受け取ったオブジェクトは、二つのバッファーを交互に使用して蓄積します（ダブルバッファー）。
+ * 一方のバッファーが{@link #batchSize}行に達すると、もう一方と入れ替えて、
+ * 専用のスレッドが{@link CsvBuilder}でCSVを作成して出力先に書き出します。
+ * 書き出しが追いつかず、両方のバッファーが埋まった場合は、{@link Overflow}に従って
+ * 呼び出し元を待機させるか、オブジェクトを拒否します。
+ * </p>
+ *
+ * <p>
+ * 書き出す内容は、受け取った順に{@link CsvBuilder#writeTo(Appendable, Iterable)}した結果と一致します。
+ * 使用後は必ず{@link #close()}してください。出力先は閉じません。
+ * </p>
+ *
+ * @param <E> CSVを作成する元となるオブジェクト
+ */
+public final class CsvSink<E> implements Consumer<E>, Flushable, Closeable {
+
+	/** 両方のバッファーが埋まっている場合の方針。 */
+	public enum Overflow {
+
+		/** バッファーに空きができるまで、呼び出し元を待機させます。 */
+		BLOCK,
+
+		/** オブジェクトを受け取らず、{@link RejectedExecutionException}をスローします。 */
+		REJECT
+	}
+
+	/** CSVを作成するCsvBuilder。 */
+	private final CsvBuilder<E> builder;
+
+	/** 出力先。 */
+	private final Appendable out;
+
+	/** 一つのバッファーの行数。 */
+	private final int batchSize;
+
+	/** 両方のバッファーが埋まっている場合の方針。 */
+	private final Overflow overflow;
+
+	/** バッファーを保護するロック。 */
+	private final ReentrantLock lock = new ReentrantLock();
+
+	/** 書き出すスレッドにバッファーを渡したことを通知する条件。 */
+	private final Condition handedOver = lock.newCondition();
+
+	/** 書き出すスレッドがバッファーを書き出したことを通知する条件。 */
+	private final Condition written = lock.newCondition();
+
+	/** 書き出すスレッド。 */
+	private final Thread thread;
+
+	/** 呼び出し元が蓄積しているバッファー。 */
+	private List<E> active;
+
+	/** 書き出すスレッドに渡したバッファー（書き出し終えた場合はnull）。 */
+	private List<E> handed;
+
+	/** 書き出し終えて、再利用を待っているバッファー。 */
+	private List<E> spare;
+
+	/** 閉じた場合はtrue。 */
+	private boolean closed;
+
+	/** 書き出しに失敗した場合の例外。 */
+	private volatile IOException failure;
+
+	/** 受け取った行数。 */
+	private volatile long acceptedRows;
+
+	/** 拒否した行数。 */
+	private volatile long rejectedRows;
+
+	/** 受け取ったが、まだ書き出していない行数。 */
+	private volatile long queuedRows;
+
+	/** 書き出したバッファーの数。 */
+	private volatile long flushedBatches;
+
+	/** 呼び出し元が待機した時間の合計（ナノ秒）。 */
+	private volatile long blockedNanos;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * <p>
+	 * 書き出すスレッドを開始します。
+	 * </p>
+	 *
+	 * @param builder CSVを作成するCsvBuilder
+	 * @param out 出力先
+	 * @param batchSize 一つのバッファーの行数
+	 * @param overflow 両方のバッファーが埋まっている場合の方針
+	 */
+	public CsvSink(CsvBuilder<E> builder, Appendable out, int batchSize, Overflow overflow) {
+		if (batchSize < 1) {
+			throw new IllegalArgumentException("batchSize: " + batchSize);
+		}
+
+		this.builder = builder;
+		this.out = out;
+		this.batchSize = batchSize;
+		this.overflow = overflow;
+		this.active = new ArrayList<>(batchSize);
+		this.spare = new ArrayList<>(batchSize);
+		this.thread = new Thread(this::drain, "CsvSink");
+		this.thread.setDaemon(true);
+		this.thread.start();
+	}
+
+	/**
+	 * オブジェクトを受け取ります。
+	 *
+	 * <p>
+	 * 複数のスレッドから同時に呼び出すことができます。
+	 * 両方のバッファーが埋まっている場合、{@link Overflow#BLOCK}の時は空きができるまで待機し、
+	 * {@link Overflow#REJECT}の時はオブジェクトを受け取らずに例外をスローします。
+	 * </p>
+	 *
+	 * @param entity CSVを作成する元となるオブジェクト
+	 * @throws RejectedExecutionException {@link Overflow#REJECT}で、両方のバッファーが埋まっている場合
+	 * @throws IllegalStateException 既に閉じている場合、または待機中に割り込まれた場合
+	 * @throws UncheckedIOException 書き出しに失敗していた場合
+	 */
+	@Override
+	public void accept(E entity) {
+		lock.lock();
+
+		try {
+			checkOpen();
+
+			while (active.size() >= batchSize) {
+				if (handed == null) {
+					handOver();
+				} else if (overflow == Overflow.REJECT) {
+					rejectedRows++;
+					throw new RejectedExecutionException("csv sink is full");
+				} else {
+					awaitWritten();
+					checkOpen();
+				}
+			}
+
+			active.add(entity);
+			acceptedRows++;
+			queuedRows++;
+
+			if (active.size() >= batchSize && handed == null) {
+				handOver();                                                     // 書き出すスレッドが空いていれば、すぐに渡す
+			}
+		} finally {
+			lock.unlock();
+		}
+	}
+
+	/**
+	 * 蓄積しているオブジェクトを書き出し、出力先をフラッシュします。
+	 *
+	 * <p>
+	 * バッファーが{@link #batchSize}行に達していなくても書き出し、書き出し終えるまで待機します。
+	 * </p>
+	 *
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	@Override
+	public void flush() throws IOException {
+		lock.lock();
+
+		try {
+			checkOpen();
+
+			while (handed != null) {
+				awaitWrittenInterruptibly();
+			}
+
+			if (!active.isEmpty()) {
+				handOver();
+
+				while (handed != null) {
+					awaitWrittenInterruptibly();
+				}
+			}
+		} finally {
+			lock.unlock();
+		}
+
+		throwIfFailed();
+
+		if (out instanceof Flushable) {
+			((Flushable) out).flush();
+		}
+	}
+
+	/**
+	 * 蓄積しているオブジェクトを全て書き出し、書き出すスレッドを終了します。
+	 *
+	 * <p>
+	 * 出力先は閉じません。
+	 * </p>
+	 *
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	@Override
+	public void close() throws IOException {
+		lock.lock();
+
+		try {
+			if (closed) {
+				return;
+			}
+
+			while (handed != null) {
+				awaitWrittenInterruptibly();
+			}
+
+			if (!active.isEmpty()) {
+				handOver();
+			}
+
+			closed = true;
+			handedOver.signal();
+			written.signalAll();                                                // 待機中の呼び出し元を解放
+		} finally {
+			lock.unlock();
+		}
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while closing csv sink");
+		}
+
+		throwIfFailed();
+	}
+
+	/**
+	 * 受け取った行数を取得します。
+	 *
+	 * @return 受け取った行数
+	 */
+	public long getAcceptedRows() {
+		return acceptedRows;
+	}
+
+	/**
+	 * 拒否した行数を取得します。
+	 *
+	 * @return 拒否した行数
+	 */
+	public long getRejectedRows() {
+		return rejectedRows;
+	}
+
+	/**
+	 * 受け取ったが、まだ書き出していない行数を取得します。
+	 *
+	 * @return 書き出していない行数
+	 */
+	public long getQueuedRows() {
+		return queuedRows;
+	}
+
+	/**
+	 * 書き出したバッファーの数を取得します。
+	 *
+	 * @return 書き出したバッファーの数
+	 */
+	public long getFlushedBatches() {
+		return flushedBatches;
+	}
+
+	/**
+	 * 呼び出し元が、バッファーの空きを待機した時間の合計を取得します。
+	 *
+	 * @return 待機した時間の合計（ナノ秒）
+	 */
+	public long getBlockedNanos() {
+		return blockedNanos;
+	}
+
+	/**
+	 * 蓄積しているバッファーを書き出すスレッドに渡し、再利用を待っているバッファーと入れ替えます。
+	 *
+	 * <p>
+	 * ロックを取得し、かつ{@link #handed}がnullの状態で呼び出してください。
+	 * </p>
+	 */
+	private void handOver() {
+		handed = active;
+		active = spare;
+		spare = null;
+		handedOver.signal();
+	}
+
+	/**
+	 * 書き出すスレッドがバッファーを書き出すまで待機し、待機した時間を記録します。
+	 *
+	 * @throws IllegalStateException 待機中に割り込まれた場合
+	 */
+	private void awaitWritten() {
+		long start = System.nanoTime();
+
+		try {
+			written.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while waiting for csv sink", e);
+		} finally {
+			blockedNanos += System.nanoTime() - start;
+		}
+	}
+
+	/**
+	 * 書き出すスレッドがバッファーを書き出すまで待機します。
+	 *
+	 * @throws InterruptedIOException 待機中に割り込まれた場合
+	 */
+	private void awaitWrittenInterruptibly() throws InterruptedIOException {
+		try {
+			written.await();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while waiting for csv sink");
+		}
+	}
+
+	/**
+	 * 閉じていないこと、書き出しに失敗していないことを検査します。
+	 *
+	 * @throws IllegalStateException 既に閉じている場合
+	 * @throws UncheckedIOException 書き出しに失敗していた場合
+	 */
+	private void checkOpen() {
+		if (closed) {
+			throw new IllegalStateException("csv sink is closed");
+		}
+
+		if (failure != null) {
+			throw new UncheckedIOException(failure);
+		}
+	}
+
+	/**
+	 * 書き出しに失敗していた場合、その例外をスローします。
+	 *
+	 * @throws IOException 書き出しに失敗していた場合
+	 */
+	private void throwIfFailed() throws IOException {
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * 書き出すスレッドの処理です。
+	 *
+	 * <p>
+	 * 渡されたバッファーをCSVにして書き出し、空にして返却することを、閉じるまで繰り返します。
+	 * 書き出しに失敗した後は、呼び出し元が待機し続けないように、渡されたバッファーを読み捨てます。
+	 * </p>
+	 */
+	private void drain() {
+		StringBuilder buffer = new StringBuilder(builder.getFlushThreshold() + 256);
+		char[] chars = (out instanceof Writer) ? new char[Math.max(builder.getFlushThreshold(), 1024)] : null;
+		boolean first = !builder.appendHeader(buffer);
+
+		while (true) {
+			List<E> batch;
+
+			lock.lock();
+
+			try {
+				while (handed == null && !closed) {
+					handedOver.awaitUninterruptibly();
+				}
+
+				if (handed == null) {
+					break;
+				}
+
+				batch = handed;
+			} finally {
+				lock.unlock();
+			}
+
+			if (failure == null) {
+				try {
+					for (E entity : batch) {                                    // ロックの外で作成するため、呼び出し元は止まらない
+						if (!first) {
+							buffer.append(builder.getLineSeparator());
+						}
+
+						builder.appendRecord(buffer, entity);
+						first = false;
+
+						if (buffer.length() >= builder.getFlushThreshold()) {
+							CsvBuilder.copyTo(out, buffer, chars);
+							buffer.setLength(0);
+						}
+					}
+
+					CsvBuilder.copyTo(out, buffer, chars);
+					buffer.setLength(0);
+				} catch (IOException e) {
+					failure = e;
+				} catch (UncheckedIOException e) {
+					failure = e.getCause();
+				} catch (RuntimeException e) {
+					failure = new IOException(e);
+				}
+			}
+
+			lock.lock();
+
+			try {
+				queuedRows -= batch.size();
+				flushedBatches++;
+				batch.clear();
+				spare = batch;
+				handed = null;
+
+				if (active.size() >= batchSize) {
+					handOver();                                                 // 埋まっているバッファーがあれば、続けて書き出す
+				}
+
+				written.signalAll();
+			} finally {
+				lock.unlock();
+			}
+		}
+
+		if (failure == null && buffer.length() > 0) {
+			try {
+				CsvBuilder.copyTo(out, buffer, chars);                         // 一行もない場合の見出し行
+			} catch (IOException e) {
+				failure = e;
+			}
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package jp.satomaru.java8study;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+/**
+ * マップを値として持つマップを、子マップを作成せずに、一つのハッシュ表で表します。
+ *
+ * <p>
+ * 全ての（親マップのキー、子マップのキー）→値の組を、一組のハッシュ表と配列に格納します。
+ * 親マップのキーごとに子マップのオブジェクトを作成しないため、
+ * 親マップのキーが多く、一つの親マップのキーに対する子マップのキーが少ない場合に、使用するメモリーが大幅に少なくなります。
+ * 子マップは、要求された時点で、この表の一部を参照するビューとして作成します。
+ * </p>
+ *
+ * <p>
+ * 親マップは、検索と反復のみを行えます。
+ * 子マップのビューは、検索と反復に加えて{@link Map#put(Object, Object)}を行えますが、削除は行えません。
+ * 反復の順番は、追加した順番です。このクラスはスレッドセーフではありません。
+ * </p>
+ *
+ * @param <K> 親マップのキー
+ * @param <S> 子マップのキー
+ * @param <V> 子マップの値
+ */
+final class FlatMapOfMaps<K, S, V> extends AbstractMap<K, Map<S, V>> {
+
+	/** 配列の初期の大きさ。 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** 親マップのキーの配列。 */
+	private Object[] rowKeys = new Object[INITIAL_CAPACITY];
+
+	/** 親マップのキーごとの、最初の組の位置（組がない場合は-1）。 */
+	private int[] rowHeads = new int[INITIAL_CAPACITY];
+
+	/** 親マップのキーごとの、最後の組の位置（組がない場合は-1）。 */
+	private int[] rowTails = new int[INITIAL_CAPACITY];
+
+	/** 親マップのキーごとの、組の数。 */
+	private int[] rowSizes = new int[INITIAL_CAPACITY];
+
+	/** 親マップのキーの数。 */
+	private int rowCount;
+
+	/** 親マップのキーの位置を格納したハッシュ表（位置+1を格納し、0は空きを表す）。 */
+	private int[] rowTable = new int[INITIAL_CAPACITY * 2];
+
+	/** 組の、子マップのキーの配列。 */
+	private Object[] subKeys = new Object[INITIAL_CAPACITY];
+
+	/** 組の、値の配列。 */
+	private Object[] values = new Object[INITIAL_CAPACITY];
+
+	/** 組の、親マップのキーの位置の配列。 */
+	private int[] owners = new int[INITIAL_CAPACITY];
+
+	/** 同じ親マップのキーを持つ、次の組の位置（最後の組は-1）。 */
+	private int[] nexts = new int[INITIAL_CAPACITY];
+
+	/** 組の数。 */
+	private int entryCount;
+
+	/** 組の位置を格納したハッシュ表（位置+1を格納し、0は空きを表す）。 */
+	private int[] entryTable = new int[INITIAL_CAPACITY * 2];
+
+	/**
+	 * 親マップのキーに対応する子マップのビューを取得します。存在しない場合は、空の子マップを作成します。
+	 *
+	 * @param key 親マップのキー
+	 * @return 子マップのビュー
+	 */
+	Map<S, V> row(K key) {
+		int row = indexOfRow(key);
+		return new Row((row >= 0) ? row : addRow(key));
+	}
+
+	@Override
+	public Map<S, V> get(Object key) {
+		int row = indexOfRow(key);
+		return (row < 0) ? null : new Row(row);
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOfRow(key) >= 0;
+	}
+
+	@Override
+	public int size() {
+		return rowCount;
+	}
+
+	@Override
+	public Set<Map.Entry<K, Map<S, V>>> entrySet() {
+		return new AbstractSet<Map.Entry<K, Map<S, V>>>() {
+
+			@Override
+			public Iterator<Map.Entry<K, Map<S, V>>> iterator() {
+				return new Iterator<Map.Entry<K, Map<S, V>>>() {
+
+					/** 次の親マップのキーの位置。 */
+					private int next;
+
+					@Override
+					public boolean hasNext() {
+						return next < rowCount;
+					}
+
+					@Override
+					@SuppressWarnings("unchecked")
+					public Map.Entry<K, Map<S, V>> next() {
+						if (next >= rowCount) {
+							throw new NoSuchElementException();
+						}
+
+						int row = next++;
+						return new SimpleImmutableEntry<>((K) rowKeys[row], new Row(row));
+					}
+				};
+			}
+
+			@Override
+			public int size() {
+				return rowCount;
+			}
+		};
+	}
+
+	/**
+	 * 親マップのキーの位置を検索します。
+	 *
+	 * @param key 親マップのキー
+	 * @return 親マップのキーの位置（存在しない場合は-1）
+	 */
+	private int indexOfRow(Object key) {
+		int mask = rowTable.length - 1;
+
+		for (int slot = FrozenMaps.hash(key) & mask; rowTable[slot] != 0; slot = (slot + 1) & mask) {
+			int row = rowTable[slot] - 1;
+
+			if (Objects.equals(rowKeys[row], key)) {
+				return row;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 親マップのキーを追加します。
+	 *
+	 * @param key 親マップのキー
+	 * @return 追加した親マップのキーの位置
+	 */
+	private int addRow(K key) {
+		if (rowCount == rowKeys.length) {
+			int capacity = grow(rowCount);
+			rowKeys = Arrays.copyOf(rowKeys, capacity);
+			rowHeads = Arrays.copyOf(rowHeads, capacity);
+			rowTails = Arrays.copyOf(rowTails, capacity);
+			rowSizes = Arrays.copyOf(rowSizes, capacity);
+		}
+
+		int row = rowCount++;
+		rowKeys[row] = key;
+		rowHeads[row] = -1;
+		rowTails[row] = -1;
+
+		if (rowCount * 2 > rowTable.length) {
+			rowTable = new int[rowTable.length * 2];                            // 負荷率0.5を超えたら作り直す
+
+			for (int i = 0; i < rowCount; i++) {
+				insert(rowTable, FrozenMaps.hash(rowKeys[i]), i);
+			}
+		} else {
+			insert(rowTable, FrozenMaps.hash(key), row);
+		}
+
+		return row;
+	}
+
+	/**
+	 * 組の位置を検索します。
+	 *
+	 * @param row 親マップのキーの位置
+	 * @param subKey 子マップのキー
+	 * @return 組の位置（存在しない場合は-1）
+	 */
+	private int indexOfEntry(int row, Object subKey) {
+		int mask = entryTable.length - 1;
+
+		for (int slot = entryHash(row, subKey) & mask; entryTable[slot] != 0; slot = (slot + 1) & mask) {
+			int entry = entryTable[slot] - 1;
+
+			if (owners[entry] == row && Objects.equals(subKeys[entry], subKey)) {
+				return entry;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 組を追加または更新します。
+	 *
+	 * @param row 親マップのキーの位置
+	 * @param subKey 子マップのキー
+	 * @param value 値
+	 * @return 以前の値（存在しなかった場合はnull）
+	 */
+	@SuppressWarnings("unchecked")
+	private V put(int row, S subKey, V value) {
+		int existing = indexOfEntry(row, subKey);
+
+		if (existing >= 0) {
+			V previous = (V) values[existing];
+			values[existing] = value;
+			return previous;
+		}
+
+		if (entryCount == subKeys.length) {
+			int capacity = grow(entryCount);
+			subKeys = Arrays.copyOf(subKeys, capacity);
+			values = Arrays.copyOf(values, capacity);
+			owners = Arrays.copyOf(owners, capacity);
+			nexts = Arrays.copyOf(nexts, capacity);
+		}
+
+		int entry = entryCount++;
+		subKeys[entry] = subKey;
+		values[entry] = value;
+		owners[entry] = row;
+		nexts[entry] = -1;
+
+		if (rowTails[row] < 0) {
+			rowHeads[row] = entry;
+		} else {
+			nexts[rowTails[row]] = entry;                                       // 追加した順番を保つ
+		}
+
+		rowTails[row] = entry;
+		rowSizes[row]++;
+
+		if (entryCount * 2 > entryTable.length) {
+			entryTable = new int[entryTable.length * 2];                        // 負荷率0.5を超えたら作り直す
+
+			for (int i = 0; i < entryCount; i++) {
+				insert(entryTable, entryHash(owners[i], subKeys[i]), i);
+			}
+		} else {
+			insert(entryTable, entryHash(row, subKey), entry);
+		}
+
+		return null;
+	}
+
+	/**
+	 * 組のハッシュ値を求めます。
+	 *
+	 * @param row 親マップのキーの位置
+	 * @param subKey 子マップのキー
+	 * @return ハッシュ値
+	 */
+	private static int entryHash(int row, Object subKey) {
+		return FrozenMaps.mix(Objects.hashCode(subKey) ^ (row * 0x85ebca6b));
+	}
+
+	/**
+	 * ハッシュ表に位置を格納します。
+	 *
+	 * @param table ハッシュ表
+	 * @param hash ハッシュ値
+	 * @param index 位置
+	 */
+	private static void insert(int[] table, int hash, int index) {
+		int mask = table.length - 1;
+		int slot = hash & mask;
+
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;                                           // 線形探査
+		}
+
+		table[slot] = index + 1;
+	}
+
+	/**
+	 * 配列を拡張する大きさを求めます。
+	 *
+	 * @param size 現在の大きさ
+	 * @return 拡張後の大きさ
+	 */
+	private static int grow(int size) {
+		if (size >= 1 << 29) {
+			throw new IllegalStateException("too many entries");
+		}
+
+		return size * 2;
+	}
+
+	/**
+	 * 子マップのビューです。
+	 */
+	private final class Row extends AbstractMap<S, V> {
+
+		/** 親マップのキーの位置。 */
+		private final int row;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param row 親マップのキーの位置
+		 */
+		private Row(int row) {
+			this.row = row;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public V get(Object key) {
+			int entry = indexOfEntry(row, key);
+			return (entry < 0) ? null : (V) values[entry];
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOfEntry(row, key) >= 0;
+		}
+
+		@Override
+		public V put(S key, V value) {
+			return FlatMapOfMaps.this.put(row, key, value);
+		}
+
+		@Override
+		public int size() {
+			return rowSizes[row];
+		}
+
+		@Override
+		public Set<Map.Entry<S, V>> entrySet() {
+			return new AbstractSet<Map.Entry<S, V>>() {
+
+				@Override
+				public Iterator<Map.Entry<S, V>> iterator() {
+					return new Iterator<Map.Entry<S, V>>() {
+
+						/** 次の組の位置。 */
+						private int next = rowHeads[row];
+
+						@Override
+						public boolean hasNext() {
+							return next >= 0;
+						}
+
+						@Override
+						@SuppressWarnings("unchecked")
+						public Map.Entry<S, V> next() {
+							if (next < 0) {
+								throw new NoSuchElementException();
+							}
+
+							int entry = next;
+							next = nexts[entry];
+							return new SimpleImmutableEntry<>((S) subKeys[entry], (V) values[entry]);
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return rowSizes[row];
+				}
+			};
+		}
+	}
+}
@@ -0,0 +1,597 @@
+package jp.satomaru.java8study;
+
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.RandomAccess;
+import java.util.Set;
+
+/**
+ * {@link ListMaps#end(boolean)}および{@link MapOfMaps#end(boolean)}が返却する、変更できないマップを作成します。
+ *
+ * <p>
+ * キーは一つの配列に、値はキーの順に連結して一つの配列に格納し、各リスト（子マップ）はその配列の一部として表します。
+ * キーの検索には、キーの位置を格納したオープンアドレス法のハッシュ表を使用します。
+ * キーごとのエントリーやリストのオブジェクトを保持しないため、{@link java.util.HashMap}と{@link java.util.ArrayList}、
+ * およびそれらを{@link java.util.Collections#unmodifiableMap(Map)}などで包んだものに比べて、使用するメモリーが大幅に少なくなります。
+ * </p>
+ *
+ * <p>
+ * キーおよび値はnullでも構いません。反復の順番は、元のマップの反復の順番と同じです。
+ * </p>
+ *
+ * <p>
+ * キーの検索には{@link Object#hashCode()}と{@link Object#equals(Object)}を用いるため、
+ * 比較器を使う{@link java.util.TreeMap}や、同一性で比較する{@link java.util.IdentityHashMap}などは変換できません。
+ * 変換できるかどうかは、{@link #isHashed(Map)}で判定してください。
+ * </p>
+ */
+final class FrozenMaps {
+
+	/**
+	 * コンストラクタ。
+	 */
+	private FrozenMaps() {
+	}
+
+	/**
+	 * キーの検索に、{@link Object#hashCode()}と{@link Object#equals(Object)}のみを用いるマップか判定します。
+	 *
+	 * <p>
+	 * {@link HashMap}および{@link LinkedHashMap}そのもの（サブクラスを除く）と、{@link FlatMapOfMaps}が該当します。
+	 * </p>
+	 *
+	 * @param map マップ
+	 * @return 該当する場合はtrue（このクラスで変換しても、検索の結果が変わらない）
+	 */
+	static boolean isHashed(Map<?, ?> map) {
+		Class<?> type = map.getClass();
+		return type == HashMap.class || type == LinkedHashMap.class || map instanceof FlatMapOfMaps;
+	}
+
+	/**
+	 * 親マップと全ての子マップが、{@link #isHashed(Map)}に該当するか判定します（{@link FlatMapOfMaps}の子マップも該当します）。
+	 *
+	 * @param map マップを値として持つマップ
+	 * @return 全てが該当する場合はtrue
+	 */
+	static boolean isHashedMapOfMaps(Map<?, ? extends Map<?, ?>> map) {
+		if (map instanceof FlatMapOfMaps) {
+			return true;
+		}
+
+		if (!isHashed(map)) {
+			return false;
+		}
+
+		for (Map<?, ?> subMap : map.values()) {
+			if (!isHashed(subMap)) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	/**
+	 * リストを値として持つマップを、変更できないマップに変換します。
+	 *
+	 * @param source 元のマップ
+	 * @return 変更できないマップ
+	 */
+	static <K, E> Map<K, List<E>> freezeListMap(Map<K, ? extends List<E>> source) {
+		return new FrozenListMap<>(source);
+	}
+
+	/**
+	 * マップを値として持つマップを、変更できないマップに変換します。
+	 *
+	 * @param source 元のマップ
+	 * @return 変更できないマップ
+	 */
+	static <K, S, V> Map<K, Map<S, V>> freezeMapOfMaps(Map<K, ? extends Map<S, V>> source) {
+		return new FrozenMapOfMaps<>(source);
+	}
+
+	/**
+	 * キーのハッシュ値を求めます。
+	 *
+	 * @param key キー（null可）
+	 * @return ハッシュ値
+	 */
+	static int hash(Object key) {
+		return mix(Objects.hashCode(key));
+	}
+
+	/**
+	 * ハッシュ値を、下位ビットに偏りがあっても分散するように攪拌します。
+	 *
+	 * @param hashCode ハッシュ値
+	 * @return 攪拌したハッシュ値
+	 */
+	static int mix(int hashCode) {
+		int h = hashCode * 0x9e3779b9;
+		return h ^ (h >>> 16);
+	}
+
+	/**
+	 * 要素数に応じた、ハッシュ表の大きさを求めます。
+	 *
+	 * @param size 要素数
+	 * @return ハッシュ表の大きさ（2の累乗で、負荷率が0.5以下になる大きさ）
+	 */
+	private static int tableSize(int size) {
+		if (size > 1 << 29) {
+			throw new IllegalArgumentException("too many keys: " + size);
+		}
+
+		return Integer.highestOneBit(Math.max(1, size) * 2 - 1) << 1;
+	}
+
+	/**
+	 * キーの配列から、キーの位置を格納したハッシュ表を作成します。
+	 *
+	 * @param keys キーの配列
+	 * @return ハッシュ表（キーの位置+1を格納し、0は空きを表す）
+	 */
+	private static int[] index(Object[] keys) {
+		int[] table = new int[tableSize(keys.length)];
+		int mask = table.length - 1;
+
+		for (int i = 0; i < keys.length; i++) {
+			int slot = hash(keys[i]) & mask;
+
+			while (table[slot] != 0) {
+				slot = (slot + 1) & mask;                                       // 線形探査
+			}
+
+			table[slot] = i + 1;
+		}
+
+		return table;
+	}
+
+	/**
+	 * ハッシュ表からキーの位置を検索します。
+	 *
+	 * @param table ハッシュ表
+	 * @param keys キーの配列
+	 * @param key キー
+	 * @return キーの位置（存在しない場合は-1）
+	 */
+	private static int indexOf(int[] table, Object[] keys, Object key) {
+		int mask = table.length - 1;
+
+		for (int slot = hash(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+
+			if (Objects.equals(keys[index], key)) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * 配列の一部を、変更できないリストとして表します。
+	 *
+	 * @param <E> リストの値
+	 */
+	private static final class Slice<E> extends AbstractList<E> implements RandomAccess {
+
+		/** 値の配列。 */
+		private final Object[] values;
+
+		/** 開始位置。 */
+		private final int from;
+
+		/** 要素数。 */
+		private final int size;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param values 値の配列
+		 * @param from 開始位置
+		 * @param to 終了位置（この位置を含まない）
+		 */
+		private Slice(Object[] values, int from, int to) {
+			this.values = values;
+			this.from = from;
+			this.size = to - from;
+		}
+
+		@Override
+		@SuppressWarnings("unchecked")
+		public E get(int index) {
+			if (index < 0 || index >= size) {
+				throw new IndexOutOfBoundsException(String.format("index: %d, size: %d", index, size));
+			}
+
+			return (E) values[from + index];
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+	}
+
+	/**
+	 * 位置を指定してエントリーを作成する反復子です。
+	 *
+	 * @param <T> エントリー
+	 */
+	private abstract static class IndexIterator<T> implements Iterator<T> {
+
+		/** 開始位置。 */
+		private int next;
+
+		/** 終了位置（この位置を含まない）。 */
+		private final int end;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param from 開始位置
+		 * @param to 終了位置（この位置を含まない）
+		 */
+		private IndexIterator(int from, int to) {
+			this.next = from;
+			this.end = to;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next < end;
+		}
+
+		@Override
+		public T next() {
+			if (next >= end) {
+				throw new NoSuchElementException();
+			}
+
+			return get(next++);
+		}
+
+		/**
+		 * エントリーを作成します。
+		 *
+		 * @param index 位置
+		 * @return エントリー
+		 */
+		protected abstract T get(int index);
+	}
+
+	/**
+	 * リストを値として持つ、変更できないマップです。
+	 *
+	 * @param <K> マップのキー
+	 * @param <E> リストの値
+	 */
+	private static final class FrozenListMap<K, E> extends AbstractMap<K, List<E>> {
+
+		/** キーの配列。 */
+		private final Object[] keys;
+
+		/** 各キーの値の開始位置（最後の要素は値の総数）。 */
+		private final int[] offsets;
+
+		/** 全ての値を、キーの順に連結した配列。 */
+		private final Object[] values;
+
+		/** キーの位置を格納したハッシュ表。 */
+		private final int[] table;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param source 元のマップ
+		 */
+		private FrozenListMap(Map<K, ? extends List<E>> source) {
+			int size = source.size();
+			long total = 0;
+
+			for (List<E> list : source.values()) {
+				total += list.size();
+			}
+
+			if (total > Integer.MAX_VALUE - 8) {
+				throw new IllegalArgumentException("too many values: " + total);
+			}
+
+			keys = new Object[size];
+			offsets = new int[size + 1];
+			values = new Object[(int) total];
+
+			int index = 0;
+			int offset = 0;
+
+			for (Map.Entry<K, ? extends List<E>> entry : source.entrySet()) {
+				keys[index] = entry.getKey();
+				offsets[index] = offset;
+
+				for (E value : entry.getValue()) {
+					values[offset++] = value;
+				}
+
+				index++;
+			}
+
+			offsets[size] = offset;
+			table = index(keys);
+		}
+
+		@Override
+		public List<E> get(Object key) {
+			int index = indexOf(table, keys, key);
+			return (index < 0) ? null : slice(index);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(table, keys, key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return keys.length;
+		}
+
+		@Override
+		public Set<Map.Entry<K, List<E>>> entrySet() {
+			return new AbstractSet<Map.Entry<K, List<E>>>() {
+
+				@Override
+				public Iterator<Map.Entry<K, List<E>>> iterator() {
+					return new IndexIterator<Map.Entry<K, List<E>>>(0, keys.length) {
+
+						@Override
+						@SuppressWarnings("unchecked")
+						protected Map.Entry<K, List<E>> get(int index) {
+							return new SimpleImmutableEntry<>((K) keys[index], slice(index));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return keys.length;
+				}
+			};
+		}
+
+		/**
+		 * キーのリストを作成します。
+		 *
+		 * @param index キーの位置
+		 * @return 値の配列の一部を表すリスト
+		 */
+		private List<E> slice(int index) {
+			return new Slice<>(values, offsets[index], offsets[index + 1]);
+		}
+	}
+
+	/**
+	 * マップを値として持つ、変更できないマップです。
+	 *
+	 * <p>
+	 * 子マップのキーは、親マップのキーの位置と組み合わせて、全体で一つのハッシュ表に格納します。
+	 * </p>
+	 *
+	 * @param <K> 親マップのキー
+	 * @param <S> 子マップのキー
+	 * @param <V> 子マップの値
+	 */
+	private static final class FrozenMapOfMaps<K, S, V> extends AbstractMap<K, Map<S, V>> {
+
+		/** 親マップのキーの配列。 */
+		private final Object[] keys;
+
+		/** 各子マップの開始位置（最後の要素は子マップの要素の総数）。 */
+		private final int[] offsets;
+
+		/** 全ての子マップのキーを、親マップのキーの順に連結した配列。 */
+		private final Object[] subKeys;
+
+		/** 全ての子マップの値を、{@link #subKeys}と同じ順に連結した配列。 */
+		private final Object[] values;
+
+		/** 親マップのキーの位置を格納したハッシュ表。 */
+		private final int[] table;
+
+		/** 子マップのキーの位置を格納したハッシュ表。 */
+		private final int[] subTable;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param source 元のマップ
+		 */
+		private FrozenMapOfMaps(Map<K, ? extends Map<S, V>> source) {
+			int size = source.size();
+			long total = 0;
+
+			for (Map<S, V> map : source.values()) {
+				total += map.size();
+			}
+
+			if (total > 1 << 29) {
+				throw new IllegalArgumentException("too many values: " + total);
+			}
+
+			keys = new Object[size];
+			offsets = new int[size + 1];
+			subKeys = new Object[(int) total];
+			values = new Object[(int) total];
+			subTable = new int[tableSize((int) total)];
+
+			int mask = subTable.length - 1;
+			int index = 0;
+			int offset = 0;
+
+			for (Map.Entry<K, ? extends Map<S, V>> entry : source.entrySet()) {
+				keys[index] = entry.getKey();
+				offsets[index] = offset;
+
+				for (Map.Entry<S, V> subEntry : entry.getValue().entrySet()) {
+					subKeys[offset] = subEntry.getKey();
+					values[offset] = subEntry.getValue();
+
+					int slot = subHash(index, subEntry.getKey()) & mask;
+
+					while (subTable[slot] != 0) {
+						slot = (slot + 1) & mask;
+					}
+
+					subTable[slot] = ++offset;                                  // 位置+1を格納
+				}
+
+				index++;
+			}
+
+			offsets[size] = offset;
+			table = index(keys);
+		}
+
+		@Override
+		public Map<S, V> get(Object key) {
+			int index = indexOf(table, keys, key);
+			return (index < 0) ? null : new SubMap(index);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			return indexOf(table, keys, key) >= 0;
+		}
+
+		@Override
+		public int size() {
+			return keys.length;
+		}
+
+		@Override
+		public Set<Map.Entry<K, Map<S, V>>> entrySet() {
+			return new AbstractSet<Map.Entry<K, Map<S, V>>>() {
+
+				@Override
+				public Iterator<Map.Entry<K, Map<S, V>>> iterator() {
+					return new IndexIterator<Map.Entry<K, Map<S, V>>>(0, keys.length) {
+
+						@Override
+						@SuppressWarnings("unchecked")
+						protected Map.Entry<K, Map<S, V>> get(int index) {
+							return new SimpleImmutableEntry<>((K) keys[index], new SubMap(index));
+						}
+					};
+				}
+
+				@Override
+				public int size() {
+					return keys.length;
+				}
+			};
+		}
+
+		/**
+		 * 親マップのキーの位置と、子マップのキーから、ハッシュ値を求めます。
+		 *
+		 * @param index 親マップのキーの位置
+		 * @param subKey 子マップのキー
+		 * @return ハッシュ値
+		 */
+		private static int subHash(int index, Object subKey) {
+			return mix(Objects.hashCode(subKey) ^ (index * 0x85ebca6b));
+		}
+
+		/**
+		 * 子マップのキーの位置を検索します。
+		 *
+		 * @param index 親マップのキーの位置
+		 * @param subKey 子マップのキー
+		 * @return 子マップのキーの位置（存在しない場合は-1）
+		 */
+		private int subIndexOf(int index, Object subKey) {
+			int from = offsets[index];
+			int to = offsets[index + 1];
+			int mask = subTable.length - 1;
+
+			for (int slot = subHash(index, subKey) & mask; subTable[slot] != 0; slot = (slot + 1) & mask) {
+				int position = subTable[slot] - 1;
+
+				if (position >= from && position < to && Objects.equals(subKeys[position], subKey)) {
+					return position;
+				}
+			}
+
+			return -1;
+		}
+
+		/**
+		 * 配列の一部を、変更できない子マップとして表します。
+		 */
+		private final class SubMap extends AbstractMap<S, V> {
+
+			/** 親マップのキーの位置。 */
+			private final int index;
+
+			/**
+			 * コンストラクタ。
+			 *
+			 * @param index 親マップのキーの位置
+			 */
+			private SubMap(int index) {
+				this.index = index;
+			}
+
+			@Override
+			@SuppressWarnings("unchecked")
+			public V get(Object key) {
+				int position = subIndexOf(index, key);
+				return (position < 0) ? null : (V) values[position];
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return subIndexOf(index, key) >= 0;
+			}
+
+			@Override
+			public int size() {
+				return offsets[index + 1] - offsets[index];
+			}
+
+			@Override
+			public Set<Map.Entry<S, V>> entrySet() {
+				return new AbstractSet<Map.Entry<S, V>>() {
+
+					@Override
+					public Iterator<Map.Entry<S, V>> iterator() {
+						return new IndexIterator<Map.Entry<S, V>>(offsets[index], offsets[index + 1]) {
+
+							@Override
+							@SuppressWarnings("unchecked")
+							protected Map.Entry<S, V> get(int position) {
+								return new SimpleImmutableEntry<>((S) subKeys[position], (V) values[position]);
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return SubMap.this.size();
+					}
+				};
+			}
+		}
+	}
+}
@@ -0,0 +1,383 @@
+package jp.satomaru.java8study;
+
+import java.nio.IntBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * int型のキーと、int型の値のリストを持つマップの作成を補助します。
+ *
+ * <p>
+ * 使い方は{@link ListMaps}と同じですが、キーと値をボクシングしません。
+ * キーは線形探査のハッシュ表に、値はキーごとに拡張するint型の配列に格納するため、
+ * {@code ListMaps<Integer, Integer>}と比べて、使用するメモリーが大幅に少なくなります。
+ * 作成を終えた後に{@link #compact()}を呼び出すと、全てのリストを一つの配列に詰め直し、さらにメモリーを減らせます。
+ * 作成した内容は、{@link #get(int)}や{@link #forEach(IntObjConsumer)}で参照します。
+ * 反復の順番は、キーを追加した順番です。このクラスはスレッドセーフではありません。
+ * </p>
+ */
+public class IntListMaps {
+
+	/** 値を持たないリスト。 */
+	private static final int[] EMPTY = new int[0];
+
+	/** キーの配列の初期の大きさ。 */
+	private static final int INITIAL_CAPACITY = 16;
+
+	/** 値の配列の、最初に確保する大きさの既定値。 */
+	private static final int FIRST_LIST_CAPACITY = 4;
+
+	/**
+	 * マップの作成を開始します。
+	 *
+	 * @return IntListMapsオブジェクト
+	 */
+	public static IntListMaps begin() {
+		return begin(INITIAL_CAPACITY, FIRST_LIST_CAPACITY);
+	}
+
+	/**
+	 * マップの作成を開始します。
+	 *
+	 * @param expectedKeys キーの数の見込み
+	 * @param expectedValuesPerKey 一つのキーの値の数の見込み
+	 * @return IntListMapsオブジェクト
+	 */
+	public static IntListMaps begin(int expectedKeys, int expectedValuesPerKey) {
+		return new IntListMaps(Math.max(INITIAL_CAPACITY, Math.min(expectedKeys, 1 << 29)), Math.max(1, expectedValuesPerKey));
+	}
+
+	/** リストの作成を補助します。 */
+	public class Lists {
+
+		/** 現在、作成の補助をしているリストの位置。 */
+		private final int index;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param index リストの位置
+		 */
+		private Lists(int index) {
+			this.index = index;
+		}
+
+		/**
+		 * リストに値を一つ追加します。
+		 *
+		 * @param value 値
+		 * @return このListsオブジェクト自身
+		 */
+		public Lists add(int value) {
+			int size = sizes[index];
+			ensureCapacity(index, size + 1)[size] = value;
+			sizes[index] = size + 1;
+			return this;
+		}
+
+		/**
+		 * リストに値を追加します。
+		 *
+		 * @param values 値
+		 * @return このListsオブジェクト自身
+		 */
+		public Lists add(int... values) {
+			int size = sizes[index];
+			System.arraycopy(values, 0, ensureCapacity(index, size + values.length), size, values.length);
+			sizes[index] = size + values.length;
+			return this;
+		}
+
+		/**
+		 * リストの作成を終了します。
+		 *
+		 * @return IntListMapsオブジェクト
+		 */
+		public IntListMaps end() {
+			return IntListMaps.this;
+		}
+	}
+
+	/** キーの配列。 */
+	private int[] keys;
+
+	/** キーごとの、値の配列（{@link #compact()}で詰め直した後はnull）。 */
+	private int[][] lists;
+
+	/** 全てのリストを詰め直した配列（詰め直していない場合はnull）。 */
+	private int[] packed;
+
+	/** 詰め直した配列での、キーごとの最初の値の位置。 */
+	private int[] offsets;
+
+	/** キーごとの、値の数。 */
+	private int[] sizes;
+
+	/** キーの数。 */
+	private int count;
+
+	/** キーの位置を格納したハッシュ表（位置+1を格納し、0は空きを表す）。 */
+	private int[] table;
+
+	/** 値の配列の、最初に確保する大きさ。 */
+	private final int firstListCapacity;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param capacity キーの配列の大きさ
+	 * @param firstListCapacity 値の配列の、最初に確保する大きさ
+	 */
+	private IntListMaps(int capacity, int firstListCapacity) {
+		keys = new int[capacity];
+		lists = new int[capacity][];
+		sizes = new int[capacity];
+		table = new int[Integer.highestOneBit(capacity - 1) << 2];
+		this.firstListCapacity = firstListCapacity;
+	}
+
+	/**
+	 * リストの作成を開始します。
+	 *
+	 * @param key このリストに割り当てる、マップのキー
+	 * @return リストの作成に用いるListsオブジェクト
+	 */
+	public Lists begin(int key) {
+		expand();
+		int index = indexOf(key);
+		return new Lists((index >= 0) ? index : addKey(key));
+	}
+
+	/**
+	 * キーの数を取得します。
+	 *
+	 * @return キーの数
+	 */
+	public int size() {
+		return count;
+	}
+
+	/**
+	 * キーが存在するか判定します。
+	 *
+	 * @param key キー
+	 * @return 存在する場合はtrue
+	 */
+	public boolean containsKey(int key) {
+		return indexOf(key) >= 0;
+	}
+
+	/**
+	 * キーに対応するリストを取得します。
+	 *
+	 * @param key キー
+	 * @return リストの値を複製した配列（キーが存在しない場合はnull）
+	 */
+	public int[] get(int key) {
+		int index = indexOf(key);
+		if (index < 0) {
+			return null;
+		}
+
+		return (packed != null)
+				? Arrays.copyOfRange(packed, offsets[index], offsets[index] + sizes[index])
+				: Arrays.copyOf(lists[index], sizes[index]);
+	}
+
+	/**
+	 * 全てのキーとリストに対して、処理を実行します。
+	 *
+	 * <p>
+	 * リストは、値を複製せずに参照する、読み取り専用の{@link IntBuffer}として渡します。
+	 * 値は位置0からlimitまでです。処理の中でこのIntListMapsに値を追加した場合の結果は保証しません。
+	 * </p>
+	 *
+	 * @param action キーとリストを受け取る処理
+	 */
+	public void forEach(IntObjConsumer<? super IntBuffer> action) {
+		for (int i = 0; i < count; i++) {
+			IntBuffer values = (packed != null) ? IntBuffer.wrap(packed, offsets[i], sizes[i]).slice() : IntBuffer.wrap(lists[i], 0, sizes[i]);
+			action.accept(keys[i], values.asReadOnlyBuffer());
+		}
+	}
+
+	/**
+	 * 全てのリストを、一つの配列に詰め直します。
+	 *
+	 * <p>
+	 * キーごとの配列の、ヘッダーと拡張用の余白がなくなるため、キーが多く、一つのキーの値が少ない場合に特に有効です。
+	 * 詰め直した後も値を追加できますが、その時点でキーごとの配列に戻します。
+	 * </p>
+	 *
+	 * @return このIntListMapsオブジェクト自身
+	 */
+	public IntListMaps compact() {
+		if (packed != null) {
+			return this;
+		}
+
+		long total = 0;
+
+		for (int i = 0; i < count; i++) {
+			total += sizes[i];
+		}
+
+		if (total > Integer.MAX_VALUE - 8) {
+			throw new IllegalStateException("too many values");
+		}
+
+		packed = new int[(int) total];
+		offsets = new int[count];
+		int offset = 0;
+
+		for (int i = 0; i < count; i++) {
+			System.arraycopy(lists[i], 0, packed, offset, sizes[i]);
+			offsets[i] = offset;
+			offset += sizes[i];
+		}
+
+		keys = Arrays.copyOf(keys, Math.max(count, 1));                       // 拡張用の余白も除く
+		sizes = Arrays.copyOf(sizes, keys.length);
+		lists = null;
+		return this;
+	}
+
+	/**
+	 * 内容を、キーと値をボクシングした{@link ListMaps}と同じ形式のマップに変換します。
+	 *
+	 * @return 変換したマップ（変更可能な複製）
+	 */
+	public Map<Integer, List<Integer>> toMap() {
+		Map<Integer, List<Integer>> map = new LinkedHashMap<>((int) (count / 0.75f) + 1);
+
+		for (int i = 0; i < count; i++) {
+			int[] array = (packed != null) ? packed : lists[i];
+			int offset = (packed != null) ? offsets[i] : 0;
+			List<Integer> list = new ArrayList<>(sizes[i]);
+
+			for (int j = 0; j < sizes[i]; j++) {
+				list.add(array[offset + j]);
+			}
+
+			map.put(keys[i], list);
+		}
+
+		return map;
+	}
+
+	/**
+	 * {@link #compact()}で詰め直している場合は、キーごとの配列に戻します。
+	 */
+	private void expand() {
+		if (packed == null) {
+			return;
+		}
+
+		lists = new int[keys.length][];
+
+		for (int i = 0; i < count; i++) {
+			lists[i] = (sizes[i] == 0) ? EMPTY : Arrays.copyOfRange(packed, offsets[i], offsets[i] + sizes[i]);
+		}
+
+		packed = null;
+		offsets = null;
+	}
+
+	/**
+	 * キーの位置を検索します。
+	 *
+	 * @param key キー
+	 * @return キーの位置（存在しない場合は-1）
+	 */
+	private int indexOf(int key) {
+		int mask = table.length - 1;
+
+		for (int slot = FrozenMaps.mix(key) & mask; table[slot] != 0; slot = (slot + 1) & mask) {
+			int index = table[slot] - 1;
+
+			if (keys[index] == key) {
+				return index;
+			}
+		}
+
+		return -1;
+	}
+
+	/**
+	 * キーを追加します。
+	 *
+	 * @param key キー
+	 * @return 追加したキーの位置
+	 */
+	private int addKey(int key) {
+		if (count == keys.length) {
+			if (count >= 1 << 29) {
+				throw new IllegalStateException("too many keys");
+			}
+
+			keys = Arrays.copyOf(keys, count * 2);
+			lists = Arrays.copyOf(lists, count * 2);
+			sizes = Arrays.copyOf(sizes, count * 2);
+		}
+
+		int index = count++;
+		keys[index] = key;
+		lists[index] = EMPTY;
+
+		if (count * 2 > table.length) {
+			table = new int[table.length * 2];                                  // 負荷率0.5を超えたら作り直す
+
+			for (int i = 0; i < count; i++) {
+				insert(keys[i], i);
+			}
+		} else {
+			insert(key, index);
+		}
+
+		return index;
+	}
+
+	/**
+	 * ハッシュ表にキーの位置を格納します。
+	 *
+	 * @param key キー
+	 * @param index キーの位置
+	 */
+	private void insert(int key, int index) {
+		int mask = table.length - 1;
+		int slot = FrozenMaps.mix(key) & mask;
+
+		while (table[slot] != 0) {
+			slot = (slot + 1) & mask;                                           // 線形探査
+		}
+
+		table[slot] = index + 1;
+	}
+
+	/**
+	 * 値の配列を、指定された数の値を格納できる大きさに拡張します。
+	 *
+	 * @param index リストの位置
+	 * @param required 格納する値の数
+	 * @return 値の配列
+	 */
+	private int[] ensureCapacity(int index, int required) {
+		expand();
+		int[] list = lists[index];
+
+		if (required > list.length) {
+			if (required < 0 || required > Integer.MAX_VALUE - 8) {
+				throw new IllegalStateException("too many values");
+			}
+
+			int capacity = Math.max(firstListCapacity, list.length + (list.length >> 1));
+			list = Arrays.copyOf(list, (int) Math.min(Integer.MAX_VALUE - 8, Math.max((long) capacity, required)));
+			lists[index] = list;
+		}
+
+		return list;
+	}
+}
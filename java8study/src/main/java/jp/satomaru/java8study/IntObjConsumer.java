@@ -0,0 +1,22 @@
+package jp.satomaru.java8study;
+
+/**
+ * int型の値とオブジェクトを受け取る処理です。
+ *
+ * <p>
+ * {@link java.util.function.BiConsumer}と異なり、int型の値をボクシングせずに受け取ります。
+ * </p>
+ *
+ * @param <T> オブジェクトの型
+ */
+@FunctionalInterface
+public interface IntObjConsumer<T> {
+
+	/**
+	 * 処理を実行します。
+	 *
+	 * @param value int型の値
+	 * @param object オブジェクト
+	 */
+	void accept(int value, T object);
+}
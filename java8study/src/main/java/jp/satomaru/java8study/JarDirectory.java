@@ -0,0 +1,571 @@
+package jp.satomaru.java8study;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * JARファイルの中央ディレクトリーのみを読み、クラスの一覧を取得します。
+ *
+ * <p>
+ * {@link java.util.jar.JarFile}は、マニフェストや署名の検証の準備を行い、エントリーごとに{@link java.util.jar.JarEntry}を生成します。
+ * クラスの検索には、エントリー名しか必要ありません。
+ * このクラスは、ファイルの末尾から中央ディレクトリーの終端レコードを探し、中央ディレクトリーを位置指定の読み込みで一度に読んで、ヘッダーを順に辿ります。
+ * エントリー名は、バイト列のままパッケージ名の接頭辞と拡張子を比較し、該当するものだけを文字列に変換します。
+ * {@code META-INF/}配下（マルチリリースJARの{@code META-INF/versions/N/}を含む）と{@code module-info.class}は、クラスとして扱いません。
+ * {@link #classNames(File, String)}は、ローカルヘッダーや、エントリーの内容を読みません。ZIP64形式にも対応します。
+ * </p>
+ *
+ * <p>
+ * {@link #metadata(File, String)}は、該当するエントリーの内容も読み、クラスをロードせずに宣言の情報を取得します。
+ * </p>
+ *
+ * <p>
+ * メモリーマップは使用しません（マップはチャネルを閉じてもGCされるまで残り、Windowsではその間ファイルを削除・置換できないため）。
+ * 戻った時点でJARファイルは閉じているので、{@link JarIndexWatcher}のように、使用中のJARファイルをその場で置き換えられます。
+ * </p>
+ */
+public final class JarDirectory {
+
+	/** 中央ディレクトリーの終端レコードの署名。 */
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	/** 中央ディレクトリーの終端レコードの大きさ（コメントを除く）。 */
+	private static final int END_SIZE = 22;
+
+	/** ZIP64の中央ディレクトリーの終端レコードの署名。 */
+	private static final int ZIP64_END_SIGNATURE = 0x06064b50;
+
+	/** ZIP64の中央ディレクトリーの終端ロケーターの署名。 */
+	private static final int ZIP64_LOCATOR_SIGNATURE = 0x07064b50;
+
+	/** ZIP64の中央ディレクトリーの終端ロケーターの大きさ。 */
+	private static final int ZIP64_LOCATOR_SIZE = 20;
+
+	/** 中央ディレクトリーのヘッダーの署名。 */
+	private static final int HEADER_SIGNATURE = 0x02014b50;
+
+	/** 中央ディレクトリーのヘッダーの大きさ（可変長部分を除く）。 */
+	private static final int HEADER_SIZE = 46;
+
+	/** ZIPファイルのコメントの最大長。 */
+	private static final int MAX_COMMENT = 0xffff;
+
+	/** クラスファイルの拡張子。 */
+	private static final byte[] CLASS_SUFFIX = ".class".getBytes(StandardCharsets.US_ASCII);
+
+	/** パッケージ情報のファイル名。 */
+	private static final byte[] PACKAGE_INFO = "package-info.class".getBytes(StandardCharsets.US_ASCII);
+
+	/** モジュール宣言のファイル名。 */
+	private static final byte[] MODULE_INFO = "module-info.class".getBytes(StandardCharsets.US_ASCII);
+
+	/** メタデータのディレクトリー（マルチリリースJARの版ごとのクラスを含む）。 */
+	private static final byte[] META_INF = "META-INF/".getBytes(StandardCharsets.US_ASCII);
+
+	/**
+	 * JARファイルから、指定されたパッケージ配下（サブパッケージを含む）のクラスを取得します。
+	 *
+	 * @param file JARファイル
+	 * @param packageName パッケージ名（空文字列の場合は、全てのクラス）
+	 * @return クラスのバイナリー名（JARファイル内の順）
+	 * @throws FileNotFoundException JARファイルが存在しない場合
+	 * @throws ZipException ZIP形式として誤っている場合
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public static List<String> classNames(File file, String packageName) throws IOException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+
+		byte[] prefix = packageName.isEmpty() ? new byte[0] : (packageName.replace('.', '/') + '/').getBytes(StandardCharsets.UTF_8);
+
+		List<String> classNames = new ArrayList<>();
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Location location = locate(channel);
+			ByteBuffer directory = read(channel, location.position, (int) location.size);
+			forEachClass(directory, prefix, (header, className) -> classNames.add(className));
+		}
+
+		return classNames;
+	}
+
+	/**
+	 * JARファイルから、指定されたパッケージ配下（サブパッケージを含む）のクラスの宣言を読み取ります。
+	 *
+	 * <p>
+	 * 該当するエントリーの内容だけを、使い回すバッファーへ位置指定で読み込んで展開し、{@link ClassMetadata#parse(ByteBuffer)}で解析します。
+	 * クラスはロードしません。
+	 * </p>
+	 *
+	 * @param file JARファイル
+	 * @param packageName パッケージ名（空文字列の場合は、全てのクラス）
+	 * @return クラスの宣言の情報（JARファイル内の順）
+	 * @throws FileNotFoundException JARファイルが存在しない場合
+	 * @throws ZipException ZIP形式、またはクラスファイルとして誤っている場合
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public static List<ClassMetadata> metadata(File file, String packageName) throws IOException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+
+		byte[] prefix = packageName.isEmpty() ? new byte[0] : (packageName.replace('.', '/') + '/').getBytes(StandardCharsets.UTF_8);
+		List<ClassMetadata> metadata = new ArrayList<>();
+		Inflater inflater = new Inflater(true);
+
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			Location location = locate(channel);
+			ByteBuffer directory = read(channel, location.position, (int) location.size);
+			EntryReader reader = new EntryReader(channel, location.position, location.base, inflater);
+			forEachClass(directory, prefix, (header, className) -> metadata.add(reader.metadata(directory, header, className)));
+		} finally {
+			inflater.end();
+		}
+
+		return metadata;
+	}
+
+	/**
+	 * 中央ディレクトリーの位置です。
+	 */
+	private static final class Location {
+
+		/** 中央ディレクトリーの位置。 */
+		private final long position;
+
+		/** 中央ディレクトリーの大きさ。 */
+		private final long size;
+
+		/** ローカルヘッダーのオフセットの基準となる位置（先頭に付加されたデータの大きさ）。 */
+		private final long base;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param position 中央ディレクトリーの位置
+		 * @param size 中央ディレクトリーの大きさ
+		 * @param base ローカルヘッダーのオフセットの基準となる位置
+		 */
+		private Location(long position, long size, long base) {
+			this.position = position;
+			this.size = size;
+			this.base = base;
+		}
+	}
+
+	/**
+	 * 中央ディレクトリーの位置を特定します。
+	 *
+	 * @param channel JARファイル
+	 * @return 中央ディレクトリーの位置
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static Location locate(FileChannel channel) throws IOException {
+		long size = channel.size();
+
+		if (size < END_SIZE) {
+			throw new ZipException("zip END header not found");
+		}
+
+		// ほとんどのJARファイルにはコメントがないため、まず末尾の22バイトだけを読む
+		ByteBuffer tail = read(channel, size - END_SIZE, END_SIZE);
+		int end = 0;
+
+		if (tail.getInt(0) != END_SIGNATURE || tail.getShort(20) != 0) {
+			int length = (int) Math.min(size, END_SIZE + MAX_COMMENT);
+			tail = read(channel, size - length, length);
+			end = findEnd(tail);
+		}
+
+		long endPosition = size - tail.capacity() + end;
+		long entries = tail.getShort(end + 10) & 0xffffL;
+		long directorySize = tail.getInt(end + 12) & 0xffffffffL;
+		long directoryOffset = tail.getInt(end + 16) & 0xffffffffL;
+		long directoryEnd = endPosition;
+
+		if ((entries == 0xffff || directorySize == 0xffffffffL || directoryOffset == 0xffffffffL) && endPosition >= ZIP64_LOCATOR_SIZE) {
+			ByteBuffer locator = read(channel, endPosition - ZIP64_LOCATOR_SIZE, ZIP64_LOCATOR_SIZE);
+
+			if (locator.getInt(0) == ZIP64_LOCATOR_SIGNATURE) {
+				long zip64End = locator.getLong(8);
+				ByteBuffer record = read(channel, zip64End, 56);
+
+				if (record.getInt(0) != ZIP64_END_SIGNATURE) {
+					throw new ZipException("invalid zip64 END header");
+				}
+
+				directorySize = record.getLong(40);
+				directoryOffset = record.getLong(48);
+				directoryEnd = zip64End;
+			}
+		}
+
+		// 先頭に別のデータ（実行用のスクリプトなど）が付加されている場合は、オフセットがずれる
+		long directoryPosition = directoryEnd - directorySize;
+
+		if (directoryPosition < 0 || directoryOffset > directoryPosition || directorySize > Integer.MAX_VALUE) {
+			throw new ZipException("invalid END header");
+		}
+
+		return new Location(directoryPosition, directorySize, directoryPosition - directoryOffset);
+	}
+
+	/**
+	 * コメントを含む末尾から、中央ディレクトリーの終端レコードを後ろ向きに探します。
+	 *
+	 * @param tail ファイルの末尾
+	 * @return 終端レコードの位置
+	 * @throws ZipException 見つからない場合
+	 */
+	private static int findEnd(ByteBuffer tail) throws ZipException {
+		for (int position = tail.capacity() - END_SIZE; position >= 0; position--) {
+			if (tail.getInt(position) == END_SIGNATURE
+					&& position + END_SIZE + (tail.getShort(position + 20) & 0xffff) == tail.capacity()) {
+
+				return position;
+			}
+		}
+
+		throw new ZipException("zip END header not found");
+	}
+
+	/**
+	 * ファイルの一部を読み込みます。
+	 *
+	 * @param channel ファイル
+	 * @param position 読み込みを開始する位置
+	 * @param length 読み込む大きさ
+	 * @return 読み込んだ内容（リトルエンディアン）
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		readFully(channel, buffer, position);
+		return buffer;
+	}
+
+	/**
+	 * ファイルの一部を、バッファーの位置から限界まで読み込みます。
+	 *
+	 * @param channel ファイル
+	 * @param buffer 読み込み先
+	 * @param position 読み込みを開始する位置
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	private static void readFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+		for (long next = position; buffer.hasRemaining(); ) {
+			int count = channel.read(buffer, next);
+
+			if (count < 0) {
+				throw new ZipException("unexpected end of file");
+			}
+
+			next += count;
+		}
+	}
+
+	/**
+	 * 中央ディレクトリーのヘッダーに対して行う処理です。
+	 */
+	@FunctionalInterface
+	private interface ClassEntryConsumer {
+
+		/**
+		 * 処理を行います。
+		 *
+		 * @param header ヘッダーの位置
+		 * @param className クラスのバイナリー名
+		 * @throws IOException 処理に失敗した場合
+		 */
+		void accept(int header, String className) throws IOException;
+	}
+
+	/**
+	 * 中央ディレクトリーのヘッダーを辿り、クラスごとに処理を行います。
+	 *
+	 * @param directory 中央ディレクトリー
+	 * @param prefix エントリー名の接頭辞
+	 * @param action クラスごとに行う処理
+	 * @throws IOException ヘッダーが誤っている、または処理に失敗した場合
+	 */
+	private static void forEachClass(ByteBuffer directory, byte[] prefix, ClassEntryConsumer action) throws IOException {
+		byte[] name = new byte[256];                                            // 名前の複製先（使い回す）
+		int limit = directory.limit();
+		int position = 0;
+
+		while (position + HEADER_SIZE <= limit) {
+			int header = position;
+
+			if (directory.getInt(position) != HEADER_SIGNATURE) {
+				throw new ZipException("invalid CEN header (bad signature)");
+			}
+
+			int nameLength = directory.getShort(position + 28) & 0xffff;
+			int extraLength = directory.getShort(position + 30) & 0xffff;
+			int commentLength = directory.getShort(position + 32) & 0xffff;
+			int nameStart = position + HEADER_SIZE;
+			position = nameStart + nameLength + extraLength + commentLength;
+
+			if (position > limit) {
+				throw new ZipException("invalid CEN header (bad entry name or comment length)");
+			}
+
+			if (!isClass(directory, nameStart, nameLength, prefix)) {
+				continue;
+			}
+
+			int length = nameLength - CLASS_SUFFIX.length;
+
+			if (name.length < length) {
+				name = new byte[Math.max(length, name.length * 2)];
+			}
+
+			for (int i = 0; i < length; i++) {
+				byte b = directory.get(nameStart + i);
+				name[i] = (b == '/') ? (byte) '.' : b;
+			}
+
+			action.accept(header, new String(name, 0, length, StandardCharsets.UTF_8));
+		}
+	}
+
+	/**
+	 * エントリーの内容を読み込み、クラスファイルを解析します。
+	 */
+	private static final class EntryReader {
+
+		/** JARファイル。 */
+		private final FileChannel channel;
+
+		/** 中央ディレクトリーの位置（エントリーの内容は、これより前にある）。 */
+		private final long limit;
+
+		/** ローカルヘッダーのオフセットの基準となる位置。 */
+		private final long base;
+
+		/** 展開に使用するInflater（使い回す）。 */
+		private final Inflater inflater;
+
+		/** ローカルヘッダーの読み込み先（使い回す）。 */
+		private final ByteBuffer local = ByteBuffer.allocate(30).order(ByteOrder.LITTLE_ENDIAN);
+
+		/** 圧縮された内容の複製先（使い回す）。 */
+		private byte[] input = new byte[8192];
+
+		/** 展開先（使い回す）。 */
+		private byte[] output = new byte[8192];
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param channel JARファイル
+		 * @param limit 中央ディレクトリーの位置
+		 * @param base ローカルヘッダーのオフセットの基準となる位置
+		 * @param inflater 展開に使用するInflater
+		 */
+		private EntryReader(FileChannel channel, long limit, long base, Inflater inflater) {
+			this.channel = channel;
+			this.limit = limit;
+			this.base = base;
+			this.inflater = inflater;
+		}
+
+		/**
+		 * エントリーのクラスファイルを解析します。
+		 *
+		 * @param directory 中央ディレクトリー
+		 * @param header ヘッダーの位置
+		 * @param className クラスのバイナリー名（例外のメッセージに使用する）
+		 * @return クラスの宣言の情報
+		 * @throws ZipException エントリー、またはクラスファイルが誤っている場合
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private ClassMetadata metadata(ByteBuffer directory, int header, String className) throws IOException {
+			int method = directory.getShort(header + 10) & 0xffff;
+			long compressedSize = directory.getInt(header + 20) & 0xffffffffL;
+			long size = directory.getInt(header + 24) & 0xffffffffL;
+			long localHeader = directory.getInt(header + 42) & 0xffffffffL;
+
+			if (localHeader == 0xffffffffL) {
+				localHeader = zip64LocalHeader(directory, header, size == 0xffffffffL, compressedSize == 0xffffffffL);
+			}
+
+			if (compressedSize > Integer.MAX_VALUE || size > Integer.MAX_VALUE) {
+				throw new ZipException("invalid entry size: " + className);
+			}
+
+			long position = base + localHeader;
+
+			if (position < 0 || position + 30 > limit) {
+				throw new ZipException("invalid LOC header (bad signature): " + className);
+			}
+
+			local.clear();
+			readFully(channel, local, position);
+
+			if (local.getInt(0) != 0x04034b50) {
+				throw new ZipException("invalid LOC header (bad signature): " + className);
+			}
+
+			long data = position + 30 + (local.getShort(26) & 0xffff) + (local.getShort(28) & 0xffff);
+
+			if (data + compressedSize > limit) {
+				throw new ZipException("invalid entry compressed size: " + className);
+			}
+
+			if (input.length < compressedSize + 1) {
+				input = new byte[(int) Math.max(compressedSize + 1, input.length * 2L)];
+			}
+
+			readFully(channel, ByteBuffer.wrap(input, 0, (int) compressedSize), data);
+
+			try {
+				if (method == 0) {
+					return ClassMetadata.parse(ByteBuffer.wrap(input, 0, (int) compressedSize));
+				} else if (method == 8) {
+					return ClassMetadata.parse(ByteBuffer.wrap(output, 0, inflate((int) compressedSize, (int) size, className)));
+				} else {
+					throw new ZipException("unsupported compression method " + method + ": " + className);
+				}
+			} catch (IllegalArgumentException e) {
+				ZipException exception = new ZipException("invalid class file: " + className);
+				exception.initCause(e);
+				throw exception;
+			}
+		}
+
+		/**
+		 * 読み込み済みの圧縮された内容を展開します。
+		 *
+		 * @param compressedSize 圧縮された内容の大きさ
+		 * @param size 展開後の大きさ
+		 * @param className クラスのバイナリー名（例外のメッセージに使用する）
+		 * @return 展開した大きさ
+		 * @throws ZipException 展開に失敗した場合
+		 */
+		private int inflate(int compressedSize, int size, String className) throws ZipException {
+			if (output.length < size) {
+				output = new byte[Math.max(size, output.length * 2)];
+			}
+
+			input[compressedSize] = 0;                                          // nowrapの場合は、ダミーのバイトが必要
+
+			inflater.reset();
+			inflater.setInput(input, 0, compressedSize + 1);
+
+			try {
+				int inflated = 0;
+
+				while (inflated < size && !inflater.finished()) {
+					int count = inflater.inflate(output, inflated, size - inflated);
+
+					if (count == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+						break;
+					}
+
+					inflated += count;
+				}
+
+				if (inflated != size) {
+					throw new ZipException("invalid entry size: " + className);
+				}
+
+				return inflated;
+			} catch (DataFormatException e) {
+				ZipException exception = new ZipException("invalid deflated data: " + className);
+				exception.initCause(e);
+				throw exception;
+			}
+		}
+
+		/**
+		 * ZIP64の拡張フィールドから、ローカルヘッダーのオフセットを取得します。
+		 *
+		 * @param directory 中央ディレクトリー
+		 * @param header ヘッダーの位置
+		 * @param hasSize 拡張フィールドに展開後の大きさを含む場合はtrue
+		 * @param hasCompressedSize 拡張フィールドに圧縮された大きさを含む場合はtrue
+		 * @return ローカルヘッダーのオフセット
+		 * @throws ZipException 拡張フィールドが存在しない場合
+		 */
+		private static long zip64LocalHeader(ByteBuffer directory, int header, boolean hasSize, boolean hasCompressedSize) throws ZipException {
+			int nameLength = directory.getShort(header + 28) & 0xffff;
+			int extraLength = directory.getShort(header + 30) & 0xffff;
+			int extra = header + HEADER_SIZE + nameLength;
+
+			for (int position = extra; position + 4 <= extra + extraLength; ) {
+				int id = directory.getShort(position) & 0xffff;
+				int length = directory.getShort(position + 2) & 0xffff;
+
+				if (id == 0x0001) {
+					int offset = position + 4 + (hasSize ? 8 : 0) + (hasCompressedSize ? 8 : 0);
+					return directory.getLong(offset);
+				}
+
+				position += 4 + length;
+			}
+
+			throw new ZipException("invalid CEN header (missing zip64 extra field)");
+		}
+	}
+
+	/**
+	 * エントリー名が、接頭辞で始まるクラスファイル（パッケージ情報、モジュール宣言、{@code META-INF/}配下を除く）か判定します。
+	 *
+	 * @param directory 中央ディレクトリー
+	 * @param start エントリー名の位置
+	 * @param length エントリー名の長さ
+	 * @param prefix 接頭辞
+	 * @return 該当する場合はtrue
+	 */
+	private static boolean isClass(ByteBuffer directory, int start, int length, byte[] prefix) {
+		if (length < prefix.length + CLASS_SUFFIX.length
+				|| !regionMatches(directory, start + length - CLASS_SUFFIX.length, CLASS_SUFFIX)
+				|| !regionMatches(directory, start, prefix)) {
+
+			return false;
+		}
+
+		if (length == MODULE_INFO.length && regionMatches(directory, start, MODULE_INFO)) {
+			return false;
+		}
+
+		if (length > META_INF.length && regionMatches(directory, start, META_INF)) {
+			return false;                                                       // 接頭辞が空の場合だけ該当する
+		}
+
+		return length < PACKAGE_INFO.length || !regionMatches(directory, start + length - PACKAGE_INFO.length, PACKAGE_INFO);
+	}
+
+	/**
+	 * 指定された位置から、バイト列が一致するか判定します。
+	 *
+	 * @param directory 中央ディレクトリー
+	 * @param start 比較を開始する位置
+	 * @param bytes バイト列
+	 * @return 一致する場合はtrue
+	 */
+	private static boolean regionMatches(ByteBuffer directory, int start, byte[] bytes) {
+		for (int i = 0; i < bytes.length; i++) {
+			if (directory.get(start + i) != bytes[i]) {
+				return false;
+			}
+		}
+
+		return true;
+	}
+
+	private JarDirectory() {}
+}
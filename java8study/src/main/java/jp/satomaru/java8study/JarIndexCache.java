@@ -0,0 +1,349 @@
+package jp.satomaru.java8study;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * JARファイルに含まれるクラスの索引を保持し、パッケージ配下のクラスの検索を高速にします。
+ *
+ * <p>
+ * 索引は、JARファイルのパス、大きさ、最終更新日時の組ごとに作成します。
+ * 初めて検索したJARファイルは中央ディレクトリーを読み込み（{@link JarDirectory}）、パッケージ（およびその全ての上位パッケージ）から、
+ * 配下のクラスを引けるようにします。以後、大きさと最終更新日時が変わらない限り、JARファイルを開かずに、一度の検索で結果を返却します。
+ * </p>
+ *
+ * <p>
+ * 索引ファイルを指定した場合は、作成時に索引ファイルを読み込み、{@link #save()}で書き出します。
+ * 書き出した索引は次回の起動時にも使用できるため、JARファイルを読み込む必要がなくなります。
+ * </p>
+ *
+ * <p>
+ * 保持する索引の数に上限を指定した場合は、上限を超えた時点で、他の索引を破棄します（どの索引を破棄するかは不定です）。
+ * 破棄された索引は、次に検索した時に作成し直します。
+ * このクラスはスレッドセーフです。
+ * </p>
+ */
+public final class JarIndexCache {
+
+	/** 索引ファイルの先頭に書き込む値。 */
+	private static final int MAGIC = 0x4a494458;                                // "JIDX"
+
+	/** 索引ファイルの形式の版（2: META-INF配下とmodule-infoを除外）。 */
+	private static final int VERSION = 2;
+
+	/**
+	 * 一つのJARファイルの索引です。
+	 */
+	static final class Index {
+
+		/** JARファイルの大きさ。 */
+		private final long size;
+
+		/** JARファイルの最終更新日時。 */
+		private final long lastModified;
+
+		/** クラスのバイナリー名（JARファイル内の順）。 */
+		private final List<String> classNames;
+
+		/** パッケージから、配下（サブパッケージを含む）のクラスのバイナリー名への索引。 */
+		private final Map<String, Set<String>> packages;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param size JARファイルの大きさ
+		 * @param lastModified JARファイルの最終更新日時
+		 * @param classNames クラスのバイナリー名
+		 */
+		Index(long size, long lastModified, List<String> classNames) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.classNames = Collections.unmodifiableList(classNames);
+			this.packages = index(classNames);
+		}
+
+		/**
+		 * JARファイルの大きさと最終更新日時が、索引を作成した時点と一致するか判定します。
+		 *
+		 * @param file JARファイル
+		 * @return 一致する場合はtrue
+		 */
+		boolean matches(File file) {
+			return size == file.length() && lastModified == file.lastModified();
+		}
+
+		/**
+		 * パッケージ配下のクラスを取得します。
+		 *
+		 * @param packageName パッケージ名
+		 * @return クラスのバイナリー名の、変更できないセット
+		 */
+		Set<String> search(String packageName) {
+			return packages.getOrDefault(packageName, Collections.emptySet());
+		}
+
+		/**
+		 * 全てのクラスを取得します。
+		 *
+		 * @return クラスのバイナリー名の、変更できないリスト
+		 */
+		List<String> classNames() {
+			return classNames;
+		}
+
+		/**
+		 * クラスを、そのパッケージと全ての上位パッケージに分類します。
+		 *
+		 * @param classNames クラスのバイナリー名
+		 * @return パッケージから、配下のクラスへの索引
+		 */
+		private static Map<String, Set<String>> index(List<String> classNames) {
+			Map<String, Set<String>> packages = new HashMap<>();
+
+			for (String className : classNames) {
+				for (int dot = className.indexOf('.'); dot >= 0; dot = className.indexOf('.', dot + 1)) {
+					packages.computeIfAbsent(className.substring(0, dot), key -> new HashSet<>()).add(className);
+				}
+			}
+
+			packages.replaceAll((key, set) -> Collections.unmodifiableSet(set));
+			return packages;
+		}
+	}
+
+	/** JARファイルの絶対パスから、索引へのマップ。 */
+	private final ConcurrentMap<String, Index> indexes = new ConcurrentHashMap<>();
+
+	/** 索引ファイル（指定されていない場合はnull）。 */
+	private final Path cacheFile;
+
+	/** 保持する索引の数の上限。 */
+	private final int maxEntries;
+
+	/**
+	 * コンストラクタ（索引はメモリー上にのみ、上限なく保持します）。
+	 */
+	public JarIndexCache() {
+		this(Integer.MAX_VALUE);
+	}
+
+	/**
+	 * コンストラクタ（索引はメモリー上にのみ保持します）。
+	 *
+	 * @param maxEntries 保持する索引の数の上限
+	 * @throws IllegalArgumentException 上限が1未満の場合
+	 */
+	public JarIndexCache(int maxEntries) {
+		if (maxEntries < 1) {
+			throw new IllegalArgumentException("maxEntries: " + maxEntries);
+		}
+
+		this.cacheFile = null;
+		this.maxEntries = maxEntries;
+	}
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * <p>
+	 * 索引ファイルが存在する場合は読み込みます。
+	 * 索引ファイルの形式が異なる、または壊れている場合は、読み込まずに空の索引から開始します。
+	 * </p>
+	 *
+	 * @param cacheFile 索引ファイル
+	 * @throws IOException 索引ファイルの読み込みに失敗した場合
+	 */
+	public JarIndexCache(Path cacheFile) throws IOException {
+		this.cacheFile = cacheFile;
+		this.maxEntries = Integer.MAX_VALUE;
+
+		try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(cacheFile)))) {
+			load(in);
+		} catch (NoSuchFileException e) {
+			// 初回の起動
+		}
+	}
+
+	/**
+	 * JARファイルから、指定されたパッケージ配下にある全クラスを検索します。
+	 *
+	 * <p>
+	 * 結果は{@link Utils#searchClassInJar(File, String)}と同じですが、変更できないセットを返却します。
+	 * </p>
+	 *
+	 * @param file JARファイル
+	 * @param packageName パッケージ名
+	 * @return 検索されたクラスの完全修飾名（バイナリー名）の、変更できないセット
+	 * @throws FileNotFoundException JARファイルが存在しない場合
+	 * @throws IOException JARファイルの読み込みに失敗した場合
+	 */
+	public Set<String> search(File file, String packageName) throws IOException {
+		return index(file).search(packageName);
+	}
+
+	/**
+	 * JARファイルの索引を取得します。索引がない、または古い場合は、JARファイルを読み込んで作成します。
+	 *
+	 * @param file JARファイル
+	 * @return 索引
+	 * @throws FileNotFoundException JARファイルが存在しない場合
+	 * @throws IOException JARファイルの読み込みに失敗した場合
+	 */
+	Index index(File file) throws IOException {
+		if (!file.isFile()) {
+			throw new FileNotFoundException(file.getPath());
+		}
+
+		String key = file.getAbsolutePath();
+		Index index = indexes.get(key);
+
+		if (index == null || !index.matches(file)) {
+			long size = file.length();
+			long lastModified = file.lastModified();                           // 読み込み中に更新された場合は、次回に読み直す
+			index = new Index(size, lastModified, scan(file));
+			indexes.put(key, index);
+
+			if (indexes.size() > maxEntries) {
+				evict(key);
+			}
+		}
+
+		return index;
+	}
+
+	/**
+	 * 索引の数が上限以下になるまで、索引を破棄します。
+	 *
+	 * @param added 追加した索引のキー（破棄しない）
+	 */
+	private void evict(String added) {
+		Iterator<String> keys = indexes.keySet().iterator();
+
+		while (indexes.size() > maxEntries && keys.hasNext()) {
+			if (!keys.next().equals(added)) {
+				keys.remove();
+			}
+		}
+	}
+
+	/**
+	 * JARファイルの索引を破棄します（JARファイルが削除された場合）。
+	 *
+	 * @param file JARファイル
+	 */
+	void remove(File file) {
+		indexes.remove(file.getAbsolutePath());
+	}
+
+	/**
+	 * 索引を、索引ファイルに書き出します。
+	 *
+	 * <p>
+	 * 一時ファイルに書き出してから置き換えるため、書き出し中に他のプロセスが読み込んでも、壊れた索引を読むことはありません。
+	 * </p>
+	 *
+	 * @throws IllegalStateException 索引ファイルを指定していない場合
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	public void save() throws IOException {
+		if (cacheFile == null) {
+			throw new IllegalStateException("no cache file");
+		}
+
+		Path directory = cacheFile.toAbsolutePath().getParent();
+		Path temporary = Files.createTempFile(directory, cacheFile.getFileName().toString(), ".tmp");
+
+		try {
+			try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(temporary)))) {
+				Map<String, Index> snapshot = new HashMap<>(indexes);
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeInt(snapshot.size());
+
+				for (Map.Entry<String, Index> entry : snapshot.entrySet()) {
+					Index index = entry.getValue();
+					out.writeUTF(entry.getKey());
+					out.writeLong(index.size);
+					out.writeLong(index.lastModified);
+					out.writeInt(index.classNames.size());
+
+					for (String className : index.classNames) {
+						out.writeUTF(className);
+					}
+				}
+			}
+
+			Files.move(temporary, cacheFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+		} finally {
+			Files.deleteIfExists(temporary);
+		}
+	}
+
+	/**
+	 * 索引ファイルを読み込みます。
+	 *
+	 * @param in 索引ファイル
+	 */
+	private void load(DataInputStream in) {
+		Map<String, Index> loaded = new HashMap<>();
+
+		try {
+			if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+				return;                                                         // 形式が異なる索引は使用しない
+			}
+
+			for (int count = in.readInt(); count > 0; count--) {
+				String key = in.readUTF();
+				long size = in.readLong();
+				long lastModified = in.readLong();
+				int classes = in.readInt();
+
+				if (classes < 0) {
+					return;                                                     // 壊れた索引は使用しない
+				}
+
+				List<String> classNames = new ArrayList<>(Math.min(classes, 1 << 16));
+
+				for (int i = 0; i < classes; i++) {
+					classNames.add(in.readUTF());
+				}
+
+				loaded.put(key, new Index(size, lastModified, classNames));
+			}
+		} catch (IOException | RuntimeException e) {
+			return;                                                             // 壊れた索引は使用しない
+		}
+
+		indexes.putAll(loaded);
+	}
+
+	/**
+	 * JARファイルの中央ディレクトリーを読み込み、クラスのバイナリー名を取得します。
+	 *
+	 * @param file JARファイル
+	 * @return クラスのバイナリー名
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	static List<String> scan(File file) throws IOException {
+		return JarDirectory.classNames(file, "");
+	}
+}
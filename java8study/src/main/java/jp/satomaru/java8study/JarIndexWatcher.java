@@ -0,0 +1,342 @@
+package jp.satomaru.java8study;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.nio.file.ClosedWatchServiceException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardWatchEventKinds;
+import java.nio.file.WatchEvent;
+import java.nio.file.WatchKey;
+import java.nio.file.WatchService;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * ディレクトリー直下のJARファイルを監視し、パッケージからクラスへの索引を最新に保ちます。
+ *
+ * <p>
+ * {@link WatchService}でJARファイルの作成・更新・削除を検知し、変更されたJARファイルだけを読み直します
+ * （変更されていないJARファイルは、{@link JarIndexCache}の索引を再利用します）。
+ * 書き込み中のJARファイルが連続して更新を通知する場合に備えて、通知が一定時間途切れるまで待ってから読み直します。
+ * 読み込みに失敗したJARファイル（書き込みの途中など）は、直前の索引を残し、次の通知で読み直します。
+ * 最後に発生した失敗は{@link #lastFailure()}で取得できるため、索引が更新されない原因を調べられます。
+ * </p>
+ *
+ * <p>
+ * 索引は、変更できないスナップショットとして作成し終えてから、一度に差し替えます。
+ * そのため、{@link #packages()}などの読み取りは待たされることがなく、作成途中の索引を参照することもありません。
+ * このクラスはスレッドセーフです。
+ * </p>
+ */
+public final class JarIndexWatcher implements Closeable {
+
+	/** 通知が途切れたとみなすまでの時間（ミリ秒）。 */
+	private static final long QUIET_PERIOD = 200;
+
+	/**
+	 * ある時点の索引です。
+	 */
+	private static final class Snapshot {
+
+		/** 版（差し替えるたびに増加する）。 */
+		private final long version;
+
+		/** JARファイルから、その索引へのマップ。 */
+		private final Map<Path, JarIndexCache.Index> jars;
+
+		/** パッケージ名から、直下にあるクラスのバイナリー名への変更できないマップ。 */
+		private final Map<String, Set<String>> packages;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param version 版
+		 * @param jars JARファイルから、その索引へのマップ
+		 */
+		private Snapshot(long version, Map<Path, JarIndexCache.Index> jars) {
+			this.version = version;
+			this.jars = jars;
+			this.packages = merge(jars);
+		}
+
+		/**
+		 * JARファイルごとの索引を、パッケージごとにまとめます。
+		 *
+		 * @param jars JARファイルから、その索引へのマップ
+		 * @return パッケージ名から、直下にあるクラスのバイナリー名への変更できないマップ
+		 */
+		private static Map<String, Set<String>> merge(Map<Path, JarIndexCache.Index> jars) {
+			Map<String, Set<String>> packages = new HashMap<>();
+
+			for (JarIndexCache.Index index : jars.values()) {
+				for (String className : index.classNames()) {
+					int dot = className.lastIndexOf('.');
+					String packageName = (dot < 0) ? "" : className.substring(0, dot);  // 無名パッケージは空文字列
+					packages.computeIfAbsent(packageName, key -> new HashSet<>()).add(className);
+				}
+			}
+
+			packages.replaceAll((key, set) -> Collections.unmodifiableSet(set));
+			return Collections.unmodifiableMap(packages);
+		}
+	}
+
+	/**
+	 * ディレクトリーの監視を開始します（索引はメモリー上にのみ保持します）。
+	 *
+	 * @param directory JARファイルを含むディレクトリー
+	 * @return 監視を開始したオブジェクト
+	 * @throws FileNotFoundException ディレクトリーが存在しない場合
+	 * @throws IOException 監視の開始、またはディレクトリーの読み込みに失敗した場合
+	 */
+	public static JarIndexWatcher watch(Path directory) throws IOException {
+		return watch(directory, new JarIndexCache());
+	}
+
+	/**
+	 * ディレクトリーの監視を開始します。
+	 *
+	 * <p>
+	 * 戻る前に、ディレクトリー直下の全てのJARファイルを読み込みます（読み込めなかったJARファイルは、次の通知で読み直します）。
+	 * </p>
+	 *
+	 * @param directory JARファイルを含むディレクトリー
+	 * @param cache JARファイルの索引
+	 * @return 監視を開始したオブジェクト
+	 * @throws FileNotFoundException ディレクトリーが存在しない場合
+	 * @throws IOException 監視の開始、またはディレクトリーの読み込みに失敗した場合
+	 */
+	public static JarIndexWatcher watch(Path directory, JarIndexCache cache) throws IOException {
+		if (!Files.isDirectory(directory)) {
+			throw new FileNotFoundException(directory.toString());
+		}
+
+		WatchService service = directory.getFileSystem().newWatchService();
+
+		try {
+			directory.register(
+					service,
+					StandardWatchEventKinds.ENTRY_CREATE,
+					StandardWatchEventKinds.ENTRY_MODIFY,
+					StandardWatchEventKinds.ENTRY_DELETE);
+
+			JarIndexWatcher watcher = new JarIndexWatcher(directory, cache, service);
+			watcher.rescan();
+			watcher.thread.start();
+			return watcher;
+		} catch (IOException | RuntimeException e) {
+			service.close();
+			throw e;
+		}
+	}
+
+	/** 監視するディレクトリー。 */
+	private final Path directory;
+
+	/** JARファイルの索引。 */
+	private final JarIndexCache cache;
+
+	/** 変更の通知。 */
+	private final WatchService service;
+
+	/** 通知を処理するスレッド。 */
+	private final Thread thread;
+
+	/** 現在の索引（監視スレッドのみが差し替える）。 */
+	private volatile Snapshot snapshot = new Snapshot(0, Collections.emptyMap());
+
+	/** 最後に発生した、読み込みの失敗。 */
+	private volatile Exception lastFailure;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param directory 監視するディレクトリー
+	 * @param cache JARファイルの索引
+	 * @param service 変更の通知
+	 */
+	private JarIndexWatcher(Path directory, JarIndexCache cache, WatchService service) {
+		this.directory = directory;
+		this.cache = cache;
+		this.service = service;
+		this.thread = new Thread(this::run, "JarIndexWatcher");
+		this.thread.setDaemon(true);
+	}
+
+	/**
+	 * 現在の索引を取得します。
+	 *
+	 * <p>
+	 * 返却したマップは変更されません。新しい索引は、次に呼び出したときに返却します。
+	 * </p>
+	 *
+	 * @return パッケージ名から、直下にあるクラスの完全修飾名（バイナリー名）の、変更できないマップ
+	 */
+	public Map<String, Set<String>> packages() {
+		return snapshot.packages;
+	}
+
+	/**
+	 * 現在の索引から、パッケージ直下のクラスを取得します。
+	 *
+	 * @param packageName パッケージ名
+	 * @return クラスの完全修飾名（バイナリー名）の、変更できないセット
+	 */
+	public Set<String> classNames(String packageName) {
+		return snapshot.packages.getOrDefault(packageName, Collections.emptySet());
+	}
+
+	/**
+	 * 現在の索引の版を取得します。索引を差し替えるたびに増加します。
+	 *
+	 * @return 版
+	 */
+	public long version() {
+		return snapshot.version;
+	}
+
+	/**
+	 * 最後に発生した、読み込みの失敗を取得します。
+	 *
+	 * <p>
+	 * JARファイルの読み込みに失敗した場合は、そのJARファイルのパスをメッセージに含む{@link IOException}（原因は、発生した例外）です。
+	 * 後で読み込みに成功しても、クリアしません。
+	 * </p>
+	 *
+	 * @return 最後に発生した失敗（一度も失敗していない場合は空）
+	 */
+	public Optional<Exception> lastFailure() {
+		return Optional.ofNullable(lastFailure);
+	}
+
+	/**
+	 * 監視を終了します。
+	 *
+	 * @throws IOException 監視の終了に失敗した場合
+	 */
+	@Override
+	public void close() throws IOException {
+		service.close();
+
+		try {
+			thread.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * 通知を処理します（監視スレッド）。
+	 */
+	private void run() {
+		try {
+			while (true) {
+				WatchKey key = service.take();
+				Set<Path> changed = new HashSet<>();
+				boolean overflow = false;
+
+				// 通知が途切れるまで、変更されたJARファイルを集める
+				for (; key != null; key = service.poll(QUIET_PERIOD, TimeUnit.MILLISECONDS)) {
+					for (WatchEvent<?> event : key.pollEvents()) {
+						if (event.kind() == StandardWatchEventKinds.OVERFLOW) {
+							overflow = true;
+						} else if (isJar((Path) event.context())) {
+							changed.add(directory.resolve((Path) event.context()));
+						}
+					}
+
+					key.reset();                                                // ディレクトリーが削除された場合は、以後の通知はない
+				}
+
+				try {
+					if (overflow) {
+						rescan();
+					} else if (!changed.isEmpty()) {
+						update(changed, true);
+					}
+				} catch (IOException | RuntimeException e) {
+					lastFailure = e;                                            // 監視は続け、次の通知で読み直す
+				}
+			}
+		} catch (ClosedWatchServiceException e) {
+			// 終了
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * ディレクトリー直下の全てのJARファイルを確認し、索引を差し替えます。
+	 *
+	 * @throws IOException ディレクトリーの読み込みに失敗した場合
+	 */
+	private void rescan() throws IOException {
+		Set<Path> jars = new HashSet<>(snapshot.jars.keySet());                 // 削除されたJARファイルも対象にする
+
+		try (DirectoryStream<Path> stream = Files.newDirectoryStream(directory, "*.jar")) {
+			stream.forEach(jars::add);
+		}
+
+		update(jars, false);
+	}
+
+	/**
+	 * 変更されたJARファイルだけを読み直し、索引を差し替えます。
+	 *
+	 * <p>
+	 * 通知されたJARファイルは、大きさと最終更新日時が変わっていなくても（同じ大きさで、最終更新日時の精度内に書き直された場合など）読み直します。
+	 * 読み込みに失敗した場合は、直前の索引を残し、失敗を{@link #lastFailure()}に記録します（{@link Error}は監視スレッドを終了させます）。
+	 * </p>
+	 *
+	 * @param changed 変更されたJARファイル
+	 * @param notified 変更が通知されたJARファイルの場合はtrue（falseの場合は、大きさと最終更新日時が同じなら読み直さない）
+	 */
+	private void update(Set<Path> changed, boolean notified) {
+		Snapshot current = snapshot;
+		Map<Path, JarIndexCache.Index> jars = new HashMap<>(current.jars);
+
+		for (Path jar : changed) {
+			File file = jar.toFile();
+
+			if (!file.isFile()) {
+				jars.remove(jar);
+				cache.remove(file);
+				continue;
+			}
+
+			if (notified) {
+				cache.remove(file);
+			}
+
+			try {
+				jars.put(jar, cache.index(file));
+			} catch (IOException | RuntimeException e) {
+				// 書き込みの途中（切り詰められたマップなど）と考えられるため、直前の索引を残す
+				lastFailure = new IOException("failed to index: " + jar, e);
+			}
+		}
+
+		if (!jars.equals(current.jars)) {
+			snapshot = new Snapshot(current.version + 1, Collections.unmodifiableMap(jars));
+		}
+	}
+
+	/**
+	 * JARファイルか判定します。
+	 *
+	 * @param path パス
+	 * @return JARファイルの場合はtrue
+	 */
+	private static boolean isJar(Path path) {
+		return path.getFileName().toString().endsWith(".jar");
+	}
+}
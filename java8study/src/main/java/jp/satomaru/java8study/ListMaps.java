@@ -5,7 +5,9 @@ import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 import lombok.RequiredArgsConstructor;
 
@@ -47,6 +49,49 @@ public class ListMaps<K, E> {
 		return new ListMaps<K, E>(mapGenerator, listGenerator);
 	}
 
+	/**
+	 * オブジェクトをキーごとのリストに分類する{@link Collector}を作成します。
+	 *
+	 * <p>
+	 * {@link java.util.stream.Collectors#groupingBy(Function)}と同じ結果になります。
+	 * 詳細は{@link #collector(Function, int, int)}を参照してください。
+	 * </p>
+	 *
+	 * @param classifier オブジェクトからキーを取得する関数
+	 * @return Collector
+	 */
+	public static <K, E> Collector<E, ?, Map<K, List<E>>> collector(Function<? super E, ? extends K> classifier) {
+		return collector(classifier, 16, 10);
+	}
+
+	/**
+	 * オブジェクトをキーごとのリストに分類する{@link Collector}を作成します。
+	 *
+	 * <p>
+	 * 並列ストリームでは、スレッドごとに別々のListMapsに分類した後、それらを結合します。
+	 * マップおよびリストは、指定された見込みの大きさで作成します。
+	 * 結合は、キーの少ない方のマップを多い方のマップへ移し替えることで行い、
+	 * 一方にしか存在しないキーのリストは、複製せずにそのまま移します。
+	 * 各リストの値の順番は、ストリームの順番と一致します。
+	 * </p>
+	 *
+	 * @param classifier オブジェクトからキーを取得する関数
+	 * @param expectedKeys キーの数の見込み
+	 * @param expectedValuesPerKey 一つのキーの値の数の見込み
+	 * @return Collector
+	 */
+	public static <K, E> Collector<E, ?, Map<K, List<E>>> collector(
+			Function<? super E, ? extends K> classifier, int expectedKeys, int expectedValuesPerKey) {
+
+		int capacity = (int) Math.min(1 << 30, (long) (expectedKeys / 0.75f) + 1);
+
+		return Collector.<E, ListMaps<K, E>, Map<K, List<E>>>of(
+				() -> new ListMaps<K, E>(() -> new HashMap<>(capacity), () -> new ArrayList<>(expectedValuesPerKey)),
+				(listMaps, entity) -> listMaps.append(classifier.apply(entity), entity),
+				ListMaps::merge,
+				ListMaps::end);
+	}
+
 	/** リストの作成を補助します。 */
 	@RequiredArgsConstructor
 	public class Lists {
@@ -118,15 +163,71 @@ public class ListMaps<K, E> {
 		}
 	}
 
+	/**
+	 * リストに値を一つ追加します。
+	 *
+	 * <p>
+	 * {@link #begin(Object)}と異なり、マップの検索は一度だけで、Listsオブジェクトや配列も作成しません。
+	 * </p>
+	 *
+	 * @param key マップのキー
+	 * @param value 値
+	 */
+	private void append(K key, E value) {
+		instance.computeIfAbsent(key, k -> listGenerator.get()).add(value);
+	}
+
+	/**
+	 * 他のListMapsの内容を結合します。
+	 *
+	 * <p>
+	 * キーの少ない方のマップを多い方のマップへ移し替え、多い方を返却します。
+	 * 両方に存在するキーは、このListMapsのリストの後に他方のリストの値を追加します。
+	 * </p>
+	 *
+	 * @param other 後ろに結合するListMaps
+	 * @return 結合したListMaps（このListMapsまたは他方のListMaps）
+	 */
+	private ListMaps<K, E> merge(ListMaps<K, E> other) {
+		if (instance.size() >= other.instance.size()) {
+			other.instance.forEach((key, list) -> instance.merge(key, list, (former, latter) -> {
+				former.addAll(latter);
+				return former;
+			}));
+
+			return this;
+		}
+
+		instance.forEach((key, list) -> other.instance.merge(key, list, (latter, former) -> {
+			former.addAll(latter);                                                // 順番を保つため、前方のリストに追加する
+			return former;
+		}));
+
+		return other;
+	}
+
 	/**
 	 * マップの作成を終了します。
 	 *
+	 * <p>
+	 * 不変オブジェクトとして受け取る場合は、作成したマップの内容を配列に詰め直した、
+	 * 変更できないマップを返却します（詳細は{@link FrozenMaps}を参照してください）。
+	 * 返却したマップは、その後の作成したマップの変更の影響を受けません。
+	 * ただし、{@link HashMap}および{@link java.util.LinkedHashMap}以外のマップ（比較器を使う{@link java.util.TreeMap}など）は、
+	 * 検索の結果や反復の順番を変えないよう、詰め直さずに変更できないマップで包んで返却します。
+	 * </p>
+	 *
 	 * @param immutable マップを不変オブジェクトとして受け取る場合はtrue
 	 * @return 作成したマップ
 	 */
 	public Map<K, List<E>> end(boolean immutable) {
 
 		if(immutable) {
+			if (FrozenMaps.isHashed(instance)) {
+				// キーと値を配列に詰め直した、変更できないマップに変換
+				return FrozenMaps.freezeListMap(instance);
+			}
+
 			// List<E>をイミュータブルに変更
 			instance.replaceAll((key, list) -> Collections.unmodifiableList(list));
 
@@ -0,0 +1,22 @@
+package jp.satomaru.java8study;
+
+/**
+ * long型の値とオブジェクトを受け取る処理です。
+ *
+ * <p>
+ * {@link java.util.function.BiConsumer}と異なり、long型の値をボクシングせずに受け取ります。
+ * </p>
+ *
+ * @param <T> オブジェクトの型
+ */
+@FunctionalInterface
+public interface LongObjConsumer<T> {
+
+	/**
+	 * 処理を実行します。
+	 *
+	 * @param value long型の値
+	 * @param object オブジェクト
+	 */
+	void accept(long value, T object);
+}
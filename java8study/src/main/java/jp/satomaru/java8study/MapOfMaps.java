@@ -1,9 +1,16 @@
 package jp.satomaru.java8study;
 
+import java.util.AbstractMap;
+import java.util.AbstractSet;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
 import java.util.function.Supplier;
+import java.util.stream.Collector;
 
 import lombok.RequiredArgsConstructor;
 
@@ -40,6 +47,79 @@ public class MapOfMaps<K, S, V> {
 		return new MapOfMaps<K, S, V>(keyMapGenerator, valueMapGenerator);
 	}
 
+	/**
+	 * 子マップを作成しない形式で、親マップの作成を開始します。
+	 *
+	 * <p>
+	 * 全ての（親マップのキー、子マップのキー）→値の組を、一つのハッシュ表に格納します。
+	 * 親マップのキーが多く、一つの親マップのキーに対する子マップのキーが少ない場合に、使用するメモリーが大幅に少なくなります。
+	 * {@link #end()}が返却する親マップは、検索と反復のみを行えます。
+	 * その子マップは、値の追加と更新は行えますが、削除は行えません（詳細は{@link FlatMapOfMaps}を参照してください）。
+	 * </p>
+	 *
+	 * @return MapOfMapsオブジェクト
+	 */
+	public static <K, S, V> MapOfMaps<K, S, V> beginFlat() {
+		FlatMapOfMaps<K, S, V> flat = new FlatMapOfMaps<>();
+		return new MapOfMaps<K, S, V>(flat, flat::row);
+	}
+
+	/**
+	 * オブジェクトを二段階のキーで分類する{@link Collector}を作成します。
+	 *
+	 * <p>
+	 * 子マップのキーが重複した場合は、{@link Maps#add(Object, Object)}と同様に、ストリームの後方の値で上書きします。
+	 * 詳細は{@link #collector(Function, Function, Function, int, int)}を参照してください。
+	 * </p>
+	 *
+	 * @param classifier オブジェクトから親マップのキーを取得する関数
+	 * @param subClassifier オブジェクトから子マップのキーを取得する関数
+	 * @param valueMapper オブジェクトから子マップの値を取得する関数
+	 * @return Collector
+	 */
+	public static <E, K, S, V> Collector<E, ?, Map<K, Map<S, V>>> collector(
+			Function<? super E, ? extends K> classifier,
+			Function<? super E, ? extends S> subClassifier,
+			Function<? super E, ? extends V> valueMapper) {
+
+		return collector(classifier, subClassifier, valueMapper, 16, 16);
+	}
+
+	/**
+	 * オブジェクトを二段階のキーで分類する{@link Collector}を作成します。
+	 *
+	 * <p>
+	 * 並列ストリームでは、スレッドごとに別々のMapOfMapsに分類した後、それらを結合します。
+	 * 親・子マップは、指定された見込みの大きさで作成します。
+	 * 結合は、キーの少ない方の親マップを多い方の親マップへ移し替えることで行い、
+	 * 一方にしか存在しないキーの子マップは、複製せずにそのまま移します。
+	 * 子マップのキーが重複した場合は、ストリームの後方の値で上書きします。
+	 * </p>
+	 *
+	 * @param classifier オブジェクトから親マップのキーを取得する関数
+	 * @param subClassifier オブジェクトから子マップのキーを取得する関数
+	 * @param valueMapper オブジェクトから子マップの値を取得する関数
+	 * @param expectedKeys 親マップのキーの数の見込み
+	 * @param expectedSubKeys 一つの子マップのキーの数の見込み
+	 * @return Collector
+	 */
+	public static <E, K, S, V> Collector<E, ?, Map<K, Map<S, V>>> collector(
+			Function<? super E, ? extends K> classifier,
+			Function<? super E, ? extends S> subClassifier,
+			Function<? super E, ? extends V> valueMapper,
+			int expectedKeys,
+			int expectedSubKeys) {
+
+		int keyCapacity = (int) Math.min(1 << 30, (long) (expectedKeys / 0.75f) + 1);
+		int subKeyCapacity = (int) Math.min(1 << 30, (long) (expectedSubKeys / 0.75f) + 1);
+
+		return Collector.<E, MapOfMaps<K, S, V>, Map<K, Map<S, V>>>of(
+				() -> new MapOfMaps<K, S, V>(() -> new HashMap<>(keyCapacity), () -> new HashMap<>(subKeyCapacity)),
+				(mapOfMaps, entity) -> mapOfMaps.put(classifier.apply(entity), subClassifier.apply(entity), valueMapper.apply(entity)),
+				MapOfMaps::merge,
+				MapOfMaps::end);
+	}
+
 	/** 子マップの作成を補助します。 */
 	@RequiredArgsConstructor
 	public class Maps {
@@ -47,6 +127,9 @@ public class MapOfMaps<K, S, V> {
 		/** 現在、作成の補助をしている子マップ。 */
 		private final Map<S, V> current;
 
+		/** 現在、作成の補助をしている子マップに割り当てた、親マップのキー。 */
+		private final K parentKey;
+
 		/**
 		 * 子マップに値を追加します。
 		 *
@@ -59,6 +142,9 @@ public class MapOfMaps<K, S, V> {
 			// 要素を追加
 			current.put(key, value);
 
+			// 逆引きの索引を更新
+			addToIndex(key, parentKey);
+
 			// 自身を返却
 			return this;
 		}
@@ -78,8 +164,11 @@ public class MapOfMaps<K, S, V> {
 	/** 作成する親マップ。 */
 	private final Map<K, Map<S, V>> instance;
 
-	/** 子マップを生成する関数。 */
-	private final Supplier<Map<S, V>> valueMapGenerator;
+	/** 親マップのキーに対応する子マップを取得する関数（存在しない場合は作成して親マップに追加する）。 */
+	private final Function<K, Map<S, V>> opener;
+
+	/** 子マップのキーから、それを持つ親マップのキーを引く索引（{@link #withReverseIndex()}で有効にしていない場合はnull）。 */
+	private Map<S, Set<K>> reverseIndex;
 
 	/**
 	 * コンストラクタ。
@@ -91,8 +180,19 @@ public class MapOfMaps<K, S, V> {
 
 		// 親マップのインスタンスを生成
 		instance = keyMapGenerator.get();
-		// 子マップのジェネレーターを保持
-		this.valueMapGenerator = valueMapGenerator;
+		// 子マップは、存在しない場合のみ生成して親マップに追加
+		opener = key -> instance.computeIfAbsent(key, k -> valueMapGenerator.get());
+	}
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param instance 親マップ
+	 * @param opener 親マップのキーに対応する子マップを取得する関数
+	 */
+	private MapOfMaps(Map<K, Map<S, V>> instance, Function<K, Map<S, V>> opener) {
+		this.instance = instance;
+		this.opener = opener;
 	}
 
 	/**
@@ -103,20 +203,249 @@ public class MapOfMaps<K, S, V> {
 	 */
 	public Maps begin(K key) {
 
-		if (instance.containsKey(key)) {
-			// 存在する場合、親マップから子マップを取得してMapsに変換して返却
-			return new Maps(instance.get(key));
-		} else {
-			// 存在しない場合、新たにMapsを作成して親マップにputし、Mapsを返却
-			MapOfMaps<K, S, V>.Maps maps = new Maps(valueMapGenerator.get());
-			instance.put(key, maps.current);
-			return maps;
+		// 子マップを取得（存在しない場合は作成して親マップに追加）し、Mapsに変換して返却
+		return new Maps(opener.apply(key), key);
+	}
+
+	/**
+	 * 子マップのキーから、それを持つ親マップのキーを引く索引を有効にします。
+	 *
+	 * <p>
+	 * 索引は、この時点での内容から作成し、以後は{@link Maps#add(Object, Object)}のたびに更新します。
+	 * {@link #end()}が返却した親マップを直接変更した場合は、索引に反映されません。
+	 * </p>
+	 *
+	 * @return このMapOfMapsオブジェクト自身
+	 */
+	public MapOfMaps<K, S, V> withReverseIndex() {
+		if (reverseIndex == null) {
+			reverseIndex = new HashMap<>();
+			instance.forEach((key, map) -> map.keySet().forEach(subKey -> addToIndex(subKey, key)));
 		}
+
+		return this;
+	}
+
+	/**
+	 * 子マップのキーを持つ、親マップのキーを取得します。
+	 *
+	 * <p>
+	 * 索引を参照するだけなので、結果の大きさに比例した時間で処理します。
+	 * </p>
+	 *
+	 * @param subKey 子マップのキー
+	 * @return 親マップのキーの、変更できないセット（追加した順）
+	 * @throws IllegalStateException {@link #withReverseIndex()}で索引を有効にしていない場合
+	 */
+	public Set<K> keysHaving(S subKey) {
+		Set<K> keys = requireIndex().get(subKey);
+		return (keys != null) ? Collections.unmodifiableSet(keys) : Collections.emptySet();
+	}
+
+	/**
+	 * 親マップと子マップのキーを入れ替えたビューを取得します。
+	 *
+	 * <p>
+	 * ビューは索引と作成中の親マップを参照するだけで、作成し直すことはありません。
+	 * 子マップのキーによる検索は、結果の大きさに比例した時間で処理します。
+	 * 以後の追加はビューに反映されます。ビューは変更できません。
+	 * </p>
+	 *
+	 * @return 子マップのキーから、親マップのキーと値のマップを引くビュー
+	 * @throws IllegalStateException {@link #withReverseIndex()}で索引を有効にしていない場合
+	 */
+	public Map<S, Map<K, V>> transpose() {
+		Map<S, Set<K>> index = requireIndex();
+
+		return new AbstractMap<S, Map<K, V>>() {
+
+			@Override
+			public Map<K, V> get(Object subKey) {
+				Set<K> keys = index.get(subKey);
+				return (keys != null) ? column(subKey, keys) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object subKey) {
+				return index.containsKey(subKey);
+			}
+
+			@Override
+			public int size() {
+				return index.size();
+			}
+
+			@Override
+			public Set<Map.Entry<S, Map<K, V>>> entrySet() {
+				return new AbstractSet<Map.Entry<S, Map<K, V>>>() {
+
+					@Override
+					public Iterator<Map.Entry<S, Map<K, V>>> iterator() {
+						Iterator<Map.Entry<S, Set<K>>> entries = index.entrySet().iterator();
+
+						return new Iterator<Map.Entry<S, Map<K, V>>>() {
+
+							@Override
+							public boolean hasNext() {
+								return entries.hasNext();
+							}
+
+							@Override
+							public Map.Entry<S, Map<K, V>> next() {
+								Map.Entry<S, Set<K>> entry = entries.next();
+								return new SimpleImmutableEntry<>(entry.getKey(), column(entry.getKey(), entry.getValue()));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return index.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * 子マップのキーを持つ、親マップのキーと値のビューを作成します。
+	 *
+	 * @param subKey 子マップのキー
+	 * @param keys 子マップのキーを持つ、親マップのキー
+	 * @return 親マップのキーと値のビュー
+	 */
+	private Map<K, V> column(Object subKey, Set<K> keys) {
+		return new AbstractMap<K, V>() {
+
+			@Override
+			public V get(Object key) {
+				return keys.contains(key) ? instance.get(key).get(subKey) : null;
+			}
+
+			@Override
+			public boolean containsKey(Object key) {
+				return keys.contains(key);
+			}
+
+			@Override
+			public int size() {
+				return keys.size();
+			}
+
+			@Override
+			public Set<Map.Entry<K, V>> entrySet() {
+				return new AbstractSet<Map.Entry<K, V>>() {
+
+					@Override
+					public Iterator<Map.Entry<K, V>> iterator() {
+						Iterator<K> iterator = keys.iterator();
+
+						return new Iterator<Map.Entry<K, V>>() {
+
+							@Override
+							public boolean hasNext() {
+								return iterator.hasNext();
+							}
+
+							@Override
+							public Map.Entry<K, V> next() {
+								K key = iterator.next();
+								return new SimpleImmutableEntry<>(key, instance.get(key).get(subKey));
+							}
+						};
+					}
+
+					@Override
+					public int size() {
+						return keys.size();
+					}
+				};
+			}
+		};
+	}
+
+	/**
+	 * 索引が有効な場合、子マップのキーと親マップのキーを索引に追加します。
+	 *
+	 * @param subKey 子マップのキー
+	 * @param key 親マップのキー
+	 */
+	private void addToIndex(S subKey, K key) {
+		if (reverseIndex != null) {
+			reverseIndex.computeIfAbsent(subKey, s -> new LinkedHashSet<>()).add(key);
+		}
+	}
+
+	/**
+	 * 索引を取得します。
+	 *
+	 * @return 索引
+	 * @throws IllegalStateException 索引を有効にしていない場合
+	 */
+	private Map<S, Set<K>> requireIndex() {
+		if (reverseIndex == null) {
+			throw new IllegalStateException("reverse index is not enabled");
+		}
+
+		return reverseIndex;
+	}
+
+	/**
+	 * 子マップに値を一つ追加します。
+	 *
+	 * <p>
+	 * {@link #begin(Object)}と異なり、親マップの検索は一度だけで、Mapsオブジェクトも作成しません。
+	 * </p>
+	 *
+	 * @param key 親マップのキー
+	 * @param subKey 子マップのキー
+	 * @param value 値
+	 */
+	private void put(K key, S subKey, V value) {
+		opener.apply(key).put(subKey, value);
+		addToIndex(subKey, key);
+	}
+
+	/**
+	 * 他のMapOfMapsの内容を結合します。
+	 *
+	 * <p>
+	 * キーの少ない方の親マップを多い方の親マップへ移し替え、多い方を返却します。
+	 * 両方に存在する子マップのキーは、他方の値で上書きします。
+	 * </p>
+	 *
+	 * @param other 後ろに結合するMapOfMaps
+	 * @return 結合したMapOfMaps（このMapOfMapsまたは他方のMapOfMaps）
+	 */
+	private MapOfMaps<K, S, V> merge(MapOfMaps<K, S, V> other) {
+		if (instance.size() >= other.instance.size()) {
+			other.instance.forEach((key, map) -> instance.merge(key, map, (former, latter) -> {
+				former.putAll(latter);
+				return former;
+			}));
+
+			return this;
+		}
+
+		instance.forEach((key, map) -> other.instance.merge(key, map, (latter, former) -> {
+			former.putAll(latter);                                                // 後方の値で上書きするため、前方の子マップに追加する
+			return former;
+		}));
+
+		return other;
 	}
 
 	/**
 	 * 親マップの作成を終了します。
 	 *
+	 * <p>
+	 * 不変オブジェクトとして受け取る場合は、作成した親マップの内容を配列に詰め直した、
+	 * 変更できないマップを返却します（詳細は{@link FrozenMaps}を参照してください）。
+	 * 返却したマップは、その後の作成した親マップの変更の影響を受けません。
+	 * ただし、親・子マップのいずれかが{@link HashMap}および{@link java.util.LinkedHashMap}以外のマップ（比較器を使う{@link java.util.TreeMap}など）の場合は、
+	 * 検索の結果や反復の順番を変えないよう、詰め直さずに変更できないマップで包んで返却します。
+	 * </p>
+	 *
 	 * @param immutable 親マップを不変オブジェクトとして受け取る場合はtrue
 	 * @return 作成した親マップ
 	 */
@@ -124,6 +453,11 @@ public class MapOfMaps<K, S, V> {
 
 		if(immutable) {
 
+			if (FrozenMaps.isHashedMapOfMaps(instance)) {
+				// キーと値を配列に詰め直した、変更できないマップに変換
+				return FrozenMaps.freezeMapOfMaps(instance);
+			}
+
 			// Map<S, V>をイミュータブルに変更
 			instance.replaceAll((key, map) -> Collections.unmodifiableMap(map));
 
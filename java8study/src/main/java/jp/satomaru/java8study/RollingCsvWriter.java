@@ -0,0 +1,401 @@
+package jp.satomaru.java8study;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.stream.Stream;
+import java.util.zip.GZIPOutputStream;
+
+import lombok.RequiredArgsConstructor;
+import lombok.Setter;
+import lombok.Value;
+
+/**
+ * {@link CsvBuilder}が作成するCSVを、gzipで圧縮しながら、一定のサイズごとに複数のファイルへ書き出します。
+ *
+ * <p>
+ * CSVの作成は呼び出し元のスレッドで、UTF-8への変換と圧縮は専用のスレッドで行います。
+ * 両者は{@link #queueCapacity}個のチャンクを保持するキューでつながっており、作成と圧縮が並行して進みます。
+ * 圧縮が追いつかない場合は、キューに空きができるまで作成を待ちます。
+ * </p>
+ *
+ * <p>
+ * 各ファイルの内容は、そのファイルに含まれる行だけを{@link CsvBuilder#build(java.util.Collection)}した結果と一致します。
+ * {@link CsvBuilder#header(String...)}で見出し行を宣言している場合は、全てのファイルの先頭に見出し行を追加します。
+ * </p>
+ *
+ * @param <E> CSVを作成する元となるオブジェクト
+ */
+@RequiredArgsConstructor
+@Setter
+public class RollingCsvWriter<E> {
+
+	/**
+	 * 書き出したファイルです。
+	 */
+	@Value
+	public static class Part {
+
+		/** ファイル。 */
+		private final Path file;
+
+		/** 行数（見出し行を除く）。 */
+		private final long rows;
+
+		/** ファイルのバイト数（圧縮後）。 */
+		private final long bytes;
+	}
+
+	/**
+	 * 作成したCSVのチャンクです。
+	 */
+	private static final class Chunk {
+
+		/** 全てのチャンクを作成したことを表すチャンク。 */
+		private static final Chunk END = new Chunk(null, 0);
+
+		/** CSVの一部（完結した行のみを含み、最後の行の後に行の区切り記号は含まない）。 */
+		private final StringBuilder text;
+
+		/** 行数。 */
+		private final int rows;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param text CSVの一部
+		 * @param rows 行数
+		 */
+		private Chunk(StringBuilder text, int rows) {
+			this.text = text;
+			this.rows = rows;
+		}
+	}
+
+	/**
+	 * 書き出したバイト数を数える出力ストリームです。
+	 */
+	private static final class CountingOutputStream extends FilterOutputStream {
+
+		/** 書き出したバイト数。 */
+		private long count;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param out 出力先
+		 */
+		private CountingOutputStream(OutputStream out) {
+			super(out);
+		}
+
+		@Override
+		public void write(int b) throws IOException {
+			out.write(b);
+			count++;
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) throws IOException {
+			out.write(b, off, len);                                             // FilterOutputStreamは1バイトずつ書き出すため
+			count += len;
+		}
+	}
+
+	/** CSVを作成するCsvBuilder。 */
+	private final CsvBuilder<E> builder;
+
+	/** ファイルを作成するディレクトリー。 */
+	private final Path directory;
+
+	/** ファイル名の接頭辞（ファイル名は「接頭辞-連番.csv.gz」になる）。 */
+	private final String prefix;
+
+	/** 一つのファイルのバイト数（圧縮後）の上限の目安。 */
+	private long maxFileSize = 64L * 1024 * 1024;
+
+	/** 作成から圧縮へ渡すキューが保持するチャンクの数。 */
+	private int queueCapacity = 16;
+
+	/** 一つのチャンクの文字数の目安。 */
+	private int chunkLength = 64 * 1024;
+
+	/** 圧縮するスレッドから、作成するスレッドへ返却されたバッファー。 */
+	private final Queue<StringBuilder> recycled = new ConcurrentLinkedQueue<>();
+
+	/**
+	 * CSVを書き出します。
+	 *
+	 * <p>
+	 * ファイルのバイト数は、チャンクを圧縮するごとに確認し、{@link #maxFileSize}に達した時点で次のファイルに切り替えます。
+	 * 圧縮中のデータがあるため、ファイルは上限を一つのチャンクの圧縮後のバイト数程度、超えることがあります。
+	 * 行が一つもない場合でも、一つのファイルを作成します。
+	 * 書き出しに失敗した場合は、その時点で残りのオブジェクトの読み込みをやめ、例外をスローします。
+	 * </p>
+	 *
+	 * @param entities CSVを作成する元となるオブジェクト
+	 * @return 書き出したファイルのリスト（書き出した順）
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	public List<Part> write(Iterable<E> entities) throws IOException {
+		return write(entities.iterator());
+	}
+
+	/**
+	 * CSVを書き出します。
+	 *
+	 * <p>
+	 * ストリームは先頭から順番に一度だけ消費されます。
+	 * 詳細は{@link #write(Iterable)}を参照してください。
+	 * </p>
+	 *
+	 * @param entities CSVを作成する元となるオブジェクトのストリーム
+	 * @return 書き出したファイルのリスト（書き出した順）
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	public List<Part> write(Stream<E> entities) throws IOException {
+		return write(entities.iterator());
+	}
+
+	/**
+	 * CSVを書き出します。
+	 *
+	 * @param entities CSVを作成する元となるオブジェクトのイテレーター
+	 * @return 書き出したファイルのリスト（書き出した順）
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	private List<Part> write(Iterator<E> entities) throws IOException {
+		BlockingQueue<Chunk> queue = new ArrayBlockingQueue<>(queueCapacity);
+		Compressor compressor = new Compressor(queue);
+		Thread thread = new Thread(compressor, "RollingCsvWriter-" + prefix);
+		thread.start();
+
+		try {
+			StringBuilder buffer = borrow();
+			int rows = 0;
+
+			while (entities.hasNext()) {
+				if (rows > 0) {
+					buffer.append(builder.getLineSeparator());
+				}
+
+				builder.appendRecord(buffer, entities.next());
+				rows++;
+
+				if (buffer.length() >= chunkLength) {
+					if (compressor.failure != null) {
+						break;                                                  // 書き出しに失敗した場合は、残りを作成しない
+					}
+
+					put(queue, new Chunk(buffer, rows));
+					buffer = borrow();
+					rows = 0;
+				}
+			}
+
+			if (rows > 0 && compressor.failure == null) {
+				put(queue, new Chunk(buffer, rows));
+			}
+		} finally {
+			try {
+				put(queue, Chunk.END);                                          // 作成に失敗した場合も、圧縮するスレッドを終了させる
+				thread.join();
+			} catch (InterruptedException e) {
+				thread.interrupt();
+				Thread.currentThread().interrupt();
+				throw new InterruptedIOException("interrupted while writing csv");
+			}
+		}
+
+		return compressor.getResult();
+	}
+
+	/**
+	 * 返却されたバッファーを再利用するか、新しいバッファーを作成します。
+	 *
+	 * @return 空のバッファー
+	 */
+	private StringBuilder borrow() {
+		StringBuilder buffer = recycled.poll();
+		return (buffer != null) ? buffer : new StringBuilder(chunkLength + 1024);
+	}
+
+	/**
+	 * チャンクをキューに追加します。
+	 *
+	 * @param queue キュー
+	 * @param chunk チャンク
+	 * @throws InterruptedIOException 待機中に割り込まれた場合
+	 */
+	private static void put(BlockingQueue<Chunk> queue, Chunk chunk) throws InterruptedIOException {
+		try {
+			queue.put(chunk);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new InterruptedIOException("interrupted while writing csv");
+		}
+	}
+
+	/**
+	 * キューからチャンクを受け取り、UTF-8に変換して圧縮しながらファイルに書き出します。
+	 */
+	@RequiredArgsConstructor
+	private final class Compressor implements Runnable {
+
+		/** チャンクを受け取るキュー。 */
+		private final BlockingQueue<Chunk> queue;
+
+		/** 書き出したファイル。 */
+		private final List<Part> parts = new ArrayList<>();
+
+		/** 文字配列を経由して書き出すためのバッファー。 */
+		private final char[] chars = new char[8192];
+
+		/** 書き出し中のファイル。 */
+		private Path file;
+
+		/** 書き出し中のファイルのバイト数を数える出力ストリーム。 */
+		private CountingOutputStream counter;
+
+		/** 書き出し中のファイルへのライター。 */
+		private Writer writer;
+
+		/** 書き出し中のファイルの行数。 */
+		private long rows;
+
+		/** 書き出し中のファイルに、見出し行または行を書き出した場合はtrue。 */
+		private boolean started;
+
+		/** 書き出しに失敗した場合の例外。 */
+		private volatile Throwable failure;
+
+		@Override
+		public void run() {
+			try {
+				for (Chunk chunk = queue.take(); chunk != Chunk.END; chunk = queue.take()) {
+					if (failure == null) {
+						try {
+							write(chunk);
+						} catch (IOException | RuntimeException | Error e) {
+							failure = e;                                        // 作成するスレッドが待機しないよう、残りは読み捨てる
+						}
+					}
+				}
+
+				if (failure == null && (writer != null || parts.isEmpty())) {
+					if (writer == null) {
+						open();
+					}
+
+					close();
+				}
+			} catch (IOException | RuntimeException | Error e) {
+				failure = e;
+			} catch (InterruptedException e) {
+				failure = new InterruptedIOException("interrupted while compressing csv");
+			} finally {
+				if (writer != null) {
+					try {
+						writer.close();                                         // 失敗した場合もファイルを閉じる
+					} catch (IOException e) {
+						if (failure == null) {
+							failure = e;
+						}
+					}
+				}
+			}
+		}
+
+		/**
+		 * 書き出したファイルのリストを取得します。
+		 *
+		 * @return 書き出したファイルのリスト
+		 * @throws IOException 書き出しに失敗していた場合
+		 */
+		private List<Part> getResult() throws IOException {
+			if (failure instanceof IOException) {
+				throw (IOException) failure;
+			} else if (failure instanceof RuntimeException) {
+				throw (RuntimeException) failure;
+			} else if (failure instanceof Error) {
+				throw (Error) failure;
+			}
+
+			return Collections.unmodifiableList(parts);
+		}
+
+		/**
+		 * チャンクを書き出し、上限に達した場合はファイルを切り替えます。
+		 *
+		 * @param chunk チャンク
+		 * @throws IOException 書き出しに失敗した場合
+		 */
+		private void write(Chunk chunk) throws IOException {
+			if (writer == null) {
+				open();
+			}
+
+			StringBuilder text = chunk.text;
+
+			if (started) {
+				writer.write(builder.getLineSeparator());
+			}
+
+			CsvBuilder.copyTo(writer, text, chars);
+
+			rows += chunk.rows;
+			started = true;
+
+			text.setLength(0);
+			recycled.offer(text);                                               // バッファーを作成するスレッドへ返却
+
+			writer.flush();                                                     // 変換済みのバイトを圧縮へ渡す
+
+			if (counter.count >= maxFileSize) {
+				close();
+			}
+		}
+
+		/**
+		 * 次のファイルを作成し、見出し行を書き出します。
+		 *
+		 * @throws IOException 作成に失敗した場合
+		 */
+		private void open() throws IOException {
+			file = directory.resolve(String.format("%s-%04d.csv.gz", prefix, parts.size() + 1));
+			counter = new CountingOutputStream(Files.newOutputStream(file));
+			writer = new OutputStreamWriter(new GZIPOutputStream(counter, 64 * 1024), StandardCharsets.UTF_8);
+			rows = 0;
+
+			StringBuilder header = new StringBuilder();
+			started = builder.appendHeader(header);
+			writer.append(header);
+		}
+
+		/**
+		 * 書き出し中のファイルを閉じます。
+		 *
+		 * @throws IOException 書き出しに失敗した場合
+		 */
+		private void close() throws IOException {
+			Writer closing = writer;
+			writer = null;
+			closing.close();                                                    // gzipのトレーラーまで書き出す
+			parts.add(new Part(file, rows, counter.count));
+		}
+	}
+}
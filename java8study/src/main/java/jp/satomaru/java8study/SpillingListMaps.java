@@ -0,0 +1,638 @@
+package jp.satomaru.java8study;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInput;
+import java.io.DataInputStream;
+import java.io.DataOutput;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import lombok.RequiredArgsConstructor;
+
+/**
+ * リストを値として持つマップの作成を、ヒープに収まらない量の値に対しても行えるように補助します。
+ *
+ * <p>
+ * 使い方は{@link ListMaps}と同じですが、値は追加した時点で{@link Codec}によりバイト列に変換し、キーごとのバッファーに保持します。
+ * バッファーの合計とキーごとの管理情報が、指定されたメモリーの上限を超えると、全てのバッファーを一つのセグメントファイルへ追記します（以下、退避）。
+ * 退避の書き出しは専用のスレッドで行うため、値の追加は止まりません。
+ * ただし、前回の退避の書き出しが終わる前に、再び上限を超えた場合は、書き出しが終わるまで待ちます。
+ * </p>
+ *
+ * <p>
+ * 退避した範囲（キーごとの、セグメントファイル内の位置）は、キーの番号順の表としてセグメントファイルの末尾に書き出すため、
+ * 退避を繰り返しても、メモリー上に保持する管理情報はキーごとに一定です（この管理情報も、メモリーの上限に含めます）。
+ * {@link #end()}が返却するマップのリストは、参照された時点で、メモリーマップしたセグメントファイルの表から範囲を探して値を読み戻し、
+ * 読み戻した値は{@link SoftReference}で保持します（メモリーが不足すると破棄し、次に参照された時点で読み直します）。
+ * このクラスはスレッドセーフではありません。
+ * </p>
+ *
+ * @param <K> マップのキー
+ * @param <E> リストの値
+ */
+public class SpillingListMaps<K, E> implements Closeable {
+
+	/** 一つのセグメントファイルの大きさの上限（メモリーマップできる大きさ）。 */
+	private static final long MAX_SEGMENT_SIZE = 1L << 30;
+
+	/** キーごとに保持する管理情報（バッファー、マップのエントリーなど）のバイト数の見積もり。 */
+	private static final int KEY_OVERHEAD = 80;
+
+	/** セグメントファイルの表の、一つの範囲のバイト数（キーの番号、位置、バイト数、値の数）。 */
+	private static final int EXTENT_SIZE = 16;
+
+	/** 空のバッファー（退避した後は、次に値を追加するまで配列を確保しない）。 */
+	private static final byte[] EMPTY = new byte[0];
+
+	/**
+	 * マップの作成を開始します。
+	 *
+	 * @param directory セグメントファイルを作成するディレクトリー
+	 * @param memoryBudget メモリー上に保持する、変換後の値とキーごとの管理情報のバイト数の上限（最大1GiB）
+	 * @param codec 値とバイト列を相互に変換する方法
+	 * @return SpillingListMapsオブジェクト
+	 */
+	public static <K, E> SpillingListMaps<K, E> begin(Path directory, long memoryBudget, Codec<E> codec) {
+		if (memoryBudget <= 0 || memoryBudget > MAX_SEGMENT_SIZE) {
+			throw new IllegalArgumentException("memoryBudget: " + memoryBudget);
+		}
+
+		return new SpillingListMaps<K, E>(directory, memoryBudget, codec);
+	}
+
+	/**
+	 * 値とバイト列を相互に変換する方法です。
+	 *
+	 * @param <E> 値
+	 */
+	public interface Codec<E> {
+
+		/**
+		 * 値をバイト列に変換します。
+		 *
+		 * @param out 出力先
+		 * @param value 値
+		 * @throws IOException 出力に失敗した場合
+		 */
+		void write(DataOutput out, E value) throws IOException;
+
+		/**
+		 * バイト列を値に変換します。
+		 *
+		 * @param in 入力元
+		 * @return 値
+		 * @throws IOException 入力に失敗した場合
+		 */
+		E read(DataInput in) throws IOException;
+	}
+
+	/** リストの作成を補助します。 */
+	@RequiredArgsConstructor
+	public class Lists {
+
+		/** 現在、作成の補助をしているリストのバッファー。 */
+		private final Bucket current;
+
+		/**
+		 * リストに値を追加します。
+		 *
+		 * @param values 値
+		 * @return このListsオブジェクト自身
+		 * @throws UncheckedIOException 値の変換、または以前の退避に失敗した場合
+		 */
+		public Lists add(@SuppressWarnings("unchecked") E... values) {
+			for (E value : values) {
+				append(current, value);
+			}
+
+			return this;
+		}
+
+		/**
+		 * リストの作成を終了します。
+		 *
+		 * @return SpillingListMapsオブジェクト
+		 */
+		public SpillingListMaps<K, E> end() {
+			return SpillingListMaps.this;
+		}
+	}
+
+	/**
+	 * キーごとのバッファーです。
+	 */
+	private static final class Bucket extends ByteArrayOutputStream {
+
+		/** キーの番号（セグメントファイルの表を検索するキー）。 */
+		private final int id;
+
+		/** バッファー内の値の数。 */
+		private int values;
+
+		/** 退避した値の数。 */
+		private int spilledValues;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param id キーの番号
+		 */
+		private Bucket(int id) {
+			super(0);
+			this.id = id;
+			this.buf = EMPTY;
+		}
+
+		/**
+		 * バッファーの内容を取り出し、空にします。
+		 *
+		 * @return バッファーの配列（有効な内容は、先頭から{@link #size()}を呼び出した時点のバイト数まで）
+		 */
+		private byte[] take() {
+			byte[] taken = buf;
+			buf = EMPTY;
+			count = 0;
+			values = 0;
+			return taken;
+		}
+	}
+
+	/**
+	 * 値を読み戻すリストです。
+	 */
+	private final class SpilledList extends AbstractList<E> {
+
+		/** キーの番号。 */
+		private final int id;
+
+		/** 退避した値の数。 */
+		private final int spilledValues;
+
+		/** 退避していない値のバイト列。 */
+		private final byte[] tail;
+
+		/** 退避していない値のバイト数。 */
+		private final int tailLength;
+
+		/** 値の数。 */
+		private final int size;
+
+		/** 読み戻した値。 */
+		private SoftReference<List<E>> loaded = new SoftReference<>(null);
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param bucket キーごとのバッファー
+		 */
+		private SpilledList(Bucket bucket) {
+			id = bucket.id;
+			spilledValues = bucket.spilledValues;
+			size = bucket.spilledValues + bucket.values;
+			tailLength = bucket.size();
+			tail = bucket.take();
+		}
+
+		@Override
+		public E get(int index) {
+			return load().get(index);
+		}
+
+		@Override
+		public int size() {
+			return size;
+		}
+
+		/**
+		 * 値を読み戻します。既に読み戻していて、破棄されていない場合は、それを返却します。
+		 *
+		 * @return 値
+		 * @throws UncheckedIOException 読み戻しに失敗した場合
+		 */
+		private List<E> load() {
+			List<E> list = loaded.get();
+
+			if (list != null) {
+				return list;
+			}
+
+			list = new ArrayList<>(size);
+
+			try {
+				for (int segment = 0; segment < mapped.size() && list.size() < spilledValues; segment++) {
+					ByteBuffer buffer = mapped.get(segment);
+					int extent = find(buffer);
+
+					if (extent >= 0) {
+						int offset = buffer.getInt(extent + 4);
+						ByteBuffer values = buffer.duplicate();
+						values.position(offset).limit(offset + buffer.getInt(extent + 8));
+						read(new DataInputStream(new ByteBufferInputStream(values)), buffer.getInt(extent + 12), list);
+					}
+				}
+
+				read(new DataInputStream(new ByteArrayInputStream(tail, 0, tailLength)), size - list.size(), list);
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+
+			loaded = new SoftReference<>(list);
+			return list;
+		}
+
+		/**
+		 * 値を読み込みます。
+		 *
+		 * @param in 入力元
+		 * @param values 値の数
+		 * @param list 値を追加するリスト
+		 * @throws IOException 読み込みに失敗した場合
+		 */
+		private void read(DataInput in, int values, List<E> list) throws IOException {
+			for (int i = 0; i < values; i++) {
+				list.add(codec.read(in));
+			}
+		}
+
+		/**
+		 * セグメントファイルの末尾の表から、キーの範囲を二分探索します。
+		 *
+		 * @param segment メモリーマップしたセグメントファイル
+		 * @return 表の中の範囲の位置（このセグメントファイルに、キーの範囲がない場合は-1）
+		 */
+		private int find(ByteBuffer segment) {
+			int entries = segment.getInt(segment.limit() - 4);
+			int table = segment.limit() - 4 - entries * EXTENT_SIZE;
+			int low = 0;
+			int high = entries - 1;
+
+			while (low <= high) {
+				int middle = (low + high) >>> 1;
+				int found = segment.getInt(table + middle * EXTENT_SIZE);
+
+				if (found < id) {
+					low = middle + 1;
+				} else if (found > id) {
+					high = middle - 1;
+				} else {
+					return table + middle * EXTENT_SIZE;
+				}
+			}
+
+			return -1;
+		}
+	}
+
+	/**
+	 * {@link ByteBuffer}の内容を読み込む入力ストリームです。
+	 */
+	@RequiredArgsConstructor
+	private static final class ByteBufferInputStream extends InputStream {
+
+		/** 入力元。 */
+		private final ByteBuffer buffer;
+
+		@Override
+		public int read() {
+			return buffer.hasRemaining() ? (buffer.get() & 0xff) : -1;
+		}
+
+		@Override
+		public int read(byte[] b, int off, int len) {
+			if (len == 0) {
+				return 0;
+			}
+
+			if (!buffer.hasRemaining()) {
+				return -1;
+			}
+
+			int read = Math.min(len, buffer.remaining());
+			buffer.get(b, off, read);
+			return read;
+		}
+	}
+
+	/** 作成するマップ。 */
+	private final Map<K, Bucket> instance = new HashMap<>();
+
+	/** キーごとのバッファー（キーの番号順）。 */
+	private final List<Bucket> buckets = new ArrayList<>();
+
+	/** セグメントファイルを作成するディレクトリー。 */
+	private final Path directory;
+
+	/** メモリー上に保持する、変換後の値とキーごとの管理情報のバイト数の上限。 */
+	private final long memoryBudget;
+
+	/** 値とバイト列を相互に変換する方法。 */
+	private final Codec<E> codec;
+
+	/** 値を変換する際の出力先となるバッファー。 */
+	private Bucket target;
+
+	/** 値をバッファーへ変換する出力ストリーム。 */
+	private final DataOutputStream encoder = new DataOutputStream(new OutputStream() {
+
+		@Override
+		public void write(int b) {
+			target.write(b);
+		}
+
+		@Override
+		public void write(byte[] b, int off, int len) {
+			target.write(b, off, len);
+		}
+	});
+
+	/** バッファーの合計のバイト数。 */
+	private long buffered;
+
+	/** セグメントファイル（作成した順）。 */
+	private final List<Path> segments = new ArrayList<>();
+
+	/** メモリーマップしたセグメントファイル（{@link #end()}を呼び出すまではnull）。 */
+	private List<ByteBuffer> mapped;
+
+	/** 退避を書き出すスレッド。 */
+	private final ExecutorService spiller = Executors.newSingleThreadExecutor(runnable -> {
+		Thread thread = new Thread(runnable, "SpillingListMaps");
+		thread.setDaemon(true);
+		return thread;
+	});
+
+	/** 書き出し中の退避（書き出し中でない場合はnull）。 */
+	private Future<?> pending;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param directory セグメントファイルを作成するディレクトリー
+	 * @param memoryBudget メモリー上に保持する、変換後の値とキーごとの管理情報のバイト数の上限
+	 * @param codec 値とバイト列を相互に変換する方法
+	 */
+	private SpillingListMaps(Path directory, long memoryBudget, Codec<E> codec) {
+		this.directory = directory;
+		this.memoryBudget = memoryBudget;
+		this.codec = codec;
+	}
+
+	/**
+	 * リストの作成を開始します。
+	 *
+	 * <p>
+	 * キーごとの管理情報は、メモリーの上限の半分まで保持できます（残りの半分は、値のバッファーに使用します）。
+	 * </p>
+	 *
+	 * @param key このリストに割り当てる、マップのキー
+	 * @return リストの作成に用いるListsオブジェクト
+	 * @throws IllegalStateException 既に{@link #end()}を呼び出している場合、またはキーの管理情報がメモリーの上限の半分を超える場合
+	 */
+	public Lists begin(K key) {
+		if (mapped != null) {
+			throw new IllegalStateException("already ended");
+		}
+
+		Bucket bucket = instance.get(key);
+
+		if (bucket == null) {
+			if ((long) (buckets.size() + 1) * KEY_OVERHEAD > memoryBudget / 2) {
+				throw new IllegalStateException("too many keys for memoryBudget: " + memoryBudget);
+			}
+
+			bucket = new Bucket(buckets.size());
+			buckets.add(bucket);
+			instance.put(key, bucket);
+		}
+
+		return new Lists(bucket);
+	}
+
+	/**
+	 * 退避したセグメントファイルの数を取得します。
+	 *
+	 * @return セグメントファイルの数
+	 */
+	public int getSegmentCount() {
+		return segments.size();
+	}
+
+	/**
+	 * マップの作成を終了します。
+	 *
+	 * <p>
+	 * 書き出し中の退避が終わるのを待ち、全てのセグメントファイルをメモリーマップします。
+	 * 返却したマップとリストは変更できず、{@link #close()}を呼び出すまで参照できます。
+	 * 一度だけ呼び出せます。
+	 * </p>
+	 *
+	 * @return 作成したマップ
+	 * @throws UncheckedIOException 退避、またはメモリーマップに失敗した場合
+	 * @throws IllegalStateException 既に呼び出している場合
+	 */
+	public Map<K, List<E>> end() {
+		if (mapped != null) {
+			throw new IllegalStateException("already ended");
+		}
+
+		awaitPending();
+		spiller.shutdown();
+
+		List<ByteBuffer> buffers = new ArrayList<>(segments.size());
+
+		for (Path segment : segments) {
+			try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ)) {
+				buffers.add(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));   // チャネルを閉じてもマップは有効
+			} catch (IOException e) {
+				throw new UncheckedIOException(e);
+			}
+		}
+
+		mapped = buffers;
+
+		Map<K, List<E>> result = new HashMap<>((int) (instance.size() / 0.75f) + 1);
+		instance.forEach((key, bucket) -> result.put(key, new SpilledList(bucket)));
+		instance.clear();
+		buckets.clear();
+		buffered = 0;
+		return Collections.unmodifiableMap(result);
+	}
+
+	/**
+	 * 退避を書き出すスレッドを停止し、全てのセグメントファイルを削除します。
+	 *
+	 * <p>
+	 * 削除に失敗したファイルは残ります（例えば、メモリーマップ中のファイルを削除できない環境）。
+	 * </p>
+	 *
+	 * @throws IOException 削除に失敗した場合
+	 */
+	@Override
+	public void close() throws IOException {
+		spiller.shutdownNow();
+		mapped = Collections.emptyList();
+		IOException failure = null;
+
+		for (Path segment : segments) {
+			try {
+				Files.deleteIfExists(segment);
+			} catch (IOException e) {
+				if (failure == null) {
+					failure = e;
+				} else {
+					failure.addSuppressed(e);
+				}
+			}
+		}
+
+		if (failure != null) {
+			throw failure;
+		}
+	}
+
+	/**
+	 * リストに値を一つ追加し、バッファーの合計が上限を超えた場合は退避します。
+	 *
+	 * @param bucket キーごとのバッファー
+	 * @param value 値
+	 * @throws UncheckedIOException 値の変換、または以前の退避に失敗した場合
+	 */
+	private void append(Bucket bucket, E value) {
+		if (mapped != null) {
+			throw new IllegalStateException("already ended");
+		}
+
+		int before = bucket.size();
+		target = bucket;
+
+		try {
+			codec.write(encoder, value);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		bucket.values++;
+		buffered += bucket.size() - before;
+
+		if (buffered + (long) buckets.size() * KEY_OVERHEAD > memoryBudget) {
+			spill();
+		}
+	}
+
+	/**
+	 * 全てのバッファーを、新しいセグメントファイルへ退避します。
+	 *
+	 * <p>
+	 * 退避する範囲は、このスレッドで全て決定してから、書き出しを専用のスレッドに依頼します。
+	 * そのため、書き出しの完了を待たずに、バッファーへの追加を再開できます。
+	 * セグメントファイルには、値のバイト列に続けて、キーの番号順の範囲の表と、表の範囲の数を書き出します。
+	 * </p>
+	 *
+	 * @throws UncheckedIOException 以前の退避に失敗した場合
+	 */
+	private void spill() {
+		awaitPending();
+
+		Path segment;
+
+		try {
+			segment = Files.createTempFile(directory, "spill-", ".seg");
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+
+		segments.add(segment);
+
+		int entries = 0;
+
+		for (Bucket bucket : buckets) {
+			if (bucket.size() > 0) {
+				entries++;
+			}
+		}
+
+		byte[][] chunks = new byte[entries][];
+		int[] lengths = new int[entries];
+		ByteBuffer table = ByteBuffer.allocate(entries * EXTENT_SIZE + 4);
+		long offset = 0;
+		int entry = 0;
+
+		for (Bucket bucket : buckets) {                                         // キーの番号順に並べる
+			int length = bucket.size();
+
+			if (length > 0) {
+				table.putInt(bucket.id).putInt((int) offset).putInt(length).putInt(bucket.values);
+				bucket.spilledValues += bucket.values;
+				lengths[entry] = length;
+				chunks[entry++] = bucket.take();
+				offset += length;
+			}
+		}
+
+		table.putInt(entries);
+		buffered = 0;
+
+		pending = spiller.submit(() -> {
+			try (OutputStream out = Files.newOutputStream(segment)) {
+				for (int i = 0; i < chunks.length; i++) {
+					out.write(chunks[i], 0, lengths[i]);
+				}
+
+				out.write(table.array());
+			}
+
+			return null;
+		});
+	}
+
+	/**
+	 * 書き出し中の退避が終わるのを待ちます。
+	 *
+	 * <p>
+	 * 退避に失敗した場合、失敗したセグメントファイルの値は失われるため、以後の呼び出しでも同じ例外をスローします。
+	 * </p>
+	 *
+	 * @throws UncheckedIOException 退避に失敗した場合
+	 * @throws IllegalStateException 待機中に割り込まれた場合
+	 */
+	private void awaitPending() {
+		if (pending == null) {
+			return;
+		}
+
+		try {
+			pending.get();
+			pending = null;                                                     // 失敗した場合は、以後も失敗を通知する
+		} catch (ExecutionException e) {
+			if (e.getCause() instanceof IOException) {
+				throw new UncheckedIOException((IOException) e.getCause());
+			}
+
+			throw new IllegalStateException("failed to spill", e.getCause());
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("interrupted while spilling", e);
+		}
+	}
+}
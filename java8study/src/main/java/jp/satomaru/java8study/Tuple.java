@@ -97,4 +97,14 @@ public final class Tuple<F, S> {
 	public String format(String format) {
 		return String.format(format, first, second);
 	}
+
+	/**
+	 * 解析済みの編集形式で、文字列に編集します。
+	 * 
+	 * @param format 解析済みの編集形式
+	 * @return 編集された文字列
+	 */
+	public String format(TupleFormat format) {
+		return format.format(first, second);
+	}
 }
@@ -0,0 +1,425 @@
+package jp.satomaru.java8study;
+
+import java.math.BigInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.FormatFlagsConversionMismatchException;
+import java.util.IllegalFormatConversionException;
+import java.util.IllegalFormatFlagsException;
+import java.util.IllegalFormatPrecisionException;
+import java.util.IllegalFormatWidthException;
+import java.util.List;
+import java.util.MissingFormatArgumentException;
+import java.util.MissingFormatWidthException;
+import java.util.UnknownFormatConversionException;
+
+/**
+ * ２つの値を文字列に編集する、解析済みの編集形式です。
+ *
+ * <p>
+ * {@link String#format(String, Object...)}は、呼び出すたびに編集形式を解析し、ロケールに応じた編集を行います。
+ * このクラスは、{@link #compile(String)}で一度だけ解析し、以後は解析結果に従って{@link StringBuilder}へ直接編集します。
+ * 同じ編集形式で多数の値を編集する場合に使用してください。オブジェクトは不変で、スレッドセーフです。
+ * </p>
+ *
+ * <p>
+ * 使用できる変換は、以下のとおりです。
+ * </p>
+ * <ul>
+ * <li>{@code %s}：{@link String#valueOf(Object)}（{@link java.util.Formattable}は考慮しません）。精度を指定すると、その文字数に切り詰めます。</li>
+ * <li>{@code %d}：整数（{@link Integer}、{@link Long}、{@link Short}、{@link Byte}、{@link BigInteger}）。ロケールによらず、ASCIIの数字で編集します。</li>
+ * <li>{@code %%}、{@code %n}：「%」と、行の区切り記号。幅とフラグは指定できません。</li>
+ * </ul>
+ * <p>
+ * 幅と、フラグ{@code -}（左寄せ）および{@code 0}（ゼロ埋め、{@code %d}のみ）、引数の番号（{@code %2$s}）を指定できます。
+ * 引数の番号・幅・精度は、65535までです。
+ * 誤った編集形式に対しては、{@link java.util.Formatter}と同じ例外をスローします。
+ * </p>
+ */
+public final class TupleFormat {
+
+	/** 引数の番号・幅・精度の上限。 */
+	private static final int MAX_NUMBER = 0xffff;
+
+	/**
+	 * 編集形式を解析します。
+	 *
+	 * @param format 編集形式
+	 * @return 解析済みの編集形式
+	 * @throws java.util.IllegalFormatException 編集形式が誤っている、または使用できない変換を含む場合
+	 */
+	public static TupleFormat compile(String format) {
+		List<Segment> segments = new ArrayList<>();
+		StringBuilder literal = new StringBuilder();
+		int literalLength = 0;
+		int nextArgument = 0;
+		int index = 0;
+
+		while (index < format.length()) {
+			char c = format.charAt(index++);
+
+			if (c != '%') {
+				literal.append(c);
+				continue;
+			}
+
+			// 引数の番号
+			int start = index;
+			int number = digits(format, index);
+			int argument = -1;
+			index = skipDigits(format, index);
+
+			if (index < format.length() && format.charAt(index) == '$' && index > start) {
+				argument = number - 1;
+				index++;
+			} else {
+				index = start;
+			}
+
+			// フラグ
+			boolean leftJustify = false;
+			boolean zeroPad = false;
+
+			for (; index < format.length(); index++) {
+				char flag = format.charAt(index);
+
+				if (flag == '-') {
+					leftJustify = true;
+				} else if (flag == '0') {
+					zeroPad = true;
+				} else {
+					break;
+				}
+			}
+
+			// 幅と精度
+			int width = (index < format.length() && Character.isDigit(format.charAt(index))) ? digits(format, index) : -1;
+			index = skipDigits(format, index);
+			int precision = -1;
+
+			if (index < format.length() && format.charAt(index) == '.') {
+				precision = digits(format, ++index);
+				index = skipDigits(format, index);
+			}
+
+			if (index >= format.length()) {
+				throw new UnknownFormatConversionException("%");
+			}
+
+			char conversion = format.charAt(index++);
+			String flags = (leftJustify ? "-" : "") + (zeroPad ? "0" : "");
+
+			if (width > MAX_NUMBER) {
+				throw new IllegalFormatWidthException(width);
+			} else if (precision > MAX_NUMBER) {
+				throw new IllegalFormatPrecisionException(precision);
+			}
+
+			if (conversion == '%' || conversion == 'n') {
+				literal.append(text(conversion, flags, width, precision));
+				continue;
+			}
+
+			if (conversion != 's' && conversion != 'd') {
+				throw new UnknownFormatConversionException(String.valueOf(conversion));
+			} else if (leftJustify && zeroPad) {
+				throw new IllegalFormatFlagsException(flags);
+			} else if ((leftJustify || zeroPad) && width < 0) {
+				throw new MissingFormatWidthException("%" + flags + conversion);
+			} else if (zeroPad && conversion == 's') {
+				throw new FormatFlagsConversionMismatchException("0", conversion);
+			} else if (precision >= 0 && conversion == 'd') {
+				throw new IllegalFormatPrecisionException(precision);
+			}
+
+			if (argument < 0) {
+				argument = nextArgument++;
+			}
+
+			if (argument < 0 || argument > 1) {
+				throw new MissingFormatArgumentException("%" + conversion);
+			}
+
+			if (literal.length() > 0) {
+				literalLength += literal.length();
+				segments.add(new Literal(literal.toString()));
+				literal.setLength(0);
+			}
+
+			segments.add(new Conversion(argument, conversion == 'd', leftJustify, zeroPad, width, precision));
+		}
+
+		if (literal.length() > 0) {
+			literalLength += literal.length();
+			segments.add(new Literal(literal.toString()));
+		}
+
+		return new TupleFormat(segments.toArray(new Segment[segments.size()]), literalLength);
+	}
+
+	/**
+	 * {@code %%}、または{@code %n}を、変換しない文字列にします。
+	 *
+	 * <p>
+	 * {@code %n}は、{@link java.util.Formatter}と同様に、幅もフラグも指定できません。
+	 * {@code %%}の幅は、{@link java.util.Formatter}ではJDKの版により無視されるか、空白で埋められるため、指定できないものとします。
+	 * </p>
+	 *
+	 * @param conversion 変換（{@code %}、または{@code n}）
+	 * @param flags フラグ
+	 * @param width 幅（指定されていない場合は-1）
+	 * @param precision 精度（指定されていない場合は-1）
+	 * @return 変換しない文字列
+	 */
+	private static String text(char conversion, String flags, int width, int precision) {
+		if (precision >= 0) {
+			throw new IllegalFormatPrecisionException(precision);
+		}
+
+		if (width >= 0) {
+			throw new IllegalFormatWidthException(width);
+		} else if (!flags.isEmpty()) {
+			throw new IllegalFormatFlagsException(flags);
+		}
+
+		return (conversion == '%') ? "%" : System.lineSeparator();
+	}
+
+	/**
+	 * 数字を読み取ります。
+	 *
+	 * @param format 編集形式
+	 * @param index 読み取りを開始する位置
+	 * @return 読み取った数値（数字がない場合は0、{@link #MAX_NUMBER}を超える場合は{@link Integer#MAX_VALUE}）
+	 */
+	private static int digits(String format, int index) {
+		int value = 0;
+
+		for (int i = index; i < format.length() && Character.isDigit(format.charAt(i)); i++) {
+			value = value * 10 + (format.charAt(i) - '0');
+
+			if (value > MAX_NUMBER) {
+				return Integer.MAX_VALUE;                                       // 呼び出し元で、番号・幅・精度に応じた例外をスローする
+			}
+		}
+
+		return value;
+	}
+
+	/**
+	 * 数字を読み飛ばします。
+	 *
+	 * @param format 編集形式
+	 * @param index 読み飛ばしを開始する位置
+	 * @return 数字の次の位置
+	 */
+	private static int skipDigits(String format, int index) {
+		while (index < format.length() && Character.isDigit(format.charAt(index))) {
+			index++;
+		}
+
+		return index;
+	}
+
+	/**
+	 * 編集形式の一部です。
+	 */
+	private interface Segment {
+
+		/**
+		 * 編集します。
+		 *
+		 * @param builder 編集先
+		 * @param first 一つ目の値
+		 * @param second 二つ目の値
+		 */
+		void append(StringBuilder builder, Object first, Object second);
+	}
+
+	/**
+	 * 変換しない文字列です。
+	 */
+	private static final class Literal implements Segment {
+
+		/** 文字列。 */
+		private final String text;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param text 文字列
+		 */
+		private Literal(String text) {
+			this.text = text;
+		}
+
+		@Override
+		public void append(StringBuilder builder, Object first, Object second) {
+			builder.append(text);
+		}
+	}
+
+	/**
+	 * 値を変換する部分です。
+	 */
+	private static final class Conversion implements Segment {
+
+		/** 引数の番号（0：一つ目の値、1：二つ目の値）。 */
+		private final int argument;
+
+		/** 整数として編集する場合はtrue。 */
+		private final boolean integer;
+
+		/** 左寄せする場合はtrue。 */
+		private final boolean leftJustify;
+
+		/** ゼロ埋めする場合はtrue。 */
+		private final boolean zeroPad;
+
+		/** 幅（指定されていない場合は-1）。 */
+		private final int width;
+
+		/** 精度（指定されていない場合は-1）。 */
+		private final int precision;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param argument 引数の番号
+		 * @param integer 整数として編集する場合はtrue
+		 * @param leftJustify 左寄せする場合はtrue
+		 * @param zeroPad ゼロ埋めする場合はtrue
+		 * @param width 幅
+		 * @param precision 精度
+		 */
+		private Conversion(int argument, boolean integer, boolean leftJustify, boolean zeroPad, int width, int precision) {
+			this.argument = argument;
+			this.integer = integer;
+			this.leftJustify = leftJustify;
+			this.zeroPad = zeroPad;
+			this.width = width;
+			this.precision = precision;
+		}
+
+		@Override
+		public void append(StringBuilder builder, Object first, Object second) {
+			Object value = (argument == 0) ? first : second;
+			int start = builder.length();
+
+			if (!integer) {
+				String text = String.valueOf(value);
+				builder.append(text, 0, (precision >= 0) ? Math.min(precision, text.length()) : text.length());
+			} else if (value == null) {
+				builder.append("null");
+			} else if (value instanceof Integer || value instanceof Long || value instanceof Short || value instanceof Byte) {
+				builder.append(((Number) value).longValue());
+			} else if (value instanceof BigInteger) {
+				builder.append(value);
+			} else {
+				throw new IllegalFormatConversionException('d', value.getClass());
+			}
+
+			int padding = width - (builder.length() - start);
+
+			if (padding <= 0) {
+				return;
+			}
+
+			if (leftJustify) {
+				for (int i = 0; i < padding; i++) {
+					builder.append(' ');
+				}
+			} else if (zeroPad && value != null) {
+				int digits = (builder.charAt(start) == '-') ? start + 1 : start;   // 符号の後にゼロを埋める
+				builder.insert(digits, zeros(padding));
+			} else {
+				builder.insert(start, spaces(padding));
+			}
+		}
+
+		/**
+		 * 空白を並べた文字列を作成します。
+		 *
+		 * @param count 文字数
+		 * @return 文字列
+		 */
+		private static char[] spaces(int count) {
+			char[] chars = new char[count];
+			Arrays.fill(chars, ' ');
+			return chars;
+		}
+
+		/**
+		 * ゼロを並べた文字列を作成します。
+		 *
+		 * @param count 文字数
+		 * @return 文字列
+		 */
+		private static char[] zeros(int count) {
+			char[] chars = new char[count];
+			Arrays.fill(chars, '0');
+			return chars;
+		}
+	}
+
+	/** 編集形式を分割したもの。 */
+	private final Segment[] segments;
+
+	/** 変換しない文字列の合計の文字数。 */
+	private final int literalLength;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param segments 編集形式を分割したもの
+	 * @param literalLength 変換しない文字列の合計の文字数
+	 */
+	private TupleFormat(Segment[] segments, int literalLength) {
+		this.segments = segments;
+		this.literalLength = literalLength;
+	}
+
+	/**
+	 * ２つの値を、文字列に編集します。
+	 *
+	 * @param first 一つ目の値
+	 * @param second 二つ目の値
+	 * @return 編集された文字列
+	 * @throws java.util.IllegalFormatConversionException {@code %d}に整数でない値を指定した場合
+	 */
+	public String format(Object first, Object second) {
+		return formatTo(new StringBuilder(literalLength + 16), first, second).toString();
+	}
+
+	/**
+	 * タプルを、文字列に編集します。
+	 *
+	 * @param tuple タプル
+	 * @return 編集された文字列
+	 * @throws java.util.IllegalFormatConversionException {@code %d}に整数でない値を指定した場合
+	 */
+	public String format(Tuple<?, ?> tuple) {
+		return format(tuple.getFirst(), tuple.getSecond());
+	}
+
+	/**
+	 * ２つの値を編集して、{@link StringBuilder}に追加します。
+	 *
+	 * <p>
+	 * 同じ{@link StringBuilder}を使い回すことで、編集のためのオブジェクトを生成せずに済みます。
+	 * </p>
+	 *
+	 * @param builder 編集先
+	 * @param first 一つ目の値
+	 * @param second 二つ目の値
+	 * @return 編集先
+	 * @throws java.util.IllegalFormatConversionException {@code %d}に整数でない値を指定した場合
+	 */
+	public StringBuilder formatTo(StringBuilder builder, Object first, Object second) {
+		for (Segment segment : segments) {
+			segment.append(builder, first, second);
+		}
+
+		return builder;
+	}
+}
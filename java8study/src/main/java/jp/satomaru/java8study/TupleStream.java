@@ -0,0 +1,192 @@
+package jp.satomaru.java8study;
+
+import java.util.Map;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+import java.util.stream.Stream;
+
+/**
+ * ２つの値の組のストリームを、組ごとのタプルを作成せずに処理します。
+ *
+ * <p>
+ * {@link Tuple#map1st(Function)}や{@link Tuple#map2nd(Function)}を連ねると、段階ごとに新しいタプルを生成します。
+ * このクラスは、一つ目・二つ目の値を取得する関数に変換を合成するだけで、終端の処理でそれぞれを一度ずつ適用します。
+ * そのため、組ごとに生成するオブジェクトは、終端の処理の結果だけになります。
+ * </p>
+ *
+ * <p>
+ * {@link Stream}と同様に、終端の処理は一度だけ行えます。
+ * </p>
+ *
+ * @param <F> 一つ目の値
+ * @param <S> 二つ目の値
+ */
+public abstract class TupleStream<F, S> {
+
+	/**
+	 * マップのエントリーから、ストリームを生成します。
+	 *
+	 * @param map マップ
+	 * @return キーを一つ目、値を二つ目とするストリーム
+	 */
+	public static <K, V> TupleStream<K, V> of(Map<K, V> map) {
+		return of(map.entrySet().stream(), Map.Entry::getKey, Map.Entry::getValue);
+	}
+
+	/**
+	 * タプルのストリームから、ストリームを生成します。
+	 *
+	 * @param tuples タプルのストリーム
+	 * @return ストリーム
+	 */
+	public static <F, S> TupleStream<F, S> of(Stream<Tuple<F, S>> tuples) {
+		return of(tuples, Tuple::getFirst, Tuple::getSecond);
+	}
+
+	/**
+	 * 任意の要素のストリームから、ストリームを生成します。
+	 *
+	 * @param source 要素のストリーム
+	 * @param forFirst 要素から一つ目の値を取得する関数
+	 * @param forSecond 要素から二つ目の値を取得する関数
+	 * @return ストリーム
+	 */
+	public static <T, F, S> TupleStream<F, S> of(
+			Stream<T> source, Function<? super T, ? extends F> forFirst, Function<? super T, ? extends S> forSecond) {
+
+		return new Fused<>(source, forFirst, forSecond);
+	}
+
+	/**
+	 * コンストラクタ。
+	 */
+	private TupleStream() {
+	}
+
+	/**
+	 * 値を変換します。
+	 *
+	 * @param forFirst 一つ目の値を変換する関数
+	 * @param forSecond 二つ目の値を変換する関数
+	 * @return 新しいストリーム
+	 */
+	public abstract <T, U> TupleStream<T, U> map(Function<? super F, ? extends T> forFirst, Function<? super S, ? extends U> forSecond);
+
+	/**
+	 * 一つ目の値のみ変換します。
+	 *
+	 * @param forFirst 一つ目の値を変換する関数
+	 * @return 新しいストリーム
+	 */
+	public abstract <T> TupleStream<T, S> map1st(Function<? super F, ? extends T> forFirst);
+
+	/**
+	 * 二つ目の値のみ変換します。
+	 *
+	 * @param forSecond 二つ目の値を変換する関数
+	 * @return 新しいストリーム
+	 */
+	public abstract <U> TupleStream<F, U> map2nd(Function<? super S, ? extends U> forSecond);
+
+	/**
+	 * 組ごとに処理を行い、結果のストリームを取得します（終端の処理）。
+	 *
+	 * @param action 組を処理する関数
+	 * @return 処理結果のストリーム
+	 */
+	public abstract <R> Stream<R> apply(BiFunction<? super F, ? super S, ? extends R> action);
+
+	/**
+	 * 組ごとに処理を行います（終端の処理）。
+	 *
+	 * @param action 組を処理する関数
+	 */
+	public abstract void forEach(BiConsumer<? super F, ? super S> action);
+
+	/**
+	 * 組ごとに文字列に編集します（終端の処理）。
+	 *
+	 * @param format 編集形式
+	 * @return 編集された文字列のストリーム
+	 */
+	public Stream<String> format(String format) {
+		return apply((first, second) -> String.format(format, first, second));
+	}
+
+	/**
+	 * 組ごとに、解析済みの編集形式で文字列に編集します（終端の処理）。
+	 *
+	 * @param format 解析済みの編集形式
+	 * @return 編集された文字列のストリーム
+	 */
+	public Stream<String> format(TupleFormat format) {
+		return apply(format::format);
+	}
+
+	/**
+	 * 組ごとにタプルを生成します（終端の処理）。
+	 *
+	 * @return タプルのストリーム
+	 */
+	public Stream<Tuple<F, S>> tuples() {
+		return apply(Tuple::of);
+	}
+
+	/**
+	 * 要素のストリームと、要素から値を取得する関数を合成したストリームです。
+	 *
+	 * @param <E> 要素
+	 * @param <F> 一つ目の値
+	 * @param <S> 二つ目の値
+	 */
+	private static final class Fused<E, F, S> extends TupleStream<F, S> {
+
+		/** 要素のストリーム。 */
+		private final Stream<E> source;
+
+		/** 要素から一つ目の値を取得する関数。 */
+		private final Function<? super E, ? extends F> first;
+
+		/** 要素から二つ目の値を取得する関数。 */
+		private final Function<? super E, ? extends S> second;
+
+		/**
+		 * コンストラクタ。
+		 *
+		 * @param source 要素のストリーム
+		 * @param first 要素から一つ目の値を取得する関数
+		 * @param second 要素から二つ目の値を取得する関数
+		 */
+		private Fused(Stream<E> source, Function<? super E, ? extends F> first, Function<? super E, ? extends S> second) {
+			this.source = source;
+			this.first = first;
+			this.second = second;
+		}
+
+		@Override
+		public <T, U> TupleStream<T, U> map(Function<? super F, ? extends T> forFirst, Function<? super S, ? extends U> forSecond) {
+			return new Fused<E, T, U>(source, element -> forFirst.apply(first.apply(element)), element -> forSecond.apply(second.apply(element)));
+		}
+
+		@Override
+		public <T> TupleStream<T, S> map1st(Function<? super F, ? extends T> forFirst) {
+			return new Fused<E, T, S>(source, element -> forFirst.apply(first.apply(element)), second);
+		}
+
+		@Override
+		public <U> TupleStream<F, U> map2nd(Function<? super S, ? extends U> forSecond) {
+			return new Fused<E, F, U>(source, first, element -> forSecond.apply(second.apply(element)));
+		}
+
+		@Override
+		public <R> Stream<R> apply(BiFunction<? super F, ? super S, ? extends R> action) {
+			return source.map(element -> action.apply(first.apply(element), second.apply(element)));
+		}
+
+		@Override
+		public void forEach(BiConsumer<? super F, ? super S> action) {
+			source.forEach(element -> action.accept(first.apply(element), second.apply(element)));
+		}
+	}
+}
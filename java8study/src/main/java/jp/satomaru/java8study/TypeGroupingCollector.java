@@ -0,0 +1,219 @@
+package jp.satomaru.java8study;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BinaryOperator;
+import java.util.function.Function;
+import java.util.function.Supplier;
+import java.util.stream.Collector;
+
+/**
+ * オブジェクトを型ごとに集める{@link Collector}です。
+ *
+ * <p>
+ * 型は{@link ClassValue}により、一度だけ連番（以下、スロット）に変換し、以後はハッシュ表を検索せずに、
+ * スロットを添字とする配列でバッファーを引きます。
+ * 並列ストリームでは、分割ごとに別々のバッファーへ集め、結合時にはバッファーを複製せずに連結します。
+ * 最後に、型ごとの要素数を数えてから、その大きさのリストを作成して詰め直します（分割されていない型は、詰め直しません）。
+ * 各リストの要素の順番は、ストリームの順番と一致します。nullの要素は無視します。
+ * </p>
+ *
+ * <p>
+ * 上位の型を指定した場合は、要素の型を、指定された順に最初に代入可能な上位の型で集めます（例えば、{@link Number}を指定すると、
+ * {@link Integer}や{@link Long}をまとめて集めます）。どれにも代入できない場合は、要素の型で集めます。
+ * この判定も型ごとに一度だけ行うため、同じCollectorを使い回すと、判定結果を再利用できます。
+ * </p>
+ *
+ * <p>
+ * ただし、Collectorは一度でも集めた型への参照を保持し続けます（スロットも減りません）。
+ * 使い回すと、その型を読み込んだクラスローダーを解放できなくなるため、不特定の型を集める場合は、呼び出しごとに作成してください。
+ * </p>
+ */
+final class TypeGroupingCollector implements Collector<Object, TypeGroupingCollector.Buckets, Map<Class<?>, List<Object>>> {
+
+	/**
+	 * 分割ごとのバッファーです。
+	 */
+	static final class Buckets {
+
+		/** スロットごとの、バッファーの連なり（要素を追加するのは、最後のバッファー）。 */
+		private List<ArrayList<Object>>[] chunks = newChunks(8);
+
+		/**
+		 * 要素を追加します。
+		 *
+		 * @param slot スロット
+		 * @param element 要素
+		 */
+		private void add(int slot, Object element) {
+			if (slot >= chunks.length) {
+				chunks = Arrays.copyOf(chunks, Math.max(slot + 1, chunks.length * 2));
+			}
+
+			List<ArrayList<Object>> list = chunks[slot];
+
+			if (list == null) {
+				list = new ArrayList<>(1);
+				list.add(new ArrayList<>());
+				chunks[slot] = list;
+			}
+
+			list.get(list.size() - 1).add(element);
+		}
+
+		/**
+		 * 他のバッファーを、後ろに連結します。
+		 *
+		 * @param other 後ろに連結するバッファー
+		 * @return このBucketsオブジェクト自身
+		 */
+		private Buckets append(Buckets other) {
+			if (other.chunks.length > chunks.length) {
+				chunks = Arrays.copyOf(chunks, other.chunks.length);
+			}
+
+			for (int slot = 0; slot < other.chunks.length; slot++) {
+				if (other.chunks[slot] == null) {
+					continue;
+				}
+
+				if (chunks[slot] == null) {
+					chunks[slot] = other.chunks[slot];
+				} else {
+					chunks[slot].addAll(other.chunks[slot]);                    // 要素は複製しない
+				}
+			}
+
+			return this;
+		}
+
+		/**
+		 * バッファーの連なりの配列を作成します。
+		 *
+		 * @param length 配列の大きさ
+		 * @return 配列
+		 */
+		@SuppressWarnings({"unchecked", "rawtypes"})
+		private static List<ArrayList<Object>>[] newChunks(int length) {
+			return new List[length];
+		}
+	}
+
+	/** 集める単位となる型（スロットの順）。 */
+	private final List<Class<?>> groups = new ArrayList<>();
+
+	/** 集める単位となる型から、スロットへのマップ。 */
+	private final Map<Class<?>, Integer> slotsByGroup = new HashMap<>();
+
+	/** 要素の型から、スロットへの対応（型ごとに一度だけ判定する）。 */
+	private final ClassValue<Integer> slots = new ClassValue<Integer>() {
+
+		@Override
+		protected Integer computeValue(Class<?> type) {
+			Class<?> group = type;
+
+			for (Class<?> supertype : supertypes) {
+				if (supertype.isAssignableFrom(type)) {
+					group = supertype;
+					break;
+				}
+			}
+
+			synchronized (groups) {
+				Integer slot = slotsByGroup.get(group);
+
+				if (slot == null) {
+					slot = groups.size();
+					groups.add(group);
+					slotsByGroup.put(group, slot);
+				}
+
+				return slot;
+			}
+		}
+	};
+
+	/** 上位の型（判定する順）。 */
+	private final Class<?>[] supertypes;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param supertypes 上位の型（判定する順）
+	 */
+	TypeGroupingCollector(Class<?>... supertypes) {
+		this.supertypes = supertypes.clone();
+	}
+
+	@Override
+	public Supplier<Buckets> supplier() {
+		return Buckets::new;
+	}
+
+	@Override
+	public BiConsumer<Buckets, Object> accumulator() {
+		return (buckets, element) -> {
+			if (element != null) {
+				buckets.add(slots.get(element.getClass()), element);
+			}
+		};
+	}
+
+	@Override
+	public BinaryOperator<Buckets> combiner() {
+		return Buckets::append;
+	}
+
+	@Override
+	public Function<Buckets, Map<Class<?>, List<Object>>> finisher() {
+		return buckets -> {
+			Class<?>[] keys;
+
+			synchronized (groups) {
+				keys = groups.toArray(new Class<?>[groups.size()]);
+			}
+
+			Map<Class<?>, List<Object>> result = new HashMap<>();
+
+			for (int slot = 0; slot < buckets.chunks.length; slot++) {
+				List<ArrayList<Object>> chunks = buckets.chunks[slot];
+
+				if (chunks == null) {
+					continue;
+				}
+
+				if (chunks.size() == 1) {
+					result.put(keys[slot], chunks.get(0));                          // 分割されていない場合は、そのまま使う
+					continue;
+				}
+
+				int size = 0;
+
+				for (ArrayList<Object> chunk : chunks) {
+					size += chunk.size();
+				}
+
+				List<Object> list = new ArrayList<>(size);                      // 最終的な大きさで作成する
+
+				for (ArrayList<Object> chunk : chunks) {
+					list.addAll(chunk);
+				}
+
+				result.put(keys[slot], list);
+			}
+
+			return result;
+		};
+	}
+
+	@Override
+	public Set<Characteristics> characteristics() {
+		return Collections.emptySet();
+	}
+}
@@ -0,0 +1,193 @@
+package jp.satomaru.java8study;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+
+/**
+ * 文字列をUTF-8に変換しながら、チャネルに書き出します。
+ *
+ * <p>
+ * 文字列は、プールから借りたダイレクトバッファーに直接UTF-8で書き込み、
+ * 全てのバッファーが埋まった時点で、まとめてチャネルに書き出します（ギャザリング書き込み）。
+ * 文字列をバイト配列に変換してからバッファーに複製する、という二度手間を省きます。
+ * </p>
+ *
+ * <p>
+ * このクラスはスレッドセーフではありません。
+ * </p>
+ */
+final class Utf8ChannelWriter implements Closeable {
+
+	/** 一つのバッファーのバイト数。 */
+	static final int BUFFER_SIZE = 64 * 1024;
+
+	/** まとめて書き出すバッファーの数。 */
+	private static final int BUFFER_COUNT = 8;
+
+	/** プールに保持するバッファーの最大数。 */
+	private static final int POOL_LIMIT = 64;
+
+	/** ダイレクトバッファーのプール（ダイレクトバッファーは確保と解放が遅いため、再利用する。満杯の場合は追加しない）。 */
+	private static final Queue<ByteBuffer> POOL = new ArrayBlockingQueue<>(POOL_LIMIT);
+
+	/** 書き出し先のチャネル。 */
+	private final WritableByteChannel channel;
+
+	/** 書き込み中のバッファー。 */
+	private final ByteBuffer[] buffers = new ByteBuffer[BUFFER_COUNT];
+
+	/** 書き込み中のバッファーのインデックス。 */
+	private int current;
+
+	/** 書き出したバイト数。 */
+	private long written;
+
+	/** 閉じた場合はtrue。 */
+	private boolean closed;
+
+	/**
+	 * コンストラクタ。
+	 *
+	 * @param channel 書き出し先のチャネル
+	 */
+	Utf8ChannelWriter(WritableByteChannel channel) {
+		this.channel = channel;
+
+		for (int i = 0; i < buffers.length; i++) {
+			ByteBuffer buffer = POOL.poll();
+			buffers[i] = (buffer != null) ? buffer : ByteBuffer.allocateDirect(BUFFER_SIZE);
+		}
+	}
+
+	/**
+	 * 文字列をUTF-8に変換して書き込みます。
+	 *
+	 * <p>
+	 * 対になっていないサロゲート文字は、{@link String#getBytes(java.nio.charset.Charset)}と同様に"?"に置き換えます。
+	 * </p>
+	 *
+	 * @param chars 文字列
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	void write(CharSequence chars) throws IOException {
+		int length = chars.length();
+		ByteBuffer buffer = buffers[current];
+
+		for (int i = 0; i < length; i++) {
+			if (buffer.remaining() < 4) {
+				buffer = next();                                                // 1文字の最大バイト数が収まらない場合
+			}
+
+			char c = chars.charAt(i);
+
+			if (c < 0x80) {
+				buffer.put((byte) c);
+			} else if (c < 0x800) {
+				buffer.put((byte) (0xc0 | (c >> 6)));
+				buffer.put((byte) (0x80 | (c & 0x3f)));
+			} else if (Character.isSurrogate(c)) {
+				if (Character.isHighSurrogate(c) && i + 1 < length && Character.isLowSurrogate(chars.charAt(i + 1))) {
+					int codePoint = Character.toCodePoint(c, chars.charAt(++i));
+					buffer.put((byte) (0xf0 | (codePoint >> 18)));
+					buffer.put((byte) (0x80 | ((codePoint >> 12) & 0x3f)));
+					buffer.put((byte) (0x80 | ((codePoint >> 6) & 0x3f)));
+					buffer.put((byte) (0x80 | (codePoint & 0x3f)));
+				} else {
+					buffer.put((byte) '?');
+				}
+			} else {
+				buffer.put((byte) (0xe0 | (c >> 12)));
+				buffer.put((byte) (0x80 | ((c >> 6) & 0x3f)));
+				buffer.put((byte) (0x80 | (c & 0x3f)));
+			}
+		}
+	}
+
+	/**
+	 * 書き出したバイト数を取得します。
+	 *
+	 * @return 書き出したバイト数（まだバッファーに残っているものは含まない）
+	 */
+	long getWritten() {
+		return written;
+	}
+
+	/**
+	 * バッファーに残っている内容を書き出します。
+	 *
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	void flush() throws IOException {
+		for (int i = 0; i <= current; i++) {
+			buffers[i].flip();
+		}
+
+		if (channel instanceof GatheringByteChannel) {
+			GatheringByteChannel gathering = (GatheringByteChannel) channel;
+
+			while (buffers[current].hasRemaining()) {
+				written += gathering.write(buffers, 0, current + 1);
+			}
+		} else {
+			for (int i = 0; i <= current; i++) {
+				while (buffers[i].hasRemaining()) {
+					written += channel.write(buffers[i]);
+				}
+			}
+		}
+
+		for (int i = 0; i <= current; i++) {
+			buffers[i].clear();
+		}
+
+		current = 0;
+	}
+
+	/**
+	 * 残っている内容を書き出し、バッファーをプールに返却します。
+	 *
+	 * <p>
+	 * チャネルは閉じません。
+	 * </p>
+	 *
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	@Override
+	public void close() throws IOException {
+		if (closed) {
+			return;
+		}
+
+		closed = true;
+
+		try {
+			flush();
+		} finally {
+			for (ByteBuffer buffer : buffers) {
+				buffer.clear();
+				POOL.offer(buffer);                                             // 満杯の場合は、GCに解放を任せる
+			}
+		}
+	}
+
+	/**
+	 * 次のバッファーに切り替えます。
+	 *
+	 * @return 次のバッファー
+	 * @throws IOException 書き出しに失敗した場合
+	 */
+	private ByteBuffer next() throws IOException {
+		if (current + 1 == buffers.length) {
+			flush();                                                            // 全てのバッファーが埋まったら、まとめて書き出す
+		} else {
+			current++;
+		}
+
+		return buffers[current];
+	}
+}
@@ -6,13 +6,14 @@ import java.math.BigDecimal;
 import java.time.DayOfWeek;
 import java.time.LocalDate;
 import java.util.Collection;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Optional;
 import java.util.Set;
-import java.util.jar.JarEntry;
-import java.util.jar.JarFile;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collector;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
 
@@ -21,6 +22,18 @@ import java.util.stream.Stream;
  */
 public final class Utils {
 
+	/** {@link #toStringList(Map)}の編集形式。 */
+	private static final TupleFormat KEY_VALUE = TupleFormat.compile("%s:%s");
+
+	/** {@link #searchClassInJar(File, String)}が保持する、JARファイルの索引の数の上限。 */
+	private static final int JAR_INDEX_LIMIT = 256;
+
+	/** {@link #searchClassInJar(File, String)}が使用する、JARファイルの索引。 */
+	private static final JarIndexCache JAR_INDEX = new JarIndexCache(JAR_INDEX_LIMIT);
+
+	/** {@link #scanClasspath(String)}が使用する、クラスパスの検索（JARファイルの索引を共有する）。 */
+	private static final ClasspathScanner CLASSPATH_SCANNER = new ClasspathScanner(JAR_INDEX, ForkJoinPool.commonPool());
+
 	/**
 	 * 数値に変換します。
 	 *
@@ -81,10 +94,9 @@ public final class Utils {
 	 * @return 各エントリーを"key:value"に編集したリスト
 	 */
 	public static <K, V> List<String> toStringList(Map<K, V> map) {
-		return map.entrySet().stream()                                          // mapからEntryを取得しストリーム化
-				.map(Tuple::of)                                                 // EntryをTuple<Key, Value>に
-				.map(tuple -> tuple.map2nd(Utils::defaultString))               // Tupleの２要素目がnullだったら空文字に変更
-				.map(tuple -> tuple.format("%s:%s"))                            // Tupleの第一要素 + ":" + 第二要素の文字列に変換
+		return TupleStream.of(map)                                              // mapのEntryを、Tupleを作らずに(Key, Value)として扱う
+				.map2nd(Utils::defaultString)                                   // ２要素目がnullだったら空文字に変更
+				.format(KEY_VALUE)                                              // 第一要素 + ":" + 第二要素の文字列に変換
 				.collect(Collectors.toList());                                  // 文字列を集計してリストに
 	}
 
@@ -100,6 +112,44 @@ public final class Utils {
 				.collect(Collectors.groupingBy(Object::getClass));      // クラスをキーにして要素をグルーピング
 	}
 
+	/**
+	 * コレクション内のオブジェクトを、並列ストリームで型ごとに集めます。
+	 *
+	 * <p>
+	 * 結果は{@link #groupByType(Collection)}と同じで、各リストの要素の順番はコレクションの順番と一致します。
+	 * 詳細は{@link #groupingByType(Class...)}を参照してください。
+	 * </p>
+	 *
+	 * @param collection コレクション
+	 * @return 型ごとに集めた結果を格納したマップ
+	 */
+	public static Map<Class<?>, List<Object>> groupByTypeParallel(Collection<?> collection) {
+		return collection.parallelStream().collect(new TypeGroupingCollector());  // 型への参照を残さない
+	}
+
+	/**
+	 * オブジェクトを型ごとに集める{@link Collector}を作成します。
+	 *
+	 * <p>
+	 * 型は{@link ClassValue}により連番に変換して、配列で集めるため、ハッシュ表を検索しません。
+	 * 並列ストリームでは、分割ごとに別々に集めた後、要素を複製せずに連結し、最後に最終的な大きさのリストへ詰め直します。
+	 * nullの要素は無視します。
+	 * </p>
+	 *
+	 * <p>
+	 * 上位の型を指定した場合は、要素を、指定された順に最初に代入可能な上位の型で集めます（例えば{@code Number.class}を指定すると、
+	 * 全ての数値をまとめて集めます）。どれにも代入できない要素は、その型で集めます。
+	 * 型の判定結果はCollectorごとに保持するため、決まった型を繰り返し集める場合は、作成したCollectorを使い回すと高速です。
+	 * ただし、Collectorは集めた型への参照を保持し続けるため（クラスローダーを解放できなくなる）、不特定の型を集める場合は使い回さないでください。
+	 * </p>
+	 *
+	 * @param supertypes 上位の型（判定する順）
+	 * @return Collector
+	 */
+	public static Collector<Object, ?, Map<Class<?>, List<Object>>> groupingByType(Class<?>... supertypes) {
+		return new TypeGroupingCollector(supertypes);
+	}
+
 	/**
 	 * 文字列に変換します。
 	 *
@@ -141,6 +191,9 @@ public final class Utils {
 	 *
 	 * <p>
 	 * サブパッケージも全て検索します。
+	 * 一度検索したJARファイルは、大きさと最終更新日時が変わらない限り、索引から検索します（詳細は{@link JarIndexCache}を参照してください）。
+	 * 共有の索引は、最大256個のJARファイルまで保持します。
+	 * それより多くのJARファイルを繰り返し検索する場合は、{@link #searchClassInJar(File, String, JarIndexCache)}に索引を渡してください。
 	 * </p>
 	 *
 	 * @param file JARファイル
@@ -149,38 +202,70 @@ public final class Utils {
 	 * @throws IOException JARファイルの読み込みに失敗した場合
 	 */
 	public static Set<String> searchClassInJar(File file, String packageName) throws IOException {
-		try (JarFile jar = new JarFile(file)) {
-			/*
-			 * なお、「クラスの完全修飾名」とは、以下を全て満たすものです。
-			 * 1. 拡張子が".class"である。
-			 * 2. "package-info.class"ではない。
-			 * 動作確認は、searchClassInJar(new File("【mavenリポジトリ】", "lombok-1.16.6.jar"), "lombok")でやってみてください。
-			 */
-
-//			return jar.stream()                                     // JarEntryのストリームを取得
-//				.map(jarEntry -> jarEntry.getName())                // entry中のファイル名を取得
-//				.filter(str -> str.endsWith(".class"))              // 拡張子が.classのものを選択
-//				.filter(str -> !str.endsWith("package-info.class")) // package-info.classではないものを選択
-//				.filter(str -> str.startsWith(packageName + "/"))   // 引数パッケージから始まるものを選択
-//				.map(str -> str.replace("/", "."))                  // "/"を"."に変換
-//				.map(str -> str.substring(0, str.indexOf(".class")))// 先頭から”.classよリ前を取得
-//				.collect(Collectors.toSet());                       // Setに集計
-
-
-			String suffix = ".class";
-			String prefix = packageName.replace('.', '/') + "/";                     // packageName中のドットをスラッシュに置換しておかないと、filterでヒットしません。
-			                                                                         // "lombok.launch"等のテストケースが漏れてましたね。
-			                                                                         // また、streamに依存しない処理は、予め済ませておきましょう。速度が向上します。
-
-			return jar.stream()
-				.map(JarEntry::getName)
-				.filter(name -> name.startsWith(prefix)                              // 最も絞り込みが期待できる評価式から実行しましょう
-					&& name.endsWith(suffix)                                         // streamメソッドの数を減らすのが容易である場合は、減らした方が速度が向上します。
-					&& !name.endsWith("package-info.class"))                         // 可読性と相談しながら、streamメソッドの数を減らすことを検討してください。
-				.map(name -> name.substring(0, name.length() - suffix.length())      // 文字列の長さが変化してなく、かつ末尾がsuffixであることは、保証されています。
-					.replace('/', '.'))                                              // replace(CharSequence,CharSequence)よりも、こっちの方が高速です。
-				.collect(Collectors.toSet());
-		}
+		return searchClassInJar(file, packageName, JAR_INDEX);
+	}
+
+	/**
+	 * 指定された索引を使用して、JARファイルから、指定されたパッケージ配下にある全クラスを検索します。
+	 *
+	 * @param file JARファイル
+	 * @param packageName パッケージ名
+	 * @param cache JARファイルの索引
+	 * @return 検索されたクラスの完全修飾名（バイナリー名）のセット
+	 * @throws IOException JARファイルの読み込みに失敗した場合
+	 * @see #searchClassInJar(File, String)
+	 */
+	public static Set<String> searchClassInJar(File file, String packageName, JarIndexCache cache) throws IOException {
+		/*
+		 * なお、「クラスの完全修飾名」とは、以下を全て満たすものです。
+		 * 1. 拡張子が".class"である。
+		 * 2. "package-info.class"ではない。
+		 * 動作確認は、searchClassInJar(new File("【mavenリポジトリ】", "lombok-1.16.6.jar"), "lombok")でやってみてください。
+		 *
+		 * JARファイルの全エントリーを読むのは、初回の検索だけです。
+		 * 以後は、パッケージから配下のクラスを引く索引で、一度の検索で済ませます。
+		 * 以下は、索引を導入する前の実装です。絞り込みの考え方は、JarDirectoryのエントリー名の比較に引き継いでいます。
+		 */
+
+//		return jar.stream()                                     // JarEntryのストリームを取得
+//			.map(jarEntry -> jarEntry.getName())                // entry中のファイル名を取得
+//			.filter(str -> str.endsWith(".class"))              // 拡張子が.classのものを選択
+//			.filter(str -> !str.endsWith("package-info.class")) // package-info.classではないものを選択
+//			.filter(str -> str.startsWith(packageName + "/"))   // 引数パッケージから始まるものを選択
+//			.map(str -> str.replace("/", "."))                  // "/"を"."に変換
+//			.map(str -> str.substring(0, str.indexOf(".class")))// 先頭から”.classよリ前を取得
+//			.collect(Collectors.toSet());                       // Setに集計
+
+//		String suffix = ".class";
+//		String prefix = packageName.replace('.', '/') + "/";                     // packageName中のドットをスラッシュに置換しておかないと、filterでヒットしません。
+//		                                                                         // "lombok.launch"等のテストケースが漏れてましたね。
+//		                                                                         // また、streamに依存しない処理は、予め済ませておきましょう。速度が向上します。
+//
+//		return jar.stream()
+//			.map(JarEntry::getName)
+//			.filter(name -> name.startsWith(prefix)                              // 最も絞り込みが期待できる評価式から実行しましょう
+//				&& name.endsWith(suffix)                                         // streamメソッドの数を減らすのが容易である場合は、減らした方が速度が向上します。
+//				&& !name.endsWith("package-info.class"))                         // 可読性と相談しながら、streamメソッドの数を減らすことを検討してください。
+//			.map(name -> name.substring(0, name.length() - suffix.length())      // 文字列の長さが変化してなく、かつ末尾がsuffixであることは、保証されています。
+//				.replace('/', '.'))                                              // replace(CharSequence,CharSequence)よりも、こっちの方が高速です。
+//			.collect(Collectors.toSet());
+
+		return new HashSet<>(cache.search(file, packageName));                  // 索引は共有しているため、複製して返却する
+	}
+
+	/**
+	 * クラスパス文字列に含まれる全クラスを、パッケージごとに検索します。
+	 *
+	 * <p>
+	 * クラスパスの各要素（JARファイル、またはクラスファイルを展開したディレクトリー）は、並行に読み込みます（詳細は{@link ClasspathScanner}を参照してください）。
+	 * </p>
+	 *
+	 * @param classpath クラスパス文字列（{@link File#pathSeparator}区切り）
+	 * @return パッケージ名から、直下にあるクラスの完全修飾名（バイナリー名）の、変更できないマップ
+	 * @throws IOException 読み込みに失敗した場合
+	 */
+	public static Map<String, Set<String>> scanClasspath(String classpath) throws IOException {
+		return CLASSPATH_SCANNER.scan(classpath);
 	}
 
 	private Utils() {}
@@ -0,0 +1,108 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.Serializable;
+import java.lang.annotation.Retention;
+import java.lang.annotation.RetentionPolicy;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+import org.junit.Test;
+
+public class ClassMetadataTest {
+
+	@Retention(RetentionPolicy.RUNTIME)
+	public @interface Handler {
+		String value();
+		int[] order() default {};
+		Retention meta() default @Retention(RetentionPolicy.CLASS);
+	}
+
+	@Retention(RetentionPolicy.CLASS)
+	public @interface Invisible {
+	}
+
+	@Handler(value = "exploding\u0000日本語", order = {1, 2}, meta = @Retention(RetentionPolicy.SOURCE))
+	@Invisible
+	@Deprecated
+	public static class Exploding extends Thread implements Runnable, Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		private static final double RATIO = 1.5;
+
+		static {
+			if (RATIO > 0) {
+				throw new IllegalStateException("must not be initialized");
+			}
+		}
+
+		@Override
+		public void run() {
+			System.out.println(RATIO + Long.MAX_VALUE);
+		}
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		ClassMetadata actual = ClassMetadata.parse(ByteBuffer.wrap(classFile(Exploding.class.getName())));
+
+		assertThat(actual.getName(), is("jp.satomaru.java8study.ClassMetadataTest$Exploding"));
+		assertThat(actual.getSuperName(), is("java.lang.Thread"));
+		assertThat(actual.getInterfaces(), contains("java.lang.Runnable", "java.io.Serializable"));
+		assertThat(actual.getAnnotations(), contains(Handler.class.getName(), Deprecated.class.getName()));
+		assertThat(actual.isAnnotatedWith(Handler.class), is(true));
+		assertThat(actual.isAnnotatedWith(Invisible.class), is(false));
+		assertThat(actual.implementsDirectly(Runnable.class), is(true));
+		assertThat(actual.isPublic(), is(true));
+		assertThat(actual.isInterface(), is(false));
+		assertThat(actual.isAbstract(), is(false));
+	}
+
+	@Test
+	public void testParseInterface() throws Exception {
+		ClassMetadata actual = ClassMetadata.parse(ByteBuffer.wrap(classFile(Handler.class.getName())));
+
+		assertThat(actual.getSuperName(), is("java.lang.Object"));
+		assertThat(actual.getInterfaces(), contains("java.lang.annotation.Annotation"));
+		assertThat(actual.getAnnotations(), contains(Retention.class.getName()));
+		assertThat(actual.isInterface(), is(true));
+		assertThat(actual.isAbstract(), is(true));
+	}
+
+	@Test
+	public void testParseObject() throws Exception {
+		ClassMetadata actual = ClassMetadata.parse(ByteBuffer.wrap(classFile(Object.class.getName())));
+
+		assertThat(actual.getName(), is("java.lang.Object"));
+		assertThat(actual.getSuperName(), is(nullValue()));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseNotClassFile() throws Exception {
+		ClassMetadata.parse(ByteBuffer.wrap(new byte[] {(byte) 0xca, (byte) 0xfe}));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseTruncated() throws Exception {
+		byte[] bytes = classFile(Exploding.class.getName());
+		ClassMetadata.parse(ByteBuffer.wrap(bytes, 0, bytes.length / 2));
+	}
+
+	static byte[] classFile(String className) throws IOException {
+		try (InputStream in = ClassLoader.getSystemResourceAsStream(className.replace('.', '/') + ".class")) {
+			byte[] buffer = new byte[64 * 1024];
+			int length = 0;
+
+			for (int count; (count = in.read(buffer, length, buffer.length - length)) > 0; ) {
+				length += count;
+			}
+
+			return Arrays.copyOf(buffer, length);
+		}
+	}
+}
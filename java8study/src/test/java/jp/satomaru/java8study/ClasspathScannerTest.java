@@ -0,0 +1,118 @@
+package jp.satomaru.java8study;
+
+import static jp.satomaru.java8study.TestJars.createJar;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Set;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ClasspathScannerTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testScan() throws Exception {
+		File first = createJar(new File(folder.getRoot(), "a.jar"), "foo/Bar.class", "foo/baz/Qux.class", "foo/package-info.class", "Top.class");
+		File second = createJar(new File(folder.getRoot(), "b.jar"), "foo/Other.class", "META-INF/MANIFEST.MF");
+		File classes = folder.newFolder("classes");
+		createClass(classes, "foo/baz/Local.class");
+		createClass(classes, "hoge/Fuga.class");
+		createClass(classes, "hoge/readme.txt");
+		File missing = new File(folder.getRoot(), "missing.jar");               // 存在しない要素は無視する
+
+		String classpath = String.join(File.pathSeparator, first.getPath(), second.getPath(), classes.getPath(), missing.getPath());
+		Map<String, Set<String>> actual = new ClasspathScanner().scan(classpath);
+
+		assertThat(actual.keySet(), containsInAnyOrder("", "foo", "foo.baz", "hoge"));
+		assertThat(actual.get(""), contains("Top"));
+		assertThat(actual.get("foo"), containsInAnyOrder("foo.Bar", "foo.Other"));
+		assertThat(actual.get("foo.baz"), containsInAnyOrder("foo.baz.Qux", "foo.baz.Local"));
+		assertThat(actual.get("hoge"), contains("hoge.Fuga"));
+		assertThat(Utils.scanClasspath(classpath), is(actual));
+	}
+
+	@Test
+	public void testScanSkipsMetaInfAndModuleInfo() throws Exception {
+		File jar = createJar(new File(folder.getRoot(), "mr.jar"), "module-info.class", "META-INF/versions/9/module-info.class", "META-INF/versions/11/foo/Bar.class", "foo/Bar.class");
+		File classes = folder.newFolder("classes");
+		createClass(classes, "module-info.class");
+		createClass(classes, "META-INF/versions/9/hoge/Fuga.class");
+		createClass(classes, "hoge/Fuga.class");
+
+		Map<String, Set<String>> actual = new ClasspathScanner().scan(String.join(File.pathSeparator, jar.getPath(), classes.getPath()));
+
+		assertThat(actual.keySet(), containsInAnyOrder("foo", "hoge"));
+		assertThat(actual.get("foo"), contains("foo.Bar"));
+		assertThat(actual.get("hoge"), contains("hoge.Fuga"));
+	}
+
+	@Test
+	public void testScanDirectory() throws Exception {
+		for (int i = 0; i < 20; i++) {
+			createJar(new File(folder.getRoot(), "lib" + i + ".jar"), "p" + (i % 3) + "/C" + i + ".class");
+		}
+
+		Map<String, Set<String>> actual = new ClasspathScanner().scanDirectory(folder.getRoot());
+
+		assertThat(actual.keySet(), containsInAnyOrder("p0", "p1", "p2"));
+		assertThat(actual.get("p0"), hasSize(7));
+		assertThat(actual.get("p1"), hasItems("p1.C1", "p1.C19"));
+	}
+
+	@Test
+	public void testScanMetadata() throws Exception {
+		String exploding = ClassMetadataTest.Exploding.class.getName();
+		String handler = ClassMetadataTest.Handler.class.getName();
+		File jar = new File(folder.getRoot(), "a.jar");
+
+		try (OutputStream out = Files.newOutputStream(jar.toPath()); JarOutputStream stream = new JarOutputStream(out)) {
+			stream.putNextEntry(new JarEntry(exploding.replace('.', '/') + ".class"));
+			stream.write(ClassMetadataTest.classFile(exploding));
+			stream.closeEntry();
+		}
+
+		File classes = folder.newFolder("classes");
+		Path path = classes.toPath().resolve(handler.replace('.', '/') + ".class");
+		Files.createDirectories(path.getParent());
+		Files.write(path, ClassMetadataTest.classFile(handler));
+
+		File shadowed = folder.newFolder("shadowed");                           // 後ろにある要素の同名のクラスは使用しない
+		path = shadowed.toPath().resolve(exploding.replace('.', '/') + ".class");
+		Files.createDirectories(path.getParent());
+		Files.write(path, ClassMetadataTest.classFile(Object.class.getName()));
+
+		String classpath = String.join(File.pathSeparator, jar.getPath(), classes.getPath(), shadowed.getPath());
+		Map<String, ClassMetadata> actual = new ClasspathScanner().scanMetadata(classpath);
+
+		assertThat(actual.keySet(), containsInAnyOrder(exploding, handler, Object.class.getName()));
+		assertThat(actual.get(exploding).getSuperName(), is(Thread.class.getName()));
+		assertThat(actual.get(exploding).isAnnotatedWith(ClassMetadataTest.Handler.class), is(true));
+		assertThat(actual.get(handler).isInterface(), is(true));
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testScanDirectoryNotFound() throws Exception {
+		new ClasspathScanner().scanDirectory(new File(folder.getRoot(), "missing"));
+	}
+
+
+	private void createClass(File directory, String name) throws IOException {
+		Path path = directory.toPath().resolve(name);
+		Files.createDirectories(path.getParent());
+		Files.write(path, new byte[] {(byte) 0xca, (byte) 0xfe});
+	}
+}
@@ -0,0 +1,99 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+public class ConcurrentListMapsTest {
+
+	@Test
+	public void test() throws Exception {
+		Map<String, List<Integer>> actual = ConcurrentListMaps.<String, Integer>begin()
+			.begin("foo").add(11, 12).end()
+			.begin("bar").add(21, null).end()
+		.end(true);
+
+		assertThat(actual.size(), is(2));
+		assertThat(actual, hasEntry("foo", Arrays.asList(11, 12)));
+		assertThat(actual, hasEntry("bar", Arrays.asList(21, null)));
+
+		try {
+			actual.put("baz", new ArrayList<>());
+			fail();
+		} catch (UnsupportedOperationException e) {}
+
+		try {
+			actual.get("bar").add(23);
+			fail();
+		} catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testManyThreads() throws Exception {
+		ConcurrentListMaps<Integer, Integer> tested = ConcurrentListMaps.begin();
+		ExecutorService executor = Executors.newFixedThreadPool(8);
+
+		for (int t = 0; t < 8; t++) {
+			int thread = t;
+
+			executor.execute(() -> {
+				for (int i = 0; i < 10000; i++) {
+					tested.begin(i % 10).add(thread, i);                        // 一度に追加した値は連続する
+				}
+			});
+		}
+
+		executor.shutdown();
+		assertTrue(executor.awaitTermination(1, TimeUnit.MINUTES));
+
+		Map<Integer, List<Integer>> actual = tested.end();
+		assertThat(actual.size(), is(10));
+
+		for (Map.Entry<Integer, List<Integer>> entry : actual.entrySet()) {
+			List<Integer> values = entry.getValue();
+			assertThat(values.size(), is(8 * 1000 * 2));
+
+			for (int i = 0; i < values.size(); i += 2) {
+				assertThat(values.get(i + 1) % 10, is(entry.getKey()));
+			}
+		}
+	}
+
+	@Test
+	public void testEndWhileAdding() throws Exception {
+		ConcurrentListMaps<Integer, Integer> tested = ConcurrentListMaps.begin();
+
+		Thread writer = new Thread(() -> {
+			for (int i = 0; i < 100000; i++) {
+				tested.begin(i % 2).add(i);
+			}
+		});
+
+		writer.start();
+
+		while (writer.isAlive()) {
+			for (Map.Entry<Integer, List<Integer>> entry : tested.end().entrySet()) {
+				List<Integer> values = entry.getValue();
+
+				for (int i = 0; i < values.size(); i++) {
+					assertThat(values.get(i), is(i * 2 + entry.getKey()));      // 各リストは、ある時点までの値を欠けずに含む
+				}
+			}
+		}
+
+		writer.join();
+
+		Map<Integer, List<Integer>> actual = tested.end();                      // 追加が終わった後は、全ての値を含む
+		assertThat(actual.get(0), hasSize(50000));
+		assertThat(actual.get(1), hasSize(50000));
+	}
+}
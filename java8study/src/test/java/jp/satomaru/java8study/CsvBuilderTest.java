@@ -3,16 +3,29 @@ package jp.satomaru.java8study;
 import static org.hamcrest.Matchers.*;
 import static org.junit.Assert.*;
 
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
 import java.time.LocalDate;
 import java.time.format.DateTimeFormatter;
 import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import lombok.AllArgsConstructor;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
 
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
 public class CsvBuilderTest {
 
@@ -29,6 +42,9 @@ public class CsvBuilderTest {
 	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
 	private static final DateTimeFormatter DATE_TIME_FORMATTER = DateTimeFormatter.ofPattern("\"yyyy年MM月dd日\"");
 
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
 	private CsvBuilder<MyEntity> tested;
 
 	@Before
@@ -49,4 +65,161 @@ public class CsvBuilderTest {
 				"2,\"bar\",\"2016年02月15日\",false" + LINE_SEPARATOR +
 				"3,\"baz\",,false"));
 	}
+
+	@Test
+	public void testWriteTo() throws Exception {
+		List<MyEntity> entities = Arrays.asList(
+				new MyEntity(1, "foo", LocalDate.of(2015, 12, 1), true),
+				new MyEntity(2, "bar", LocalDate.of(2016, 2, 15), false),
+				new MyEntity(3, "baz", null, false));
+
+		tested.setFlushThreshold(16);
+
+		StringWriter writer = new StringWriter();
+		tested.writeTo(writer, entities);
+		assertThat(writer.toString(), is(tested.build(entities)));
+
+		StringBuilder builder = new StringBuilder();
+		tested.writeTo(builder, entities.stream());
+		assertThat(builder.toString(), is(tested.build(entities)));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetChunkSizeZero() {
+		tested.setChunkSize(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetFlushThresholdNegative() {
+		tested.setFlushThreshold(-1);
+	}
+
+	@Test
+	public void testBuildParallel() throws Exception {
+		List<MyEntity> entities = IntStream.range(0, 1000)
+				.mapToObj(i -> new MyEntity(i, "name" + i, (i % 3 == 0) ? null : LocalDate.of(2016, 1, 1).plusDays(i), i % 2 == 0))
+				.collect(Collectors.toList());
+
+		tested.setChunkSize(7);
+		String expected = tested.build(entities);
+
+		assertThat(tested.buildParallel(entities), is(expected));
+
+		ForkJoinPool pool = new ForkJoinPool(4);
+
+		try {
+			assertThat(tested.buildParallel(entities, pool), is(expected));
+			assertThat(tested.buildParallel(entities.subList(0, 0), pool), is(""));
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void testFormatterOfSuperType() throws Exception {
+		tested.addFormatter(Number.class, number -> "#" + number);
+		tested.addFormatter(CharSequence.class, string -> "[" + string + "]");
+
+		String expected = "#1,[foo],\"2015年12月01日\",true";
+		List<MyEntity> entities = Arrays.asList(new MyEntity(1, "foo", LocalDate.of(2015, 12, 1), true));
+
+		assertThat(tested.build(entities), is(expected));
+
+		tested.columns(Integer.class, String.class, LocalDate.class, Boolean.class);
+		assertThat(tested.build(entities), is(expected));
+	}
+
+	@Test
+	public void testQuoting() throws Exception {
+		List<MyEntity> entities = Arrays.asList(
+				new MyEntity(1, "foo", null, true),
+				new MyEntity(2, "b\"a\"r", null, false),
+				new MyEntity(3, "b,az", null, false),
+				new MyEntity(4, "q\nux", null, false));
+
+		assertThat(tested.build(entities), is(
+				"1,\"foo\",,true" + LINE_SEPARATOR +
+				"2,\"b\"\"a\"\"r\",,false" + LINE_SEPARATOR +
+				"3,\"b,az\",,false" + LINE_SEPARATOR +
+				"4,\"q\nux\",,false"));
+
+		tested.setQuoting(CsvBuilder.Quoting.MINIMAL);
+
+		assertThat(tested.build(entities), is(
+				"1,foo,,true" + LINE_SEPARATOR +
+				"2,\"b\"\"a\"\"r\",,false" + LINE_SEPARATOR +
+				"3,\"b,az\",,false" + LINE_SEPARATOR +
+				"4,\"q\nux\",,false"));
+	}
+
+	@Test
+	public void testEncodeTo() throws Exception {
+		List<MyEntity> entities = IntStream.range(0, 20000)
+				.mapToObj(i -> new MyEntity(i, "名前\uD83C\uDF63é" + i, LocalDate.of(2016, 1, 1).plusDays(i % 365), i % 2 == 0))
+				.collect(Collectors.toList());
+
+		byte[] expected = tested.build(entities).getBytes(StandardCharsets.UTF_8);
+
+		Path file = folder.newFile().toPath();
+
+		try (FileChannel channel = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			tested.encodeTo(channel, entities);
+		}
+
+		assertThat(Files.readAllBytes(file), is(expected));
+
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		tested.encodeTo(out, entities);
+		assertThat(out.toByteArray(), is(expected));
+	}
+
+	@Test
+	public void testSchema() throws Exception {
+		List<MyEntity> entities = Arrays.asList(
+				new MyEntity(1, "foo", LocalDate.of(2015, 12, 1), true),
+				new MyEntity(2, "b\"ar", LocalDate.of(2016, 2, 15), false),
+				new MyEntity(3, "baz", null, false));
+
+		CsvBuilder<MyEntity> schemaBuilder = new CsvBuilder<>(CsvSchema.<MyEntity>builder()
+				.intColumn(MyEntity::getId)
+				.objectColumn(MyEntity::getName)
+				.objectColumn(MyEntity::getSince)
+				.booleanColumn(MyEntity::isBool)
+				.build());
+
+		schemaBuilder.addFormatter(LocalDate.class, date -> date.format(DATE_TIME_FORMATTER));
+		assertThat(schemaBuilder.build(entities), is(tested.build(entities)));
+
+		CsvBuilder<MyEntity> formatted = new CsvBuilder<>(CsvSchema.<MyEntity>builder()
+				.longColumn(entity -> entity.getId() * 10000000000L)
+				.doubleColumn(entity -> entity.getId() / 2.0)
+				.objectColumn(MyEntity::getSince, date -> date.format(DateTimeFormatter.ISO_LOCAL_DATE))
+				.build());
+
+		assertThat(formatted.build(entities), is(
+				"10000000000,0.5,2015-12-01" + LINE_SEPARATOR +
+				"20000000000,1.0,2016-02-15" + LINE_SEPARATOR +
+				"30000000000,1.5,"));
+	}
+
+	@Test
+	public void testHeader() throws Exception {
+		List<MyEntity> entities = Arrays.asList(
+				new MyEntity(1, "foo", LocalDate.of(2015, 12, 1), true),
+				new MyEntity(2, "bar", null, false));
+
+		tested.header("id", "name", "since", "bool");
+
+		String expected =
+				"\"id\",\"name\",\"since\",\"bool\"" + LINE_SEPARATOR +
+				"1,\"foo\",\"2015年12月01日\",true" + LINE_SEPARATOR +
+				"2,\"bar\",,false";
+
+		assertThat(tested.build(entities), is(expected));
+		assertThat(tested.buildParallel(entities), is(expected));
+
+		StringWriter writer = new StringWriter();
+		tested.writeTo(writer, entities);
+		assertThat(writer.toString(), is(expected));
+	}
 }
@@ -0,0 +1,125 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.math.BigDecimal;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class CsvParserTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvParser tested;
+
+	@Before
+	public void setUp() {
+		tested = new CsvParser();
+		tested.setLineSeparator("\n");
+	}
+
+	@Test
+	public void testParse() throws Exception {
+		List<List<String>> actual = new ArrayList<>();
+
+		tested.parse(new StringReader("1,\"foo\",,true\n2,\"b\"\"a,r\",\"\",false\n3,\"q\nux\",x"), record -> {
+			List<String> values = new ArrayList<>();
+
+			for (int i = 0; i < record.size(); i++) {
+				values.add(record.getString(i));
+			}
+
+			actual.add(values);
+		});
+
+		assertThat(actual, contains(
+				Arrays.asList("1", "foo", null, "true"),
+				Arrays.asList("2", "b\"a,r", "", "false"),
+				Arrays.asList("3", "q\nux", "x")));
+	}
+
+	@Test
+	public void testParseWithSmallBuffer() throws Exception {
+		tested.setBufferSize(4);
+
+		List<String> actual = new ArrayList<>();
+		tested.parse(new StringReader("\"foo\"\"bar\",\"baz\"\nqux,quux\n"), record -> actual.add(record.toString()));
+
+		assertThat(actual, contains("[foo\"bar, baz]", "[qux, quux]"));
+	}
+
+	@Test
+	public void testParseTypedColumns() throws Exception {
+		tested.columns(Integer.class, String.class, LocalDate.class, BigDecimal.class);
+
+		List<Object[]> actual = new ArrayList<>();
+		tested.parse(new StringReader("1,\"foo\",2016/02/15,1234.5\n2,,,"), record -> actual.add(record.getValues()));
+
+		assertThat(actual.get(0), is(new Object[] {1, "foo", LocalDate.of(2016, 2, 15), new BigDecimal("1234.5")}));
+		assertThat(actual.get(1), is(new Object[] {2, null, null, null}));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testParseUnterminatedQuotation() throws Exception {
+		tested.parse(new StringReader("1,\"foo"), record -> {});
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetBufferSizeZero() {
+		tested.setBufferSize(0);
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testSetChunkSizeNegative() {
+		tested.setChunkSize(-1);
+	}
+
+	@Test
+	public void testParseFileBuiltByCsvBuilder() throws Exception {
+		List<Integer> ids = IntStream.range(0, 2000).boxed().collect(Collectors.toList());
+
+		CsvBuilder<Integer> builder = new CsvBuilder<>(id -> new Object[] {id, "name,\"" + id + "\"\n", null});
+		builder.setLineSeparator("\n");
+
+		Path file = folder.newFile().toPath();
+		Files.write(file, builder.build(ids).getBytes(StandardCharsets.UTF_8));
+
+		List<Integer> sequential = new ArrayList<>();
+
+		tested.parse(file, record -> {
+			assertThat(record.getString(1), is("name,\"" + record.getString(0) + "\"\n"));
+			sequential.add(record.get(0, Integer.class));
+		});
+
+		assertThat(sequential, is(ids));
+
+		ConcurrentLinkedQueue<Integer> parallel = new ConcurrentLinkedQueue<>();
+		ForkJoinPool pool = new ForkJoinPool(4);
+		tested.setChunkSize(1000);
+
+		try {
+			tested.parseParallel(file, record -> parallel.add(record.get(0, Integer.class)), pool);
+		} finally {
+			pool.shutdown();
+		}
+
+		assertThat(parallel.stream().sorted().collect(Collectors.toList()), is(ids));
+	}
+}
@@ -0,0 +1,130 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class CsvSinkTest {
+
+	private CsvBuilder<Integer> builder;
+
+	@Before
+	public void setUp() {
+		builder = new CsvBuilder<>(CsvSchema.<Integer>builder()
+				.intColumn(Integer::intValue)
+				.objectColumn(id -> "name" + id)
+				.build());
+
+		builder.header("id", "name");
+		builder.setLineSeparator("\n");
+	}
+
+	@Test
+	public void testAcceptFromManyThreads() throws Exception {
+		StringWriter writer = new StringWriter();
+		CsvSink<Integer> tested = new CsvSink<>(builder, writer, 64, CsvSink.Overflow.BLOCK);
+
+		List<Thread> producers = new ArrayList<>();
+
+		for (int t = 0; t < 4; t++) {
+			int base = t * 5000;
+			producers.add(new Thread(() -> IntStream.range(base, base + 5000).boxed().forEach(tested)));
+		}
+
+		producers.forEach(Thread::start);
+
+		for (Thread producer : producers) {
+			producer.join();
+		}
+
+		tested.close();
+
+		List<String> lines = Arrays.asList(writer.toString().split("\n"));
+		assertThat(lines.get(0), is("\"id\",\"name\""));
+		assertThat(lines.subList(1, lines.size()).stream().sorted().collect(Collectors.toList()),
+				is(IntStream.range(0, 20000).mapToObj(id -> id + ",\"name" + id + "\"").sorted().collect(Collectors.toList())));
+
+		assertThat(tested.getAcceptedRows(), is(20000L));
+		assertThat(tested.getQueuedRows(), is(0L));
+		assertThat(tested.getFlushedBatches(), is(greaterThanOrEqualTo(20000L / 64)));
+	}
+
+	@Test
+	public void testReject() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		CountDownLatch writing = new CountDownLatch(1);
+
+		StringWriter writer = new StringWriter() {
+			@Override
+			public void write(char[] chars, int off, int len) {
+				writing.countDown();
+
+				try {
+					release.await();                                            // 書き出しが追いつかない状態を再現
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+
+				super.write(chars, off, len);
+			}
+		};
+
+		CsvSink<Integer> tested = new CsvSink<>(builder, writer, 2, CsvSink.Overflow.REJECT);
+		tested.accept(1);
+		tested.accept(2);                                                       // 書き出すスレッドに渡される
+		writing.await();
+		tested.accept(3);
+		tested.accept(4);                                                       // 両方のバッファーが埋まる
+
+		try {
+			tested.accept(5);
+			fail();
+		} catch (RejectedExecutionException e) {
+			assertThat(tested.getRejectedRows(), is(1L));
+		}
+
+		assertThat(tested.getQueuedRows(), is(4L));
+
+		release.countDown();
+		tested.close();
+
+		assertThat(writer.toString(), is("\"id\",\"name\"\n1,\"name1\"\n2,\"name2\"\n3,\"name3\"\n4,\"name4\""));
+		assertThat(tested.getFlushedBatches(), is(2L));
+	}
+
+	@Test(expected = IOException.class)
+	public void testFailure() throws Exception {
+		Appendable broken = new Appendable() {
+			@Override
+			public Appendable append(CharSequence csq) throws IOException {
+				throw new IOException("broken");
+			}
+
+			@Override
+			public Appendable append(CharSequence csq, int start, int end) throws IOException {
+				throw new IOException("broken");
+			}
+
+			@Override
+			public Appendable append(char c) throws IOException {
+				throw new IOException("broken");
+			}
+		};
+
+		CsvSink<Integer> tested = new CsvSink<>(builder, broken, 1, CsvSink.Overflow.BLOCK);
+		tested.accept(1);
+		tested.close();
+	}
+}
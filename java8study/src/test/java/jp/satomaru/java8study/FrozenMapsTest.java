@@ -0,0 +1,84 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.Test;
+
+public class FrozenMapsTest {
+
+	@Test
+	public void testFreezeListMap() throws Exception {
+		Map<Integer, List<String>> source = new HashMap<>();
+
+		for (int i = 0; i < 10000; i++) {
+			List<String> list = new ArrayList<>();
+
+			for (int j = 0; j < i % 5; j++) {
+				list.add(i + "-" + j);
+			}
+
+			source.put(i * 64, list);                                           // 下位ビットが揃ったキー
+		}
+
+		source.put(null, Arrays.asList("null", null));
+
+		Map<Integer, List<String>> actual = FrozenMaps.freezeListMap(source);
+
+		assertThat(actual, is(source));
+		assertThat(source, is(actual));
+		assertThat(actual.hashCode(), is(source.hashCode()));
+		assertThat(actual.get(64 * 9999), is(Arrays.asList("9999-0", "9999-1", "9999-2", "9999-3")));
+		assertThat(actual.get(null), is(Arrays.asList("null", null)));
+		assertThat(actual.get(1), is(nullValue()));
+		assertThat(actual.containsKey(0), is(true));
+		assertThat(actual.containsKey(63), is(false));
+
+		try {
+			actual.get(64).set(0, "x");
+			fail();
+		} catch (UnsupportedOperationException e) {}
+
+		try {
+			actual.remove(0);
+			fail();
+		} catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testFreezeMapOfMaps() throws Exception {
+		Map<String, Map<Integer, String>> source = new LinkedHashMap<>();
+
+		for (int i = 0; i < 1000; i++) {
+			Map<Integer, String> map = new LinkedHashMap<>();
+
+			for (int j = 0; j < i % 7; j++) {
+				map.put(j, i + "-" + j);                                        // 子マップのキーは全ての親で共通
+			}
+
+			source.put("key" + i, map);
+		}
+
+		Map<String, Map<Integer, String>> actual = FrozenMaps.freezeMapOfMaps(source);
+
+		assertThat(actual, is(source));
+		assertThat(new ArrayList<>(actual.keySet()), is(new ArrayList<>(source.keySet())));
+		assertThat(actual.get("key6").get(5), is("6-5"));
+		assertThat(actual.get("key6").get(6), is(nullValue()));
+		assertThat(actual.get("key6").containsKey(0), is(true));
+		assertThat(actual.get("key7").containsKey(0), is(false));
+		assertThat(actual.get("key7").size(), is(0));
+
+		try {
+			actual.get("key6").put(9, "x");
+			fail();
+		} catch (UnsupportedOperationException e) {}
+	}
+}
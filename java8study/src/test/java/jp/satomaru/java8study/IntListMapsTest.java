@@ -0,0 +1,76 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Test;
+
+public class IntListMapsTest {
+
+	@Test
+	public void test() throws Exception {
+		IntListMaps actual = IntListMaps.begin()
+			.begin(1).add(11, 12).end()
+			.begin(-2).add(21).end()
+			.begin(1).add(13).end()
+			.begin(3).end();
+
+		assertThat(actual.size(), is(3));
+		assertThat(actual.get(1), is(new int[] {11, 12, 13}));
+		assertThat(actual.get(-2), is(new int[] {21}));
+		assertThat(actual.get(3), is(new int[0]));
+		assertThat(actual.get(4), is(nullValue()));
+		assertThat(actual.containsKey(3), is(true));
+		assertThat(actual.containsKey(4), is(false));
+
+		List<Integer> keys = new ArrayList<>();
+		List<Integer> sums = new ArrayList<>();
+
+		actual.forEach((key, values) -> {
+			keys.add(key);
+			int sum = 0;
+
+			while (values.hasRemaining()) {
+				sum += values.get();
+			}
+
+			sums.add(sum);
+		});
+
+		assertThat(keys, contains(1, -2, 3));                                   // 追加した順番
+		assertThat(sums, contains(36, 21, 0));
+	}
+
+	@Test
+	public void testManyKeys() throws Exception {
+		IntListMaps actual = IntListMaps.begin();
+		Map<Integer, List<Integer>> expected = new HashMap<>();
+
+		for (int i = 0; i < 100000; i++) {
+			actual.begin(i % 30000 * 64).add(i);                                // 下位ビットが揃ったキー
+			expected.computeIfAbsent(i % 30000 * 64, key -> new ArrayList<>()).add(i);
+		}
+
+		assertThat(actual.size(), is(30000));
+		assertThat(actual.toMap(), is(expected));
+		assertThat(actual.toMap(), is(IntStream.range(0, 100000).boxed()
+				.collect(Collectors.groupingBy(i -> i % 30000 * 64))));
+
+		actual.compact();                                                       // 詰め直しても内容は変わらない
+		assertThat(actual.toMap(), is(expected));
+		assertThat(actual.get(64), is(new int[] {1, 30001, 60001, 90001}));
+
+		actual.begin(64).add(-1).end().begin(7).add(-2);                        // 詰め直した後も追加できる
+		expected.get(64).add(-1);
+		expected.put(7, new ArrayList<>());
+		expected.get(7).add(-2);
+		assertThat(actual.toMap(), is(expected));
+	}
+}
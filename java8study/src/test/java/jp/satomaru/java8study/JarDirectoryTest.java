@@ -0,0 +1,126 @@
+package jp.satomaru.java8study;
+
+import static jp.satomaru.java8study.TestJars.createJar;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+import java.util.List;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+import java.util.jar.JarOutputStream;
+import java.util.stream.Collectors;
+import java.util.zip.CRC32;
+import java.util.zip.ZipException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarDirectoryTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testClassNames() throws Exception {
+		File jar = createJar(folder.newFile(), new byte[0], null, "foo/Bar.class", "foo/baz/Qux.class", "foo/package-info.class", "foo/readme.txt", "foobar/X.class", "Top.class");
+
+		assertThat(JarDirectory.classNames(jar, ""), contains("foo.Bar", "foo.baz.Qux", "foobar.X", "Top"));
+		assertThat(JarDirectory.classNames(jar, "foo"), contains("foo.Bar", "foo.baz.Qux"));
+		assertThat(JarDirectory.classNames(jar, "foo.baz"), contains("foo.baz.Qux"));
+		assertThat(JarDirectory.classNames(jar, "fo"), is(empty()));
+	}
+
+	@Test
+	public void testClassNamesSkipsMetaInfAndModuleInfo() throws Exception {
+		File jar = createJar(folder.newFile(), new byte[0], null, "module-info.class", "META-INF/versions/9/module-info.class", "META-INF/versions/9/foo/Bar.class", "foo/Bar.class");
+
+		assertThat(JarDirectory.classNames(jar, ""), contains("foo.Bar"));
+		assertThat(JarDirectory.classNames(jar, "foo"), contains("foo.Bar"));
+	}
+
+	@Test
+	public void testClassNamesWithCommentAndStub() throws Exception {
+		byte[] stub = "#!/bin/sh\nexec java -jar \"$0\" \"$@\"\n".getBytes(StandardCharsets.US_ASCII);
+		File jar = createJar(folder.newFile(), stub, "comment", "foo/Bar.class");  // 先頭に付加されたデータと、末尾のコメント
+
+		assertThat(JarDirectory.classNames(jar, "foo"), contains("foo.Bar"));
+	}
+
+	@Test
+	public void testClassNamesSameAsJarFile() throws Exception {
+		File junit = new File(Test.class.getProtectionDomain().getCodeSource().getLocation().toURI());
+
+		try (JarFile jar = new JarFile(junit)) {
+			List<String> expected = Collections.list(jar.entries()).stream()
+					.map(JarEntry::getName)
+					.filter(name -> name.startsWith("org/junit/") && name.endsWith(".class") && !name.endsWith("package-info.class"))
+					.map(name -> name.substring(0, name.length() - ".class".length()).replace('/', '.'))
+					.collect(Collectors.toList());
+
+			assertThat(expected, is(not(empty())));
+			assertThat(JarDirectory.classNames(junit, "org.junit"), is(expected));
+		}
+	}
+
+	@Test
+	public void testMetadata() throws Exception {
+		String exploding = ClassMetadataTest.Exploding.class.getName();
+		String handler = ClassMetadataTest.Handler.class.getName();
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (JarOutputStream jar = new JarOutputStream(bytes)) {
+			jar.putNextEntry(new JarEntry(exploding.replace('.', '/') + ".class"));    // 圧縮する
+			jar.write(ClassMetadataTest.classFile(exploding));
+			jar.closeEntry();
+
+			byte[] classFile = ClassMetadataTest.classFile(handler);
+			CRC32 crc = new CRC32();
+			crc.update(classFile);
+			JarEntry stored = new JarEntry(handler.replace('.', '/') + ".class");  // 圧縮しない
+			stored.setMethod(JarEntry.STORED);
+			stored.setSize(classFile.length);
+			stored.setCrc(crc.getValue());
+			jar.putNextEntry(stored);
+			jar.write(classFile);
+			jar.closeEntry();
+
+			jar.putNextEntry(new JarEntry("other/Other.class"));
+			jar.closeEntry();
+		}
+
+		File file = folder.newFile();
+		Files.write(file.toPath(), bytes.toByteArray());
+		List<ClassMetadata> actual = JarDirectory.metadata(file, "jp.satomaru");
+
+		assertThat(actual, hasSize(2));
+		assertThat(actual.get(0).getName(), is(exploding));
+		assertThat(actual.get(0).getAnnotations(), hasItem(handler));
+		assertThat(actual.get(1).getName(), is(handler));
+		assertThat(actual.get(1).isInterface(), is(true));
+	}
+
+	@Test(expected = ZipException.class)
+	public void testMetadataInvalidClassFile() throws Exception {
+		File jar = createJar(folder.newFile(), new byte[0], null, "foo/Bar.class");  // 内容は0xcafeのみ
+		JarDirectory.metadata(jar, "");
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testClassNamesNotFound() throws Exception {
+		JarDirectory.classNames(new File(folder.getRoot(), "missing.jar"), "");
+	}
+
+	@Test(expected = ZipException.class)
+	public void testClassNamesNotZip() throws Exception {
+		File file = folder.newFile("broken.jar");
+		Files.write(file.toPath(), new byte[100]);
+		JarDirectory.classNames(file, "");
+	}
+}
@@ -0,0 +1,115 @@
+package jp.satomaru.java8study;
+
+import static jp.satomaru.java8study.TestJars.createJar;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.zip.ZipException;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarIndexCacheTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testSearch() throws Exception {
+		File jar = createJar(new File(folder.getRoot(), "a.jar"), "foo/Bar.class", "foo/baz/Qux.class", "foo/baz/Qux$1.class", "foo/package-info.class", "foo/readme.txt", "foobar/X.class");
+		JarIndexCache tested = new JarIndexCache();
+
+		assertThat(tested.search(jar, "foo"), containsInAnyOrder("foo.Bar", "foo.baz.Qux", "foo.baz.Qux$1"));
+		assertThat(tested.search(jar, "foo.baz"), containsInAnyOrder("foo.baz.Qux", "foo.baz.Qux$1"));
+		assertThat(tested.search(jar, "fo"), is(empty()));
+		assertThat(tested.search(jar, "foo"), is(Utils.searchClassInJar(jar, "foo")));
+		assertThat(Utils.searchClassInJar(jar, "foo").add("foo.Added"), is(true));  // 変更できるセットを返却する
+		assertThat(Utils.searchClassInJar(jar, "foo"), not(hasItem("foo.Added")));
+
+		createJar(new File(folder.getRoot(), "a.jar"), "foo/Other.class");      // 大きさが変わると読み直す
+		assertThat(tested.search(jar, "foo"), contains("foo.Other"));
+	}
+
+	@Test
+	public void testMaxEntries() throws Exception {
+		File first = createJar(new File(folder.getRoot(), "a.jar"), "foo/Bar.class");
+		File second = createJar(new File(folder.getRoot(), "b.jar"), "foo/Other.class");
+		JarIndexCache tested = new JarIndexCache(1);
+
+		assertThat(Utils.searchClassInJar(first, "foo", tested), contains("foo.Bar"));
+		assertThat(Utils.searchClassInJar(second, "foo", tested), contains("foo.Other"));
+
+		long lastModified = first.lastModified();
+		Files.write(first.toPath(), new byte[(int) first.length()]);
+		assertTrue(first.setLastModified(lastModified));
+
+		try {
+			tested.search(first, "foo");                                        // 上限を超えて破棄された索引は、JARファイルを読み直す
+			fail();
+		} catch (ZipException e) {
+			// JARファイルの内容は壊してある
+		}
+
+		assertThat(tested.search(second, "foo"), contains("foo.Other"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void testMaxEntriesZero() {
+		new JarIndexCache(0);
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testSearchNotFound() throws Exception {
+		new JarIndexCache().search(new File(folder.getRoot(), "missing.jar"), "foo");
+	}
+
+	@Test
+	public void testSave() throws Exception {
+		File jar = createJar(new File(folder.getRoot(), "a.jar"), "foo/Bar.class", "foo/baz/Qux.class");
+		Path cacheFile = folder.getRoot().toPath().resolve("index.bin");
+
+		JarIndexCache first = new JarIndexCache(cacheFile);
+		assertThat(first.search(jar, "foo.baz"), contains("foo.baz.Qux"));
+		first.save();
+
+		long lastModified = jar.lastModified();
+		byte[] garbage = new byte[(int) jar.length()];
+		Files.write(jar.toPath(), garbage);                                     // 大きさと最終更新日時が同じなら、JARファイルは読まない
+		assertTrue(jar.setLastModified(lastModified));
+
+		JarIndexCache second = new JarIndexCache(cacheFile);
+		assertThat(second.search(jar, "foo"), containsInAnyOrder("foo.Bar", "foo.baz.Qux"));
+
+		Files.write(cacheFile, new byte[] {1, 2, 3});                           // 壊れた索引ファイルは無視する
+		new JarIndexCache(cacheFile);
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+		try (DataOutputStream out = new DataOutputStream(bytes)) {
+			out.writeInt(0x4a494458);
+			out.writeInt(2);                                                    // 現在の形式の版
+			out.writeInt(1);
+			out.writeUTF(jar.getAbsolutePath());
+			out.writeLong(jar.length());
+			out.writeLong(jar.lastModified());
+			out.writeInt(-1);                                                   // クラス数が負
+		}
+
+		Files.write(cacheFile, bytes.toByteArray());
+		JarIndexCache third = new JarIndexCache(cacheFile);
+
+		try {
+			third.search(jar, "foo");                                           // 索引を読み込んでいないため、JARファイルを読む
+			fail();
+		} catch (ZipException e) {
+			// JARファイルの内容は壊してある
+		}
+	}
+}
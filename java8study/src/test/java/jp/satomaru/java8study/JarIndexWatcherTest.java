@@ -0,0 +1,108 @@
+package jp.satomaru.java8study;
+
+import static jp.satomaru.java8study.TestJars.createJar;
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.FileNotFoundException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.BooleanSupplier;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class JarIndexWatcherTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testWatch() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		createJar(directory.resolve("a.jar").toFile(), "foo/Bar.class", "foo/baz/Qux.class");
+		Files.write(directory.resolve("readme.txt"), new byte[] {1});
+
+		try (JarIndexWatcher tested = JarIndexWatcher.watch(directory)) {
+			Map<String, Set<String>> first = tested.packages();
+			assertThat(first.keySet(), containsInAnyOrder("foo", "foo.baz"));
+			assertThat(tested.classNames("foo"), contains("foo.Bar"));
+			assertThat(tested.lastFailure().isPresent(), is(false));
+
+			long version = tested.version();
+			createJar(directory.resolve("b.jar").toFile(), "foo/Other.class", "hoge/Fuga.class");
+			await(() -> tested.version() > version);
+			assertThat(tested.classNames("foo"), containsInAnyOrder("foo.Bar", "foo.Other"));
+			assertThat(first.keySet(), containsInAnyOrder("foo", "foo.baz"));     // 取得済みの索引は変わらない
+
+			long replaced = tested.version();
+			Path temporary = folder.newFile("a.tmp").toPath();
+			createJar(temporary.toFile(), "foo/Replaced.class");
+			Files.move(temporary, directory.resolve("a.jar"), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			await(() -> tested.version() > replaced);
+			assertThat(tested.classNames("foo"), containsInAnyOrder("foo.Replaced", "foo.Other"));
+			assertThat(tested.packages(), not(hasKey("foo.baz")));
+
+			long deleted = tested.version();
+			Files.delete(directory.resolve("b.jar"));
+			await(() -> tested.version() > deleted);
+			assertThat(tested.packages().keySet(), contains("foo"));
+			assertThat(tested.classNames("hoge"), is(empty()));
+		}
+	}
+
+	@Test
+	public void testWatchSameSizeRewrite() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		Path jar = directory.resolve("a.jar");
+		createJar(jar.toFile(), "foo/Aaa.class");
+		long lastModified = Files.getLastModifiedTime(jar).toMillis();
+
+		try (JarIndexWatcher tested = JarIndexWatcher.watch(directory)) {
+			long version = tested.version();
+			createJar(jar.toFile(), "foo/Bbb.class");                           // 同じ大きさで、最終更新日時も戻す
+			assertTrue(jar.toFile().setLastModified(lastModified));
+			await(() -> tested.version() > version);
+			assertThat(tested.classNames("foo"), contains("foo.Bbb"));
+		}
+	}
+
+	@Test
+	public void testWatchSurvivesRuntimeException() throws Exception {
+		Path directory = folder.getRoot().toPath();
+
+		try (JarIndexWatcher tested = JarIndexWatcher.watch(directory)) {
+			ByteBuffer bogus = ByteBuffer.allocate(42).order(ByteOrder.LITTLE_ENDIAN);
+			bogus.putInt(0x07064b50).putInt(0).putLong(-1).putInt(1);           // 負のオフセットを指すZIP64ロケーター
+			bogus.putInt(0x06054b50).putShort((short) 0).putShort((short) 0);
+			bogus.putShort((short) 0xffff).putShort((short) 0xffff).putInt(0).putInt(0).putShort((short) 0);
+			Files.write(directory.resolve("bogus.jar"), bogus.array());
+			await(() -> tested.lastFailure().isPresent());
+			assertThat(tested.lastFailure().get().getMessage(), containsString("bogus.jar"));   // 失敗を記録する
+
+			createJar(directory.resolve("good.jar").toFile(), "foo/Bar.class");  // 監視は続いている
+			await(() -> !tested.classNames("foo").isEmpty());
+			assertThat(tested.packages().keySet(), contains("foo"));
+		}
+	}
+
+	@Test(expected = FileNotFoundException.class)
+	public void testWatchNotFound() throws Exception {
+		JarIndexWatcher.watch(folder.getRoot().toPath().resolve("missing"));
+	}
+
+	private void await(BooleanSupplier condition) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 30_000;
+
+		while (!condition.getAsBoolean()) {
+			assertThat("timed out", System.currentTimeMillis(), is(lessThan(deadline)));
+			Thread.sleep(20);
+		}
+	}
+}
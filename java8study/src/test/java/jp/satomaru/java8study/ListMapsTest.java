@@ -7,6 +7,9 @@ import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -33,4 +36,32 @@ public class ListMapsTest {
 			fail();
 		} catch (UnsupportedOperationException e) {}
 	}
+
+	@Test
+	public void testEndWithComparator() throws Exception {
+		Map<String, List<Integer>> actual = ListMaps.<String, Integer>begin(() -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER), ArrayList::new)
+			.begin("foo").add(11).end()
+			.begin("Bar").add(21).end()
+		.end(true);
+
+		assertThat(actual.get("FOO"), is(Arrays.asList(11)));                    // 比較器による検索が保たれる
+		assertThat(actual.keySet(), contains("Bar", "foo"));                    // 並び順が保たれる
+
+		try {
+			actual.get("bar").add(22);
+			fail();
+		} catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testCollector() throws Exception {
+		List<Integer> values = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+
+		Map<Integer, List<Integer>> expected = values.stream().collect(Collectors.groupingBy(value -> value % 1000));
+
+		assertThat(values.stream().collect(ListMaps.collector(value -> value % 1000)), is(expected));
+		assertThat(values.parallelStream().collect(ListMaps.collector(value -> value % 1000, 1000, 100)), is(expected));
+		assertThat(values.parallelStream().collect(ListMaps.collector(value -> value % 7 == 0 ? -1 : value)),
+				is(values.stream().collect(Collectors.groupingBy(value -> value % 7 == 0 ? -1 : value))));
+	}
 }
@@ -0,0 +1,48 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.LongStream;
+
+import org.junit.Test;
+
+public class LongListMapsTest {
+
+	@Test
+	public void test() throws Exception {
+		LongListMaps actual = LongListMaps.begin()
+			.begin(1L << 40).add(11L, 12L).end()
+			.begin(1L).add(21L).end()
+			.begin(1L << 40).add(13L).end();
+
+		assertThat(actual.size(), is(2));
+		assertThat(actual.get(1L << 40), is(new long[] {11L, 12L, 13L}));
+		assertThat(actual.get(1L), is(new long[] {21L}));
+		assertThat(actual.get(0L), is(nullValue()));
+
+		List<Long> keys = new ArrayList<>();
+		actual.forEach((key, values) -> keys.add(key + values.limit()));
+		assertThat(keys, contains((1L << 40) + 3, 2L));
+
+		keys.clear();
+		actual.compact().forEach((key, values) -> keys.add(key + values.limit() + values.get(0)));
+		assertThat(keys, contains((1L << 40) + 3 + 11, 2L + 21));
+		assertThat(actual.get(1L), is(new long[] {21L}));
+	}
+
+	@Test
+	public void testManyKeys() throws Exception {
+		LongListMaps actual = LongListMaps.begin(1000, 3);
+
+		for (long i = 0; i < 100000; i++) {
+			actual.begin((i % 30000) << 32).add(i);                             // 上位ビットのみが異なるキー
+		}
+
+		assertThat(actual.toMap(), is(LongStream.range(0, 100000).boxed()
+				.collect(Collectors.groupingBy(i -> (i % 30000) << 32))));
+	}
+}
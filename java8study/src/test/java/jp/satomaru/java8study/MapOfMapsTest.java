@@ -5,7 +5,11 @@ import static org.junit.Assert.*;
 
 import java.math.BigDecimal;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.Test;
 
@@ -48,6 +52,63 @@ public class MapOfMapsTest {
 		} catch (UnsupportedOperationException e) {}
 	}
 
+	@Test
+	public void testEndWithComparator() throws Exception {
+		Map<String, Map<String, BigDecimal>> actual = MapOfMaps.<String, String, BigDecimal>begin(
+				() -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER), () -> new TreeMap<>(String.CASE_INSENSITIVE_ORDER))
+			.begin("James")
+				.add("Jun", BigDecimal.valueOf(100000))
+			.end()
+			.begin("Bob")
+				.add("Feb", BigDecimal.valueOf(350000))
+			.end()
+		.end(true);
+
+		assertThat(actual.get("JAMES").get("jun"), is(BigDecimal.valueOf(100000)));  // 比較器による検索が保たれる
+		assertThat(actual.keySet(), contains("Bob", "James"));                  // 並び順が保たれる
+
+		try {
+			actual.get("bob").put("Mar", BigDecimal.valueOf(500000));
+			fail();
+		} catch (UnsupportedOperationException e) {}
+	}
+
+	@Test
+	public void testBeginFlat() throws Exception {
+		Map<String, Map<String, BigDecimal>> actual = MapOfMaps.<String, String, BigDecimal>beginFlat()
+			.begin("James")
+				.add("Jun", BigDecimal.valueOf(100000))
+				.add("Feb", BigDecimal.valueOf(150000))
+			.end()
+			.begin("Bob")
+				.add("Jun", BigDecimal.valueOf(300000))
+			.end()
+			.begin("Bob")
+				.add("Feb", BigDecimal.valueOf(350000))
+			.end()
+		.end(true);
+
+		assertThat(actual.size(), is(2));
+		assertThat(actual, hasEntry("James", getJamesSalary()));
+		assertThat(actual, hasEntry("Bob", getBobSalary()));
+
+		MapOfMaps<Integer, Integer, Integer> flat = MapOfMaps.beginFlat();
+		Map<Integer, Map<Integer, Integer>> expected = new HashMap<>();
+
+		for (int i = 0; i < 100000; i++) {
+			flat.begin(i % 30000).add(i % 7, i);
+			expected.computeIfAbsent(i % 30000, key -> new HashMap<>()).put(i % 7, i);
+		}
+
+		Map<Integer, Map<Integer, Integer>> view = flat.end();
+		assertThat(view, is(expected));
+		assertThat(view.get(29999).get(29999 % 7), is(29999));
+		assertThat(view.get(30000), is(nullValue()));
+
+		view.get(0).put(100, -1);                                           // 子マップのビューには追加できる
+		assertThat(flat.end().get(0).get(100), is(-1));
+	}
+
 	private Map<String, BigDecimal> getJamesSalary () {
 		Map<String, BigDecimal> map = new HashMap<>();
 		map.put("Jun", BigDecimal.valueOf(100000));
@@ -61,4 +122,51 @@ public class MapOfMapsTest {
 		map.put("Feb", BigDecimal.valueOf(350000));
 		return map;
 	}
+
+	@Test
+	public void testCollector() throws Exception {
+		List<Integer> values = IntStream.range(0, 100000).boxed().collect(Collectors.toList());
+
+		Map<Integer, Map<Integer, Integer>> expected = values.stream().collect(Collectors.groupingBy(
+				value -> value % 100,
+				Collectors.toMap(value -> value % 1000, value -> value, (former, latter) -> latter)));
+
+		assertThat(values.stream().collect(MapOfMaps.collector(value -> value % 100, value -> value % 1000, value -> value)),
+				is(expected));
+		assertThat(values.parallelStream().collect(MapOfMaps.collector(value -> value % 100, value -> value % 1000, value -> value, 100, 10)),
+				is(expected));
+	}
+
+	@Test
+	public void testReverseIndex() throws Exception {
+		MapOfMaps<String, String, BigDecimal> salaries = MapOfMaps.<String, String, BigDecimal>begin()
+				.begin("James").add("Jun", BigDecimal.valueOf(100000)).end()
+				.withReverseIndex()                                         // 既存の内容から索引を作成
+				.begin("Bob").add("Jun", BigDecimal.valueOf(300000)).add("Feb", BigDecimal.valueOf(350000)).end();
+
+		assertThat(salaries.keysHaving("Jun"), contains("James", "Bob"));
+		assertThat(salaries.keysHaving("Feb"), contains("Bob"));
+		assertThat(salaries.keysHaving("Mar"), is(empty()));
+
+		Map<String, Map<String, BigDecimal>> transposed = salaries.transpose();
+		assertThat(transposed.size(), is(2));
+		assertThat(transposed.get("Jun").get("Bob"), is(BigDecimal.valueOf(300000)));
+		assertThat(transposed.get("Feb").get("James"), is(nullValue()));
+		assertThat(transposed.get("Mar"), is(nullValue()));
+
+		salaries.begin("James").add("Feb", BigDecimal.valueOf(150000));     // 以後の追加もビューに反映される
+		Map<String, Map<String, BigDecimal>> expected = new HashMap<>();
+		expected.put("Jun", new HashMap<>());
+		expected.get("Jun").put("James", BigDecimal.valueOf(100000));
+		expected.get("Jun").put("Bob", BigDecimal.valueOf(300000));
+		expected.put("Feb", new HashMap<>());
+		expected.get("Feb").put("James", BigDecimal.valueOf(150000));
+		expected.get("Feb").put("Bob", BigDecimal.valueOf(350000));
+		assertThat(transposed, is(expected));
+	}
+
+	@Test(expected = IllegalStateException.class)
+	public void testTransposeWithoutIndex() throws Exception {
+		MapOfMaps.begin().transpose();
+	}
 }
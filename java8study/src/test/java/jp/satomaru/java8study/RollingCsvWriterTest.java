@@ -0,0 +1,126 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+import java.util.zip.GZIPInputStream;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RollingCsvWriterTest {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private CsvBuilder<Integer> builder;
+
+	@Before
+	public void setUp() {
+		builder = new CsvBuilder<>(CsvSchema.<Integer>builder()
+				.intColumn(Integer::intValue)
+				.objectColumn(id -> "name" + id * 7919)
+				.build());
+
+		builder.header("id", "name");
+		builder.setLineSeparator("\n");
+	}
+
+	@Test
+	public void testWrite() throws Exception {
+		List<Integer> ids = IntStream.range(0, 50000).boxed().collect(Collectors.toList());
+
+		RollingCsvWriter<Integer> tested = new RollingCsvWriter<>(builder, folder.getRoot().toPath(), "audit");
+		tested.setMaxFileSize(64 * 1024);
+		tested.setChunkLength(4096);
+		tested.setQueueCapacity(2);
+
+		List<RollingCsvWriter.Part> parts = tested.write(ids);
+
+		assertThat(parts.size(), is(greaterThan(1)));
+		assertThat(parts.get(0).getFile().getFileName().toString(), is("audit-0001.csv.gz"));
+
+		List<Integer> actual = new ArrayList<>();
+
+		for (RollingCsvWriter.Part part : parts) {
+			assertThat(part.getBytes(), is(Files.size(part.getFile())));
+
+			List<Integer> rows = ids.subList(actual.size(), actual.size() + (int) part.getRows());
+			assertThat(gunzip(part.getFile()), is(builder.build(rows)));      // 各ファイルに見出し行が付く
+			actual.addAll(rows);
+		}
+
+		assertThat(actual, is(ids));
+	}
+
+	@Test
+	public void testWriteEmpty() throws Exception {
+		RollingCsvWriter<Integer> tested = new RollingCsvWriter<>(builder, folder.getRoot().toPath(), "empty");
+		List<RollingCsvWriter.Part> parts = tested.write(new ArrayList<>());
+
+		assertThat(parts, hasSize(1));
+		assertThat(parts.get(0).getRows(), is(0L));
+		assertThat(gunzip(parts.get(0).getFile()), is("\"id\",\"name\""));
+	}
+
+	@Test
+	public void testWriteStopsOnFailure() throws Exception {
+		Path directory = folder.newFolder("parts").toPath();
+		int total = 1000000;
+		AtomicInteger consumed = new AtomicInteger();
+
+		Iterator<Integer> ids = IntStream.range(0, total).peek(id -> {
+			consumed.incrementAndGet();
+
+			if (id == 1000) {
+				try {
+					// 途中でディレクトリーをファイルに置き換え、次のファイルを作成できなくする
+					Files.move(directory, directory.resolveSibling("moved"));
+					Files.createFile(directory);
+				} catch (IOException e) {
+					throw new UncheckedIOException(e);
+				}
+			}
+		}).boxed().iterator();
+
+		RollingCsvWriter<Integer> tested = new RollingCsvWriter<>(builder, directory, "broken");
+		tested.setMaxFileSize(1);
+		tested.setChunkLength(1024);
+		tested.setQueueCapacity(1);
+
+		try {
+			tested.write(() -> ids);
+			fail();
+		} catch (IOException e) {
+			assertThat(consumed.get(), is(lessThan(total)));                    // 失敗した後は、読み込みをやめる
+		}
+	}
+
+	private static String gunzip(Path file) throws IOException {
+		try (InputStream in = new GZIPInputStream(Files.newInputStream(file))) {
+			ByteArrayOutputStream out = new ByteArrayOutputStream();
+			byte[] buffer = new byte[8192];
+
+			for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+				out.write(buffer, 0, read);
+			}
+
+			return new String(out.toByteArray(), StandardCharsets.UTF_8);
+		}
+	}
+}
@@ -0,0 +1,114 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SpillingListMapsTest {
+
+	private static final SpillingListMaps.Codec<String> STRING = new SpillingListMaps.Codec<String>() {
+
+		@Override
+		public void write(DataOutput out, String value) throws IOException {
+			out.writeUTF(value);
+		}
+
+		@Override
+		public String read(DataInput in) throws IOException {
+			return in.readUTF();
+		}
+	};
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void test() throws Exception {
+		Path directory = folder.getRoot().toPath();
+
+		try (SpillingListMaps<String, String> tested = SpillingListMaps.<String, String>begin(directory, 1024 * 1024, STRING)) {
+			Map<String, List<String>> actual = tested
+				.begin("foo").add("11", "12").end()
+				.begin("bar").add("21").end()
+				.begin("foo").add("13").end()
+			.end();
+
+			assertThat(tested.getSegmentCount(), is(0));                        // 上限を超えていないため退避しない
+			assertThat(actual.size(), is(2));
+			assertThat(actual, hasEntry("foo", Arrays.asList("11", "12", "13")));
+			assertThat(actual, hasEntry("bar", Arrays.asList("21")));
+
+			try {
+				actual.get("foo").add("14");
+				fail();
+			} catch (UnsupportedOperationException e) {}
+
+			try {
+				tested.begin("baz");
+				fail();
+			} catch (IllegalStateException e) {}
+		}
+	}
+
+	@Test
+	public void testSpill() throws Exception {
+		Path directory = folder.getRoot().toPath();
+		List<Integer> values = IntStream.range(0, 200000).boxed().collect(Collectors.toList());
+
+		try (SpillingListMaps<Integer, String> tested = SpillingListMaps.<Integer, String>begin(directory, 256 * 1024, STRING)) {
+			tested.begin(-1).add("first");                                      // 最初のセグメントファイルにのみ含まれる
+
+			for (Integer value : values) {
+				tested.begin(value % 1000).add("value" + value);
+			}
+
+			tested.begin(-2).add("last");                                       // 退避されない
+
+			Map<Integer, List<String>> actual = tested.end();
+			Map<Integer, List<String>> expected = values.stream().collect(Collectors.groupingBy(value -> value % 1000,
+					Collectors.mapping(value -> "value" + value, Collectors.toList())));
+			expected.put(-1, Arrays.asList("first"));
+			expected.put(-2, Arrays.asList("last"));
+
+			assertThat(tested.getSegmentCount(), is(greaterThan(10)));
+			assertThat(actual, is(expected));
+			assertThat(Files.list(directory).count(), is((long) tested.getSegmentCount()));
+		}
+
+		assertThat(Files.list(directory).count(), is(0L));                      // 閉じるとセグメントファイルを削除する
+	}
+
+	@Test
+	public void testTooManyKeys() throws Exception {
+		Path directory = folder.getRoot().toPath();
+
+		try (SpillingListMaps<Integer, String> tested = SpillingListMaps.<Integer, String>begin(directory, 1024, STRING)) {
+			for (int key = 0; key < 6; key++) {
+				tested.begin(key).add("value" + key);
+			}
+
+			tested.begin(0).add("again");                                       // 既存のキーは追加できる
+
+			try {
+				tested.begin(6);                                                // キーの管理情報は、上限の半分まで
+				fail();
+			} catch (IllegalStateException e) {}
+
+			assertThat(tested.end().get(0), is(Arrays.asList("value0", "again")));
+		}
+	}
+}
@@ -0,0 +1,60 @@
+package jp.satomaru.java8study;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.jar.JarEntry;
+import java.util.jar.JarOutputStream;
+
+/**
+ * テスト用のJARファイルを作成します。
+ *
+ * <p>
+ * 各エントリーの内容は、クラスファイルの先頭2バイト（0xcafe）のみです。
+ * </p>
+ */
+final class TestJars {
+
+	/**
+	 * JARファイルを作成します。
+	 *
+	 * @param file 作成するファイル（存在する場合は上書きする）
+	 * @param entries エントリー名
+	 * @return 作成したファイル
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	static File createJar(File file, String... entries) throws IOException {
+		return createJar(file, new byte[0], null, entries);
+	}
+
+	/**
+	 * 先頭にデータを付加し、末尾にコメントを付けたJARファイルを作成します。
+	 *
+	 * @param file 作成するファイル（存在する場合は上書きする）
+	 * @param stub 先頭に付加するデータ
+	 * @param comment コメント（nullの場合は付けない）
+	 * @param entries エントリー名
+	 * @return 作成したファイル
+	 * @throws IOException 書き込みに失敗した場合
+	 */
+	static File createJar(File file, byte[] stub, String comment, String... entries) throws IOException {
+		try (OutputStream out = Files.newOutputStream(file.toPath())) {
+			out.write(stub);
+
+			try (JarOutputStream jar = new JarOutputStream(out)) {
+				for (String entry : entries) {
+					jar.putNextEntry(new JarEntry(entry));
+					jar.write(new byte[] {(byte) 0xca, (byte) 0xfe});
+					jar.closeEntry();
+				}
+
+				jar.setComment(comment);
+			}
+		}
+
+		return file;
+	}
+
+	private TestJars() {}
+}
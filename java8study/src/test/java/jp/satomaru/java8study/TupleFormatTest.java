@@ -0,0 +1,57 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.math.BigInteger;
+import java.util.IllegalFormatException;
+
+import org.junit.Test;
+
+public class TupleFormatTest {
+
+	@Test
+	public void testSameAsStringFormat() throws Exception {
+		String[] formats = {"%s:%s", "[%5s|%-5s]", "%d/%05d", "%2$s<-%1$s", "%.2s%%%s", "no args", "%-6d|%6d", "%s%n", "%s=100%%"};
+		Object[][] values = {{"key", null}, {12, -34}, {0L, (short) 7}, {BigInteger.TEN.pow(20), (byte) -1}};
+
+		for (String format : formats) {
+			TupleFormat compiled = TupleFormat.compile(format);
+
+			for (Object[] pair : values) {
+				if (format.contains("d") && !(pair[0] instanceof Number)) {
+					continue;
+				}
+
+				assertThat(format, compiled.format(pair[0], pair[1]), is(String.format(format, pair[0], pair[1])));
+			}
+		}
+	}
+
+	@Test
+	public void testFormatTo() throws Exception {
+		TupleFormat format = TupleFormat.compile("%s=%d;");
+		StringBuilder builder = new StringBuilder();
+
+		format.formatTo(builder, "a", 1);
+		format.formatTo(builder, "b", 2);
+
+		assertThat(builder.toString(), is("a=1;b=2;"));
+		assertThat(Tuple.of("c", 3).format(format), is("c=3;"));
+	}
+
+	@Test
+	public void testIllegalFormat() throws Exception {
+		for (String format : new String[] {"%x", "%-s", "%05s", "%.2d", "%s%s%s", "%3$s", "%", "%5n", "%-n", "%-5%", "%5%", "%05%", "%.2%", "%99999999s", "%.99999999s"}) {
+			try {
+				TupleFormat.compile(format);
+				fail(format);
+			} catch (IllegalFormatException e) {}
+		}
+
+		try {
+			TupleFormat.compile("%d").format("a", null);
+			fail();
+		} catch (IllegalFormatException e) {}
+	}
+}
@@ -0,0 +1,50 @@
+package jp.satomaru.java8study;
+
+import static org.hamcrest.Matchers.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+import org.junit.Test;
+
+public class TupleStreamTest {
+
+	@Test
+	public void test() throws Exception {
+		Map<String, Integer> map = new LinkedHashMap<>();
+		map.put("foo", 1);
+		map.put("bar", null);
+		map.put("baz", 3);
+
+		List<String> actual = TupleStream.of(map)
+				.map1st(String::toUpperCase)
+				.map2nd(value -> (value == null) ? 0 : value)
+				.map2nd(value -> value * 10)
+				.format("%s=%d")
+				.collect(Collectors.toList());
+
+		assertThat(actual, contains("FOO=10", "BAR=0", "BAZ=30"));
+	}
+
+	@Test
+	public void testMappingIsAppliedOncePerElement() throws Exception {
+		AtomicInteger firstCalls = new AtomicInteger();
+		AtomicInteger secondCalls = new AtomicInteger();
+		List<String> actual = new ArrayList<>();
+
+		TupleStream.of(Stream.of(Tuple.of(1, "a"), Tuple.of(2, "b")))
+				.map(first -> first + firstCalls.incrementAndGet() * 0, second -> second + secondCalls.incrementAndGet() * 0)
+				.map1st(first -> first * 2)
+				.forEach((first, second) -> actual.add(first + second));
+
+		assertThat(actual, contains("2a0", "4b0"));
+		assertThat(firstCalls.get(), is(2));
+		assertThat(secondCalls.get(), is(2));
+	}
+}
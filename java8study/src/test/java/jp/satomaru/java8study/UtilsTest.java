@@ -14,6 +14,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
 
 import org.junit.BeforeClass;
 import org.junit.Test;
@@ -219,6 +221,25 @@ public class UtilsTest {
 		assertThat(actualList3, is(containsInAnyOrder(expected3)));
 	}
 
+	@Test
+	public void testGroupByTypeParallel() throws Exception {
+
+		List<Object> objects = IntStream.range(0, 100000)
+				.mapToObj(i -> (i % 3 == 0) ? Integer.valueOf(i) : (i % 3 == 1) ? Long.valueOf(i) : (Object) ("str" + i))
+				.collect(Collectors.toList());
+		objects.add(null);
+		objects.addAll(multiObjectList);
+
+		assertThat(Utils.groupByTypeParallel(objects), is(Utils.groupByType(objects)));   // 順番も一致する
+
+		Map<Class<?>, List<Object>> actualMap = objects.parallelStream().collect(Utils.groupingByType(Number.class, CharSequence.class));
+		assertThat(actualMap.keySet(), containsInAnyOrder(Number.class, CharSequence.class, Object.class));
+		assertThat(actualMap.get(Number.class).size(), is(66667 + 6));
+		assertThat(actualMap.get(Number.class).subList(0, 3), contains(0, 1L, 3));
+
+		assertThat(Utils.groupingByType(), is(not(sameInstance(Utils.groupingByType()))));    // 型への参照を共有しない
+	}
+
 	@Test
 	public void testLookForRecentDayOf() throws Exception {
 